@@ -0,0 +1,98 @@
+package com.taboola.calculator.benchmarks;
+
+import com.taboola.calculator.Calculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end throughput of {@link Calculator#evaluate(CharSequence)}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculatorBenchmark {
+
+    /**
+     * One statement shape evaluated over and over (plan cache and bytecode tier warm).
+     */
+    @State(Scope.Thread)
+    public static class RepeatedLine {
+        @Param({"SHORT", "LONG", "INCREMENTS"})
+        public Workload workload;
+
+        Calculator calculator;
+        String line;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            calculator = new Calculator();
+            for (String setupLine : workload.setupLines()) {
+                calculator.evaluate(setupLine);
+            }
+            line = workload.line();
+        }
+    }
+
+    /**
+     * Many distinct lines over a large set of variables (e.g., v17 = v42 + v9 * 3).
+     */
+    @State(Scope.Thread)
+    public static class ManyVariables {
+        private static final int LINES = 4096;
+
+        @Param({"100", "100000"})
+        public int variableCount;
+
+        @Param({"8192", "0"})
+        public int planCacheSize;
+
+        Calculator calculator;
+        String[] lines;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            calculator = new Calculator(planCacheSize);
+            for (int i = 0; i < variableCount; i++) {
+                calculator.evaluate("v" + i + " = " + i);
+            }
+            Random random = new Random(42);
+            lines = new String[LINES];
+            for (int i = 0; i < LINES; i++) {
+                lines[i] = "v" + random.nextInt(variableCount) + " = v" + random.nextInt(variableCount)
+                        + " + v" + random.nextInt(variableCount) + " * 3";
+            }
+        }
+
+        String nextLine() {
+            String line = lines[next];
+            next = (next + 1) % LINES;
+            return line;
+        }
+    }
+
+    @Benchmark
+    public void repeatedLine(RepeatedLine state) {
+        state.calculator.evaluate(state.line);
+    }
+
+    @Benchmark
+    public void manyVariables(ManyVariables state) {
+        state.calculator.evaluate(state.nextLine());
+    }
+}
@@ -0,0 +1,83 @@
+package com.taboola.calculator.benchmarks;
+
+import com.taboola.calculator.Expression;
+import com.taboola.calculator.ExpressionCompiler;
+import com.taboola.calculator.IdentifierTable;
+import com.taboola.calculator.OffHeapVariableTable;
+import com.taboola.calculator.Parser;
+import com.taboola.calculator.SymbolTable;
+import com.taboola.calculator.Tokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing throughput: direct interpretation with {@link Parser}, on a heap map, on an
+ * {@link OffHeapVariableTable} and on an {@link IdentifierTable}, and tree building with {@link ExpressionCompiler}. All include lexing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParserBenchmark {
+
+    @Param({"SHORT", "LONG", "INCREMENTS"})
+    public Workload workload;
+
+    private String expression;
+    private Map<String, Integer> variables;
+    private OffHeapVariableTable offHeapVariables;
+    private IdentifierTable internedVariables;
+    private SymbolTable symbols;
+
+    @Setup
+    public void setUp() {
+        expression = workload.expression();
+        variables = new HashMap<>(workload.variables());
+        offHeapVariables = new OffHeapVariableTable();
+        workload.variables().forEach(offHeapVariables::put);
+        internedVariables = new IdentifierTable();
+        workload.variables().forEach(internedVariables::put);
+        symbols = new SymbolTable();
+    }
+
+    @TearDown
+    public void tearDown() {
+        offHeapVariables.close();
+    }
+
+    @Benchmark
+    public int parseExpression() {
+        return new Parser(new Tokenizer(expression), variables).parseExpression();
+    }
+
+    @Benchmark
+    public int parseExpressionOffHeap() {
+        return new Parser(new Tokenizer(expression), offHeapVariables).parseExpression();
+    }
+
+    @Benchmark
+    public int parseExpressionInterned() {
+        return new Parser(new Tokenizer(expression), internedVariables).parseExpression();
+    }
+
+    @Benchmark
+    public Expression compileExpression() {
+        return new ExpressionCompiler(new Tokenizer(expression), symbols).compileExpression();
+    }
+}
@@ -0,0 +1,57 @@
+package com.taboola.calculator.benchmarks;
+
+import com.taboola.calculator.TokenType;
+import com.taboola.calculator.Tokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lexing throughput: the allocation-free cursor API against the Token-based adapter.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TokenizerBenchmark {
+
+    @Param({"SHORT", "LONG", "INCREMENTS"})
+    public Workload workload;
+
+    private String line;
+
+    @Setup
+    public void setUp() {
+        line = workload.line();
+    }
+
+    @Benchmark
+    public void cursor(Blackhole blackhole) {
+        Tokenizer tokenizer = new Tokenizer(line);
+        while (tokenizer.kind() != TokenType.EOF) {
+            blackhole.consume(tokenizer.start());
+            tokenizer.advance();
+        }
+    }
+
+    @Benchmark
+    public void tokens(Blackhole blackhole) {
+        Tokenizer tokenizer = new Tokenizer(line);
+        while (tokenizer.peek().getType() != TokenType.EOF) {
+            blackhole.consume(tokenizer.next());
+        }
+    }
+}
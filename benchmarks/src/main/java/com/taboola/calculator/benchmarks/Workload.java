@@ -0,0 +1,59 @@
+package com.taboola.calculator.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Statement shapes shared by the benchmarks.
+ * Each workload is an assignment line plus the variables it needs to be defined.
+ */
+public enum Workload {
+    /** Typical short statement. */
+    SHORT("x = i++ + 5 * y"),
+
+    /** One very long expression (about 3000 tokens). */
+    LONG("x = " + "a * 2 + b / 3 - c + ".repeat(300) + "1"),
+
+    /** Statement dominated by pre/post increments and decrements. */
+    INCREMENTS("x = i++ + ++j - k-- * --l + i++ - j-- + ++k + l++");
+
+    private final String line;
+
+    Workload(String line) {
+        this.line = line;
+    }
+
+    /**
+     * The whole assignment line, e.g. "x = i++ + 5 * y".
+     */
+    public String line() {
+        return line;
+    }
+
+    /**
+     * The right-hand side of the assignment.
+     */
+    public String expression() {
+        return line.substring(line.indexOf('=') + 1).trim();
+    }
+
+    /**
+     * Initial values for every variable the workload reads.
+     */
+    public Map<String, Integer> variables() {
+        Map<String, Integer> variables = new LinkedHashMap<>();
+        for (String name : new String[]{"a", "b", "c", "i", "j", "k", "l", "x", "y"}) {
+            variables.put(name, 7);
+        }
+        return variables;
+    }
+
+    /**
+     * Assignment lines that define the workload's variables.
+     */
+    public String[] setupLines() {
+        return variables().entrySet().stream()
+                .map(entry -> entry.getKey() + " = " + entry.getValue())
+                .toArray(String[]::new);
+    }
+}
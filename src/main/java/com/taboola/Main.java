@@ -1,43 +1,162 @@
 package com.taboola;
 
+import com.taboola.calculator.AssignmentJournal;
 import com.taboola.calculator.Calculator;
+import com.taboola.calculator.CalculatorServer;
+import com.taboola.calculator.CharSequences;
+import com.taboola.calculator.ChunkedBatchEvaluator;
+import com.taboola.calculator.ErrorCode;
+import com.taboola.calculator.ErrorStatistics;
+import com.taboola.calculator.EvaluationResult;
+import com.taboola.calculator.ExecutionTrace;
+import com.taboola.calculator.LineError;
+import com.taboola.calculator.ParallelBatchEvaluator;
+import com.taboola.calculator.ScriptReader;
+import com.taboola.calculator.Snapshot;
+import com.taboola.calculator.SubexpressionCache;
+import com.taboola.calculator.VariableWriter;
 
+import java.io.Writer;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Map;
 import java.util.Scanner;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class Main {
+    // All output goes through one buffered encoder; it is flushed before waiting for input and on exit
+    private static final VariableWriter out = new VariableWriter(System.out);
+
+    // When main was entered, for the startup report of --fast-start
+    private static long mainStartMillis;
+    private static long mainStartNanos;
+
     public static void main(String[] args) {
+        mainStartMillis = System.currentTimeMillis();
+        mainStartNanos = System.nanoTime();
+        try {
+            run(args);
+        } finally {
+            out.flush();
+        }
+    }
+
+    private static void run(String[] args) {
         Calculator calculator = new Calculator();
 
-        if (args.length > 0) {
-            // Batch mode: read expressions from a file
-            String filePath = args[0];
+        if (args.length > 1 && args[0].equals("--server")) {
+            // Server mode: one isolated session per connection, until the process is stopped
             try {
-                for (String line : Files.readAllLines(Paths.get(filePath))) {
-                    if (line.trim().isEmpty()) continue;
-                    try {
-                        calculator.evaluate(line);
-                    } catch (IllegalArgumentException e) {
-                        System.out.println("Error in line '" + line + "': " + e.getMessage());
-                    }
-                }
-                printVariablesSingleLine(calculator.getVariables());
+                CalculatorServer server = new CalculatorServer(Integer.parseInt(args[1]));
+                server.start();
+                out.writeLine("Calculator server listening on port " + server.getPort());
+                out.flush();
+                Thread.currentThread().join();
+            } catch (Exception e) {
+                out.writeLine("Failed to start server: " + e.getMessage());
+            }
+        } else if (args.length > 1 && args[0].equals("--parallel")) {
+            // Parallel batch mode: independent lines of the file run concurrently
+            try (ScriptReader reader = new ScriptReader(Paths.get(args[1]))) {
+                ErrorStatistics errors = new ErrorStatistics();
+                new ParallelBatchEvaluator(calculator).evaluateAll(reader, reporter(errors));
+                out.writeVariables(calculator);
+                writeErrorSummary(errors);
+            } catch (Exception e) {
+                out.writeLine("Failed to read file: " + e.getMessage());
+            }
+        } else if (args.length > 1 && args[0].equals("--pipelined")) {
+            // Pipelined batch mode: lines are compiled ahead on worker threads and applied in order
+            try (Stream<String> lines = Files.lines(Paths.get(args[1]))) {
+                ErrorStatistics errors = new ErrorStatistics();
+                calculator.evaluateAll(lines, reporter(errors));
+                out.writeVariables(calculator);
+                writeErrorSummary(errors);
+            } catch (Exception e) {
+                out.writeLine("Failed to read file: " + e.getMessage());
+            }
+        } else if (args.length > 1 && args[0].equals("--chunked")) {
+            // Chunked batch mode: the file is compiled on all cores in chunks, then run in one pass
+            try {
+                ErrorStatistics errors = new ErrorStatistics();
+                new ChunkedBatchEvaluator(calculator).evaluateAll(Paths.get(args[1]), reporter(errors));
+                out.writeVariables(calculator);
+                writeErrorSummary(errors);
+            } catch (Exception e) {
+                out.writeLine("Failed to read file: " + e.getMessage());
+            }
+        } else if (args.length > 1 && args[0].equals("--fast-start")) {
+            // Startup-optimized batch mode for short files: without per-line logging the logging backend is
+            // never initialized. Meant to run on an AOT cache (see README); the startup time goes to stderr
+            calculator.setLineLogging(false);
+            runBatch(calculator, Paths.get(args[1]), null, 0, out);
+            out.flush();
+            reportStartup();
+        } else if (args.length > 2 && args[0].equals("--journal")) {
+            // Batch mode recording every variable write: --journal <journal file> <file>
+            try (AssignmentJournal journal = new AssignmentJournal(Paths.get(args[1]))) {
+                calculator.setJournal(journal);
+                runBatch(calculator, Paths.get(args[2]), null, 0, out);
+            } catch (Exception e) {
+                out.writeLine("Failed to write journal: " + e.getMessage());
+            }
+        } else if (args.length > 1 && args[0].equals("--replay")) {
+            // Rebuild the variables from a journal without evaluating anything
+            try {
+                AssignmentJournal.replay(Paths.get(args[1]), calculator);
+                out.writeVariables(calculator);
+            } catch (Exception e) {
+                out.writeLine("Failed to replay journal: " + e.getMessage());
+            }
+        } else if (args.length > 3 && args[0].equals("--checkpoint")) {
+            // Batch mode with checkpoints: --checkpoint <snapshot file> <interval in lines> <file>
+            try {
+                long interval = Long.parseLong(args[2]);
+                runBatch(calculator, Paths.get(args[3]), Paths.get(args[1]), interval, out);
+            } catch (NumberFormatException e) {
+                out.writeLine("Checkpoint interval must be a number of lines: " + args[2]);
+            }
+        } else if (args.length > 2 && args[0].equals("--trace")) {
+            // Batch mode writing the trace of the last statements to a file: --trace <trace file> <file>
+            ExecutionTrace trace = new ExecutionTrace();
+            calculator.setTrace(trace);
+            runBatch(calculator, Paths.get(args[2]), null, 0, out);
+            try (Writer writer = Files.newBufferedWriter(Paths.get(args[1]))) {
+                trace.dump(writer);
+            } catch (Exception e) {
+                out.writeLine("Failed to write trace: " + e.getMessage());
+            }
+        } else if (args.length > 1 && args[0].equals("--memo")) {
+            // Batch mode memoizing pure subexpressions; the cache's hit and miss counts follow the variables
+            SubexpressionCache subexpressions = new SubexpressionCache();
+            calculator.setSubexpressionCache(subexpressions);
+            runBatch(calculator, Paths.get(args[1]), null, 0, out);
+            out.writeLine(subexpressions.toString());
+        } else if (args.length > 2 && args[0].equals("--output")) {
+            // Batch mode writing the final variables to a file: --output <state file> <file>
+            try (VariableWriter state = new VariableWriter(Paths.get(args[1]))) {
+                runBatch(calculator, Paths.get(args[2]), null, 0, state);
             } catch (Exception e) {
-                System.out.println("Failed to read file: " + e.getMessage());
+                out.writeLine("Failed to write output: " + e.getMessage());
             }
+        } else if (args.length > 0 && !args[0].equals("--delta")) {
+            // Batch mode: stream expressions from a file, one line at a time
+            runBatch(calculator, Paths.get(args[0]), null, 0, out);
         } else {
-            // Interactive mode
+            // Interactive mode; with --delta only the variables changed by each line are printed
+            boolean delta = args.length > 0;
+            calculator.setChangeTracking(delta);
             Scanner scanner = new Scanner(System.in);
-            System.out.println("Taboola Calculator Interactive Mode");
-            System.out.println("Type expressions or 'exit' to quit.");
+            out.writeLine("Taboola Calculator Interactive Mode");
+            out.writeLine("Type expressions or 'exit' to quit.");
 
             while (true) {
-                System.out.print("> ");
+                out.write("> ");
+                out.flush();
                 String line = scanner.nextLine();
                 if (line == null || line.trim().equalsIgnoreCase("exit")) {
-                    System.out.println("Exiting...");
+                    out.writeLine("Exiting...");
                     break;
                 }
 
@@ -45,32 +164,101 @@ public class Main {
 
                 try {
                     calculator.evaluate(line);
-                    printVariablesSingleLine(calculator.getVariables());
+                    if (delta) {
+                        out.writeChanges(calculator);
+                    } else {
+                        out.writeVariables(calculator);
+                    }
                 } catch (IllegalArgumentException e) {
-                    System.out.println("Error: " + e.getMessage());
+                    out.writeLine("Error: " + e.getMessage());
                 } catch (Exception e) {
-                    System.out.println("Unexpected error: " + e.getMessage());
+                    out.writeLine("Unexpected error: " + e.getMessage());
                 }
             }
             scanner.close();
         }
     }
 
-    private static void printVariablesSingleLine(Map<String, Integer> vars) {
-        if (vars.isEmpty()) {
-            System.out.println("()");
+    /**
+     * Evaluates the file line by line and writes the final variables to result, then a summary of the errors.
+     * With a snapshot file, resumes after the line it was taken at (if it exists) and saves a new one every
+     * interval lines. Bad lines are reported through results rather than exceptions, see Calculator.tryEvaluate.
+     * The last statements are always traced, and the trace is printed if the run fails.
+     */
+    private static void runBatch(Calculator calculator, Path file, Path snapshot, long interval, VariableWriter result) {
+        if (snapshot != null && interval <= 0) {
+            out.writeLine("Checkpoint interval must be positive: " + interval);
             return;
         }
+        if (calculator.getTrace() == null) {
+            calculator.setTrace(new ExecutionTrace());
+        }
+        try (ScriptReader reader = new ScriptReader(file)) {
+            long resumeAfter = 0;
+            if (snapshot != null && Files.exists(snapshot)) {
+                resumeAfter = Snapshot.restore(snapshot, calculator);
+                out.writeLine("Resuming after line " + resumeAfter);
+            }
+
+            ErrorStatistics errors = new ErrorStatistics();
+            CharSequence line;
+            while ((line = reader.nextLine()) != null) {
+                if (reader.lineNumber() <= resumeAfter) continue;
+                if (!CharSequences.isBlank(line)) {
+                    EvaluationResult evaluation = calculator.tryEvaluate(line, reader.lineNumber());
+                    if (!evaluation.isOk()) {
+                        reportError(errors, evaluation.getCode(), reader.lineNumber(), line, evaluation.getMessage());
+                    }
+                }
+                if (snapshot != null && reader.lineNumber() % interval == 0) {
+                    Snapshot.write(snapshot, calculator, reader.lineNumber());
+                }
+            }
+            result.writeVariables(calculator);
+            writeErrorSummary(errors);
+        } catch (Exception e) {
+            out.writeLine("Failed to read file: " + e.getMessage());
+            ExecutionTrace trace = calculator.getTrace();
+            if (trace.recorded() > 0) {
+                StringBuilder dump = new StringBuilder();
+                trace.dump(dump);
+                out.write(dump);
+            }
+        }
+    }
+
+    /**
+     * Prints how long the JVM took to reach main and how long main took, e.g.
+     * {@code Startup: 41 ms to main, 7 ms in main}, so startup regressions can be tracked.
+     */
+    private static void reportStartup() {
+        long inMain = (System.nanoTime() - mainStartNanos) / 1_000_000;
+        String toMain = ProcessHandle.current().info().startInstant()
+                .map(start -> (mainStartMillis - start.toEpochMilli()) + " ms")
+                .orElse("unknown time");
+        System.err.println("Startup: " + toMain + " to main, " + inMain + " ms in main");
+    }
+
+    /**
+     * Counts the error for the summary and prints it, e.g. {@code Error in line 'x = y': Variable 'y' is not defined}.
+     */
+    private static void reportError(ErrorStatistics errors, ErrorCode code, long lineNumber, CharSequence line,
+                                    String message) {
+        errors.record(code, lineNumber);
+        out.writeLine("Error in line '" + line + "': " + message);
+    }
+
+    /**
+     * Reports the errors of the parallel, pipelined and chunked evaluators like those of batch mode.
+     */
+    private static Consumer<LineError> reporter(ErrorStatistics errors) {
+        return error -> reportError(errors, ErrorCode.of(error.error()), error.lineNumber(), error.line(),
+                error.error().getMessage());
+    }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("(");
-        boolean first = true;
-        for (Map.Entry<String, Integer> entry : vars.entrySet()) {
-            if (!first) sb.append(",");
-            sb.append(entry.getKey()).append("=").append(entry.getValue());
-            first = false;
+    private static void writeErrorSummary(ErrorStatistics errors) {
+        if (errors.getTotal() > 0) {
+            out.writeLine(errors.summary());
         }
-        sb.append(")");
-        System.out.println(sb.toString());
     }
 }
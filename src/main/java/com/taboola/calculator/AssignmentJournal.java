@@ -0,0 +1,419 @@
+package com.taboola.calculator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * AssignmentJournal is an append-only binary log of the variable writes made by a {@link Calculator}
+ * (see {@link Calculator#setJournal(AssignmentJournal)}), including increments and decrements.
+ * <p>
+ * Records are collected in a direct buffer and committed as one group (a write and an fsync)
+ * when the buffer is full or when the oldest pending record is older than the commit delay,
+ * so durability costs one fsync per group instead of one per line. A crash loses at most
+ * the last uncommitted group. After a failed commit the journal rejects all further writes, so
+ * nothing is appended after a torn group. {@link #replay(Path, Calculator)} rebuilds the variables
+ * from the journal without evaluating any expression.
+ * <p>
+ * Layout (little-endian): a file header (magic, version), then groups of
+ * [payload length, CRC32C of the payload, records]. A record is either a name
+ * [1, id, name length (short), UTF-8 name], sent before the first write of a variable,
+ * or a write of a value in the variable's width (see {@link NumericWidth}): [2, id, int value],
+ * [3, id, long value] or [4, id, byte length (int), two's-complement big-endian bytes].
+ * A torn or corrupt group at the end of the file is ignored on replay.
+ */
+public final class AssignmentJournal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssignmentJournal.class);
+
+    private static final int MAGIC = 0x314A4354;  // "TCJ1"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int GROUP_HEADER_SIZE = 8;
+    private static final byte NAME_RECORD = 1;
+    private static final byte WRITE_RECORD = 2;
+    private static final byte LONG_WRITE_RECORD = 3;
+    private static final byte BIG_WRITE_RECORD = 4;
+    private static final int WRITE_RECORD_SIZE = 9;
+    private static final int LONG_WRITE_RECORD_SIZE = 13;
+
+    static final int DEFAULT_GROUP_SIZE = 64 * 1024;
+    static final long DEFAULT_COMMIT_DELAY_MILLIS = 10;
+
+    private final FileChannel channel;
+    private final ByteBuffer group;         // Group header followed by pending records
+    private final long commitDelayNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Thread committer;         // Commits groups that waited longer than the delay
+
+    private boolean[] named = new boolean[16];  // Slots whose name record is in this journal
+    private long firstPendingNanos;             // Time the oldest uncommitted record was added
+    private IOException failure;                // First commit error; the journal accepts no writes after it
+    private boolean closed;
+
+    public AssignmentJournal(Path file) throws IOException {
+        this(file, DEFAULT_GROUP_SIZE, DEFAULT_COMMIT_DELAY_MILLIS);
+    }
+
+    /**
+     * Opens the journal for appending, creating it if needed.
+     *
+     * @param groupSize         bytes of records committed together at most
+     * @param commitDelayMillis longest time a record waits for its group to fill before being committed
+     */
+    public AssignmentJournal(Path file, int groupSize, long commitDelayMillis) throws IOException {
+        this(file, open(file, groupSize, commitDelayMillis), groupSize, commitDelayMillis);
+    }
+
+    /**
+     * Appends through the given channel, opened on the file for reading and writing; closes it on failure.
+     */
+    AssignmentJournal(Path file, FileChannel channel, int groupSize, long commitDelayMillis) throws IOException {
+        this.channel = channel;
+        this.group = ByteBuffer.allocateDirect(groupSize).order(ByteOrder.LITTLE_ENDIAN);
+        this.commitDelayNanos = TimeUnit.MILLISECONDS.toNanos(commitDelayMillis);
+        try {
+            openFile(file);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        group.position(GROUP_HEADER_SIZE);
+        this.committer = Thread.ofPlatform().daemon().name("assignment-journal-committer").start(this::commitLoop);
+    }
+
+    private static FileChannel open(Path file, int groupSize, long commitDelayMillis) throws IOException {
+        if (groupSize < 1024) {
+            throw new IllegalArgumentException("Group size must be at least 1024 bytes: " + groupSize);
+        }
+        if (commitDelayMillis <= 0) {
+            throw new IllegalArgumentException("Commit delay must be positive: " + commitDelayMillis);
+        }
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Writes the file header of a new journal. For an existing one, checks it and drops a torn
+     * last group left by a crash, so new groups follow the last committed one.
+     */
+    private void openFile(Path file) throws IOException {
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            channel.write(header, 0);
+            channel.force(true);
+        } else {
+            GroupReader reader = new GroupReader(channel, file);
+            while (reader.next() != null) {
+                // Skip to the end of the committed groups
+            }
+            if (reader.end() < channel.size()) {
+                logger.warn("Dropping {} bytes of uncommitted journal data", channel.size() - reader.end());
+                channel.truncate(reader.end());
+            }
+        }
+        channel.position(channel.size());
+    }
+
+    /**
+     * Appends the values the statement left in the variables it writes.
+     * Called after the statement ran, also when it failed, as increments before the failure stay applied.
+     */
+    void recordWrites(CompiledStatement statement, VariableStore variables) {
+        lock.lock();
+        try {
+            checkOpen();
+            SymbolTable symbols = variables.symbols();
+            for (int slot : statement.slotUsage().writes()) {
+                if (!variables.isDefined(slot)) {
+                    continue; // Failed before its first assignment
+                }
+                if (slot >= named.length || !named[slot]) {
+                    appendName(slot, symbols.name(slot));
+                }
+                appendWrite(slot, variables);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write assignment journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Commits the pending records now.
+     */
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            commit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Commits the pending records and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            committer.interrupt();
+            try {
+                commit();
+            } finally {
+                channel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void appendName(int slot, String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE || 7 + bytes.length > group.capacity() - GROUP_HEADER_SIZE) {
+            throw new IllegalArgumentException("Variable name too long for the journal: " + name.length());
+        }
+        ensureRoom(7 + bytes.length);
+        group.put(NAME_RECORD).putInt(slot).putShort((short) bytes.length).put(bytes);
+        if (slot >= named.length) {
+            named = Arrays.copyOf(named, Math.max(slot + 1, named.length * 2));
+        }
+        named[slot] = true;
+    }
+
+    private void appendWrite(int slot, VariableStore variables) throws IOException {
+        switch (variables.getWidth(slot)) {
+            case INT -> {
+                ensureRoom(WRITE_RECORD_SIZE);
+                group.put(WRITE_RECORD).putInt(slot).putInt(variables.get(slot));
+            }
+            case LONG -> {
+                ensureRoom(LONG_WRITE_RECORD_SIZE);
+                group.put(LONG_WRITE_RECORD).putInt(slot).putLong(variables.getLong(slot));
+            }
+            case BIG -> {
+                byte[] bytes = variables.getBig(slot).toByteArray();
+                if (9 + bytes.length > group.capacity() - GROUP_HEADER_SIZE) {
+                    throw new IllegalArgumentException("Value too large for the journal: " + bytes.length + " bytes");
+                }
+                ensureRoom(9 + bytes.length);
+                group.put(BIG_WRITE_RECORD).putInt(slot).putInt(bytes.length).put(bytes);
+            }
+        }
+    }
+
+    /**
+     * Commits the group first if the record does not fit, and starts the commit delay for a new group.
+     */
+    private void ensureRoom(int recordSize) throws IOException {
+        if (group.remaining() < recordSize) {
+            commit();
+        }
+        if (group.position() == GROUP_HEADER_SIZE) {
+            firstPendingNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Writes and syncs the pending group. A failed commit may leave part of the group in the file and
+     * the buffer half consumed, so it is final: the error is kept and rethrown by every later write,
+     * flush and close. Appending after a torn group would get the groups after it, committed or not,
+     * dropped when the journal is reopened.
+     */
+    private void commit() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        int payload = group.position() - GROUP_HEADER_SIZE;
+        if (payload == 0) {
+            return;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(group.slice(GROUP_HEADER_SIZE, payload));
+        group.putInt(0, payload).putInt(4, (int) crc.getValue());
+        group.flip();
+        try {
+            while (group.hasRemaining()) {
+                channel.write(group);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+        group.clear().position(GROUP_HEADER_SIZE);
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Journal is closed");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void commitLoop() {
+        long sleepNanos = commitDelayNanos;
+        while (true) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                return; // Closed
+            }
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                sleepNanos = commitDelayNanos;
+                if (group.position() > GROUP_HEADER_SIZE && failure == null) {
+                    long waited = System.nanoTime() - firstPendingNanos;
+                    if (waited >= commitDelayNanos) {
+                        commit();
+                    } else {
+                        sleepNanos = commitDelayNanos - waited;
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Failed to commit assignment journal: {}", e.getMessage());
+                return; // The failure is kept by commit()
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Applies every committed write of the journal to the calculator, in order, and returns how many
+     * writes were applied. A torn or corrupt group at the end (from a crash) and what follows it is skipped.
+     */
+    public static long replay(Path file, Calculator calculator) throws IOException {
+        VariableStore variables = calculator.variables();
+        SymbolTable symbols = variables.symbols();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            GroupReader reader = new GroupReader(channel, file);
+            int[] slots = new int[16];  // Journal id -> slot in the calculator
+            long writes = 0;
+            ByteBuffer records;
+            while ((records = reader.next()) != null) {
+                while (records.hasRemaining()) {
+                    byte type = records.get();
+                    int id = records.getInt();
+                    if (type == WRITE_RECORD) {
+                        variables.set(slots[id], records.getInt());
+                        writes++;
+                    } else if (type == LONG_WRITE_RECORD) {
+                        variables.setLong(slots[id], records.getLong());
+                        writes++;
+                    } else if (type == BIG_WRITE_RECORD) {
+                        byte[] bytes = new byte[records.getInt()];
+                        records.get(bytes);
+                        variables.setBig(slots[id], new BigInteger(bytes));
+                        writes++;
+                    } else if (type == NAME_RECORD) {
+                        byte[] name = new byte[records.getShort()];
+                        records.get(name);
+                        if (id >= slots.length) {
+                            slots = Arrays.copyOf(slots, Math.max(id + 1, slots.length * 2));
+                        }
+                        slots[id] = symbols.resolve(new String(name, StandardCharsets.UTF_8));
+                    } else {
+                        throw new IOException("Unknown journal record type " + type + " in " + file);
+                    }
+                }
+            }
+            return writes;
+        }
+    }
+
+    /**
+     * Reads the committed groups of a journal file one by one, checking each one's CRC.
+     */
+    private static final class GroupReader {
+        private final FileChannel channel;
+        private final ByteBuffer header = ByteBuffer.allocate(GROUP_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+        private ByteBuffer payload = ByteBuffer.allocateDirect(DEFAULT_GROUP_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position = FILE_HEADER_SIZE;  // Offset of the next group
+
+        GroupReader(FileChannel channel, Path file) throws IOException {
+            this.channel = channel;
+            ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() < FILE_HEADER_SIZE || !readFully(fileHeader, 0)
+                    || fileHeader.getInt(0) != MAGIC || fileHeader.getInt(4) != VERSION) {
+                throw new IOException("Not a calculator journal: " + file);
+            }
+        }
+
+        /**
+         * Returns the records of the next group, or null after the last intact group.
+         */
+        ByteBuffer next() throws IOException {
+            header.clear();
+            if (!readFully(header, position)) {
+                return null;
+            }
+            int length = header.getInt(0);
+            if (length <= 0 || length > channel.size() - position - GROUP_HEADER_SIZE) {
+                return null; // Torn group
+            }
+            if (length > payload.capacity()) {
+                payload = ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            payload.clear().limit(length);
+            if (!readFully(payload, position + GROUP_HEADER_SIZE)) {
+                return null;
+            }
+            payload.flip();
+            crc.reset();
+            crc.update(payload);
+            payload.rewind();
+            if ((int) crc.getValue() != header.getInt(4)) {
+                logger.warn("Ignoring corrupt journal group at offset {}", position);
+                return null;
+            }
+            position += GROUP_HEADER_SIZE + length;
+            return payload;
+        }
+
+        /**
+         * Offset just past the last intact group returned so far.
+         */
+        long end() {
+            return position;
+        }
+
+        private boolean readFully(ByteBuffer buffer, long offset) throws IOException {
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, offset);
+                if (read < 0) {
+                    return false;
+                }
+                offset += read;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.taboola.calculator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.CodeBuilder;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.MethodTypeDesc;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.constant.ConstantDescs.CD_Object;
+import static java.lang.constant.ConstantDescs.CD_int;
+import static java.lang.constant.ConstantDescs.INIT_NAME;
+import static java.lang.constant.ConstantDescs.MTD_void;
+
+/**
+ * BytecodeCompiler turns a hot {@link Expression} into a hidden class implementing
+ * {@link ExpressionCode}, using the {@code java.lang.classfile} API.
+ * The generated method is straight-line code, so HotSpot can inline the arithmetic.
+ * Variable access goes through {@link VariableStore} and arithmetic through the exact helpers of
+ * {@link ExpressionSupport}, exactly as in the interpreter, so errors and overflow are identical in both tiers.
+ */
+final class BytecodeCompiler {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final AtomicLong CLASS_COUNTER = new AtomicLong();
+
+    private static final ClassDesc CD_EXPRESSION_CODE = ClassDesc.of(ExpressionCode.class.getName());
+    private static final ClassDesc CD_SUPPORT = ClassDesc.of(ExpressionSupport.class.getName());
+    private static final ClassDesc CD_STORE = ClassDesc.of(VariableStore.class.getName());
+
+    private static final MethodTypeDesc MTD_EVALUATE = MethodTypeDesc.of(CD_int, CD_STORE);
+    private static final MethodTypeDesc MTD_GET = MethodTypeDesc.of(CD_int, CD_int);
+    private static final MethodTypeDesc MTD_INCREMENT = MethodTypeDesc.of(CD_int, CD_int, CD_int);
+    private static final MethodTypeDesc MTD_UNARY = MethodTypeDesc.of(CD_int, CD_int);
+    private static final MethodTypeDesc MTD_BINARY = MethodTypeDesc.of(CD_int, CD_int, CD_int);
+
+    private static final int VARIABLES_SLOT = 1; // Local slot of the VariableStore argument
+
+    private BytecodeCompiler() {
+    }
+
+    /**
+     * Generates and loads a class for the expression.
+     * Returns null if the expression cannot be compiled (e.g., the method would exceed
+     * the JVM code size limit), in which case the caller keeps interpreting it.
+     */
+    static ExpressionCode compile(Expression expression) {
+        ClassDesc className = ClassDesc.of(BytecodeCompiler.class.getPackageName(),
+                "GeneratedExpression$" + CLASS_COUNTER.incrementAndGet());
+        try {
+            byte[] bytes = ClassFile.of().build(className, clb -> clb
+                    .withFlags(ClassFile.ACC_FINAL | ClassFile.ACC_SYNTHETIC)
+                    .withSuperclass(CD_Object)
+                    .withInterfaceSymbols(CD_EXPRESSION_CODE)
+                    .withMethodBody(INIT_NAME, MTD_void, ClassFile.ACC_PUBLIC, cob -> cob
+                            .aload(0)
+                            .invokespecial(CD_Object, INIT_NAME, MTD_void)
+                            .return_())
+                    .withMethodBody("evaluate", MTD_EVALUATE, ClassFile.ACC_PUBLIC, cob -> {
+                        emit(cob, expression);
+                        cob.ireturn();
+                    }));
+
+            MethodHandles.Lookup hidden = LOOKUP.defineHiddenClass(bytes, true);
+            return (ExpressionCode) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+        } catch (Throwable e) {
+            Log.logger.debug("Keeping expression interpreted, bytecode generation failed: {}", e.toString());
+            return null;
+        }
+    }
+
+    private static void emit(CodeBuilder cob, Expression expression) {
+        switch (expression) {
+            case Expression.Literal literal -> cob.loadConstant(literal.value());
+
+            case Expression.WideLiteral literal -> // Such statements never run in int arithmetic
+                    throw new IllegalArgumentException("Literal does not fit in an int: " + literal.value());
+
+            case Expression.Variable variable -> cob
+                    .aload(VARIABLES_SLOT)
+                    .loadConstant(variable.slot())
+                    .invokevirtual(CD_STORE, "get", MTD_GET);
+
+            case Expression.Negate negate -> {
+                emit(cob, negate.operand());
+                cob.invokestatic(CD_SUPPORT, "negate", MTD_UNARY);
+            }
+
+            case Expression.Chain chain -> {
+                emit(cob, chain.first());
+                for (int i = 0; i < chain.operands().length; i++) {
+                    emit(cob, chain.operands()[i]);
+                    switch (chain.operators()[i]) {
+                        case PLUS -> cob.invokestatic(CD_SUPPORT, "add", MTD_BINARY);
+                        case MINUS -> cob.invokestatic(CD_SUPPORT, "subtract", MTD_BINARY);
+                        case MUL -> cob.invokestatic(CD_SUPPORT, "multiply", MTD_BINARY);
+                        case DIV -> cob.invokestatic(CD_SUPPORT, "divide", MTD_BINARY);
+                        default -> throw new IllegalStateException("Unsupported operator: " + chain.operators()[i]);
+                    }
+                }
+            }
+
+            case Expression.Update update -> {
+                cob.aload(VARIABLES_SLOT)
+                        .loadConstant(update.slot())
+                        .loadConstant(update.delta())
+                        .invokevirtual(CD_STORE, "increment", MTD_INCREMENT);
+                if (!update.isPrefix()) {
+                    cob.loadConstant(update.delta()).isub(); // Postfix yields the value before the update, which cannot overflow
+                }
+            }
+        }
+    }
+
+    /**
+     * Looked up on first use, like Calculator's, so the logging backend is only initialized when needed.
+     */
+    private static final class Log {
+        static final Logger logger = LoggerFactory.getLogger(BytecodeCompiler.class);
+    }
+}
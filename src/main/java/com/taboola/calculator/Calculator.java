@@ -3,80 +3,403 @@ package com.taboola.calculator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class Calculator {
 
-    private static final Logger logger = LoggerFactory.getLogger(Calculator.class);
+    /** Default number of compiled lines kept in the plan cache. */
+    public static final int DEFAULT_PLAN_CACHE_SIZE = 1024;
 
-    private final Map<String, Integer> variables = new LinkedHashMap<>();
+    /** Default number of executions after which a statement is compiled to bytecode. */
+    public static final int DEFAULT_COMPILE_THRESHOLD = 1000;
 
-    public void evaluate(String line) {
-        logger.info("Evaluating line: {}", line);
-        line = line.trim();
-        if (line.isEmpty()) {
-            logger.warn("Empty input line");
+    private final VariableStore variables = new VariableStore();
+    private final CompiledStatementCache plans;
+    private final int compileThreshold;
+
+    private CalculatorMetrics metrics;    // Null when metrics are disabled
+    private AssignmentJournal journal;    // Null when journaling is disabled
+    private ChangeTracker changes;        // Null when change tracking is disabled
+    private ExecutionTrace trace;         // Null when tracing is disabled
+    private SubexpressionCache subexpressions; // Null when subexpressions are not memoized
+    private long lineNumber;              // Number of the line being evaluated, for the trace
+    private boolean lineLogging = true;   // Per-line info logging
+
+    public Calculator() {
+        this(DEFAULT_PLAN_CACHE_SIZE);
+    }
+
+    /**
+     * @param planCacheSize maximum number of compiled lines to keep (0 disables caching)
+     */
+    public Calculator(int planCacheSize) {
+        this(planCacheSize, DEFAULT_COMPILE_THRESHOLD);
+    }
+
+    /**
+     * @param planCacheSize    maximum number of compiled lines to keep (0 disables caching)
+     * @param compileThreshold executions after which a cached statement is compiled to bytecode (0 disables it)
+     */
+    public Calculator(int planCacheSize, int compileThreshold) {
+        if (compileThreshold < 0) {
+            throw new IllegalArgumentException("Compile threshold cannot be negative: " + compileThreshold);
+        }
+        this.plans = new CompiledStatementCache(planCacheSize);
+        this.compileThreshold = compileThreshold;
+    }
+
+    /**
+     * Evaluates one line of {@code ;}-separated assignments, in order. The line is compiled as a whole,
+     * so a syntax error anywhere in it runs none of its statements. A statement failing at run time
+     * stops the line; the statements before it keep their effects.
+     * Any CharSequence is accepted, so streamed lines (see {@link ScriptReader})
+     * can be evaluated without building a String per line.
+     */
+    public void evaluate(CharSequence line) {
+        lineNumber++;
+        if (begin(line)) {
+            run(compile(line));
+        }
+    }
+
+    /**
+     * Evaluates the line like {@link #evaluate(CharSequence)}, but reports a syntax or arithmetic
+     * error as an {@link EvaluationResult} instead of throwing it. Meant for input with many bad lines:
+     * such errors are raised without stack traces and their messages are only formatted on request.
+     */
+    public EvaluationResult tryEvaluate(CharSequence line) {
+        return tryEvaluate(line, lineNumber + 1);
+    }
+
+    /**
+     * Like {@link #tryEvaluate(CharSequence)}, giving the line's number in its file to the trace
+     * (see {@link #setTrace(ExecutionTrace)}). Otherwise lines are numbered in the order they are evaluated.
+     */
+    public EvaluationResult tryEvaluate(CharSequence line, long lineNumber) {
+        this.lineNumber = lineNumber;
+        if (!begin(line)) {
+            return EvaluationResult.OK;
+        }
+        CompiledStatement first;
+        try {
+            first = compile(line);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            return EvaluationResult.failed(e, 0); // Compile errors carry their offset
+        }
+        ChangeTracker changes = this.changes;
+        for (CompiledStatement statement = first; statement != null; statement = statement.next()) {
+            if (changes != null) {
+                changes.before(statement, variables);
+            }
+            try {
+                execute(statement);
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                return EvaluationResult.failed(e, statement.getOffset());
+            } finally {
+                if (changes != null) {
+                    changes.record(statement, variables);
+                }
+            }
+        }
+        return EvaluationResult.OK;
+    }
+
+    /**
+     * Logs the line and resets the change tracker. Returns false if the line is blank.
+     */
+    private boolean begin(CharSequence line) {
+        if (lineLogging && Log.logger.isInfoEnabled()) {
+            Log.logger.info("Evaluating line: {}", line);
+        }
+        if (changes != null) {
+            changes.clear();
+        }
+        if (CharSequences.isBlank(line)) {
+            Log.logger.warn("Empty input line");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates a stream of lines with the same outcome as calling {@link #evaluate(CharSequence)}
+     * on each one in order and catching its exception, but pipelined: worker threads read, lex and
+     * compile lines ahead while the calling thread executes them. Errors are reported in line order,
+     * with 1-based line numbers. Blank lines are skipped. The caller closes the stream.
+     */
+    public void evaluateAll(Stream<String> lines, Consumer<LineError> onError) {
+        new PipelinedEvaluator(this, ForkJoinPool.commonPool(), PipelinedEvaluator.DEFAULT_CHUNK_SIZE,
+                PipelinedEvaluator.DEFAULT_QUEUE_CAPACITY, planCacheCapacity()).run(lines, onError);
+    }
+
+    /**
+     * Pipelined evaluation of the lines (see {@link #evaluateAll(Stream, Consumer)}), returning the errors in line order.
+     */
+    public List<LineError> evaluateAll(Stream<String> lines) {
+        List<LineError> errors = new ArrayList<>();
+        evaluateAll(lines, errors::add);
+        return errors;
+    }
+
+    /**
+     * Runs the statements of a compiled line, numbered as given for the trace.
+     */
+    void run(CompiledStatement first, long lineNumber) {
+        this.lineNumber = lineNumber;
+        run(first);
+    }
+
+    /**
+     * Runs the statements of a compiled line in order. A failing statement stops the line.
+     */
+    void run(CompiledStatement first) {
+        ChangeTracker changes = this.changes;
+        if (changes == null) {
+            for (CompiledStatement statement = first; statement != null; statement = statement.next()) {
+                execute(statement);
+            }
             return;
         }
+        changes.clear();
+        for (CompiledStatement statement = first; statement != null; statement = statement.next()) {
+            changes.before(statement, variables);
+            try {
+                execute(statement);
+            } finally {
+                changes.record(statement, variables);
+            }
+        }
+    }
 
-        String[] parts;
-        String varName;
-        String operator;
+    /**
+     * Runs an already compiled statement against this calculator's variables.
+     */
+    void execute(CompiledStatement statement) {
+        execute(statement, lineNumber);
+    }
 
-        if (line.contains("+=")) {
-            parts = line.split("\\+=");
-            operator = "+=";
-        } else if (line.contains("-=")) {
-            parts = line.split("-=");
-            operator = "-=";
-        } else if (line.contains("=")) {
-            parts = line.split("=");
-            operator = "=";
+    /**
+     * Runs an already compiled statement of the given line. Safe to call concurrently for statements
+     * with disjoint variables, as the parallel evaluator does.
+     */
+    void execute(CompiledStatement statement, long lineNumber) {
+        CalculatorMetrics metrics = this.metrics;
+        AssignmentJournal journal = this.journal;
+        ExecutionTrace trace = this.trace;
+        SubexpressionCache subexpressions = this.subexpressions;
+        if (metrics == null && journal == null && trace == null) {
+            statement.execute(variables, subexpressions);
         } else {
-            throw new IllegalArgumentException("Line must contain '=', '+=', or '-=' operator: " + line);
+            executeObserved(statement, lineNumber, metrics, journal, trace, subexpressions);
+        }
+        if (lineLogging && Log.logger.isInfoEnabled()) {
+            Log.logger.info("Assigned {} = {}", statement.getTarget(), variables.getNumber(statement.getTargetSlot()));
         }
+    }
 
-        if (parts.length != 2) {
-            throw new IllegalArgumentException("Invalid assignment expression: " + line);
+    /**
+     * Executes with metrics, journaling and/or tracing. The journal and the trace record the
+     * statement even when it fails, as increments made before the failure are kept.
+     */
+    private void executeObserved(CompiledStatement statement, long lineNumber, CalculatorMetrics metrics,
+                                 AssignmentJournal journal, ExecutionTrace trace, SubexpressionCache subexpressions) {
+        int target = statement.getTargetSlot();
+        int oldWidth = ExecutionTrace.widthCode(variables, target);
+        long oldValue = trace != null ? ExecutionTrace.valueOf(variables, target, oldWidth) : 0;
+        long start = metrics != null || trace != null ? System.nanoTime() : 0;
+        boolean failed = true;
+        try {
+            statement.execute(variables, subexpressions);
+            failed = false;
+            if (metrics != null) {
+                metrics.executed(System.nanoTime() - start, statement.next() == null);
+            }
+        } catch (RuntimeException e) {
+            if (metrics != null) {
+                metrics.failed(ErrorCode.of(e));
+            }
+            throw e;
+        } finally {
+            if (journal != null) {
+                journal.recordWrites(statement, variables);
+            }
+            if (trace != null) {
+                trace.record(lineNumber, target, oldWidth, oldValue, variables, failed, start, System.nanoTime() - start);
+            }
         }
+    }
+
+    VariableStore variables() {
+        return variables;
+    }
+
+    int planCacheCapacity() {
+        return plans.capacity();
+    }
 
-        varName = parts[0].trim();
-        if (!isValidVariableName(varName)) {
-            throw new IllegalArgumentException("Invalid variable name: " + varName);
+    /**
+     * Compiles a line into a reusable {@link CompiledStatement}, the first of its statements
+     * (see {@link CompiledStatement#next()}). The line is tokenized once, by the same grammar
+     * that reads the expressions. Compiled lines are cached by their text, so repeated lines
+     * are lexed and parsed only once.
+     */
+    public CompiledStatement compile(CharSequence line) {
+        CalculatorMetrics metrics = this.metrics;
+        CompiledStatement statement = plans.get(line);
+        if (statement != null) {
+            if (metrics != null) {
+                metrics.planCacheHit();
+            }
+            return statement;
         }
-        String expr = parts[1].trim();
 
-        Parser parser = new Parser(new Tokenizer(expr), variables);
-        int rightValue = parser.parseExpression();
+        String text = line.toString();
+        statement = compileMiss(text, metrics);
+        plans.put(text, statement);
+        return statement;
+    }
 
-        int newValue;
-        if ("=".equals(operator)) {
-            newValue = rightValue;
-        } else if ("+=".equals(operator)) {
-            if (!variables.containsKey(varName)) {
-                throw new IllegalArgumentException("Variable '" + varName + "' is not defined");
+    /**
+     * Lexes and compiles a line that is not in the plan cache, recording the miss.
+     * Safe to call from several threads, as the symbol table is thread-safe.
+     */
+    CompiledStatement compileMiss(String line, CalculatorMetrics metrics) {
+        long start = metrics != null ? System.nanoTime() : 0;
+        CompiledStatement statement;
+        try {
+            ExpressionCompiler compiler = new ExpressionCompiler(new Tokenizer(line), variables.symbols());
+            statement = compiler.compileStatements(compileThreshold);
+        } catch (RuntimeException e) {
+            if (metrics != null) {
+                metrics.planCacheMiss();
+                metrics.failed(ErrorCode.of(e));
             }
-            int oldValue = variables.get(varName);
-            newValue = oldValue + rightValue;
-        } else { // "-="
-            if (!variables.containsKey(varName)) {
-                throw new IllegalArgumentException("Variable '" + varName + "' is not defined");
+            throw e;
+        }
+        if (metrics != null) {
+            metrics.planCacheMiss();
+            metrics.compiled(System.nanoTime() - start);
+        }
+        return statement;
+    }
+
+    /**
+     * Enables metrics collection into the given instance, or disables it with null.
+     * Several calculators can share one instance; its variable count covers them all.
+     */
+    public void setMetrics(CalculatorMetrics metrics) {
+        if (this.metrics != null) {
+            this.metrics.detach(variables);
+        }
+        if (metrics != null) {
+            metrics.attach(variables);
+        }
+        this.metrics = metrics;
+    }
+
+    public CalculatorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Records every variable write into the given journal, or stops journaling with null.
+     * The caller owns the journal and closes it.
+     */
+    public void setJournal(AssignmentJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Records every executed statement into the given trace, or stops tracing with null.
+     * A trace belongs to one calculator.
+     */
+    public void setTrace(ExecutionTrace trace) {
+        if (trace != null) {
+            trace.attach(variables.symbols());
+        }
+        this.trace = trace;
+    }
+
+    public ExecutionTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Memoizes the values of side-effect-free subexpressions in the given cache, or stops with null.
+     * Results are the same either way; the cache's hit and miss counts tell whether it pays off.
+     */
+    public void setSubexpressionCache(SubexpressionCache subexpressions) {
+        this.subexpressions = subexpressions;
+    }
+
+    public SubexpressionCache getSubexpressionCache() {
+        return subexpressions;
+    }
+
+    /**
+     * Turns tracking of the variables written by each line on or off (off by default).
+     * See {@link #getLastChanges()}.
+     */
+    public void setChangeTracking(boolean enabled) {
+        if (enabled != (changes != null)) {
+            changes = enabled ? new ChangeTracker() : null;
+        }
+    }
+
+    /**
+     * Variables written by the last evaluated line, with their current values, in the order of the
+     * statements that first wrote them. Writes made before a failure count. Empty unless change tracking is on.
+     */
+    public Map<String, Number> getLastChanges() {
+        Map<String, Number> changed = new LinkedHashMap<>();
+        if (changes != null) {
+            SymbolTable symbols = variables.symbols();
+            for (int i = 0; i < changes.size(); i++) {
+                int slot = changes.slotAt(i);
+                changed.put(symbols.name(slot), variables.getNumber(slot));
             }
-            int oldValue = variables.get(varName);
-            newValue = oldValue - rightValue;
         }
+        return changed;
+    }
+
+    ChangeTracker changes() {
+        return changes;
+    }
+
+    /**
+     * Turns the per-line info logging ("Evaluating line", "Assigned") on or off.
+     * It is on by default; batch jobs should turn it off, as it dominates the cost of short lines.
+     */
+    public void setLineLogging(boolean enabled) {
+        this.lineLogging = enabled;
+    }
 
-        variables.put(varName, newValue);
-        logger.info("Assigned {} = {}", varName, newValue);
+    /**
+     * Read-only view of the variables in order of first assignment. Each value is an Integer,
+     * or a Long or BigInteger once it no longer fits (see {@link #getWidth(String)}).
+     */
+    public Map<String, Number> getVariables() {
+        return variables.asMap();
     }
 
-    public Map<String, Integer> getVariables() {
-        return Collections.unmodifiableMap(variables);
+    /**
+     * Width the variable's value is stored in, or null if the variable is not defined.
+     */
+    public NumericWidth getWidth(String name) {
+        return variables.getWidth(variables.symbols().lookup(name));
     }
 
-    private boolean isValidVariableName(String var) {
-        return var.matches("[a-zA-Z][a-zA-Z0-9_]*");
+    /**
+     * Looked up on first use: the first lookup initializes the logging backend, which costs more than
+     * a whole short run, so runs that log nothing never pay for it.
+     */
+    private static final class Log {
+        static final Logger logger = LoggerFactory.getLogger(Calculator.class);
     }
-}
\ No newline at end of file
+}
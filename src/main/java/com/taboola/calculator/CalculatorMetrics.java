@@ -0,0 +1,170 @@
+package com.taboola.calculator;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CalculatorMetrics collects throughput, error and latency numbers for one or more calculators
+ * (see {@link Calculator#setMetrics(CalculatorMetrics)}). All counters are {@link LongAdder}s,
+ * so calculators on different threads can share one instance.
+ * A calculator without metrics skips all of this, including the clock reads.
+ */
+public final class CalculatorMetrics implements CalculatorMetricsMXBean {
+
+    private final LongAdder linesEvaluated = new LongAdder();
+    private final LongAdder[] failures = new LongAdder[ErrorCode.values().length];
+    private final LongAdder planCacheHits = new LongAdder();
+    private final LongAdder planCacheMisses = new LongAdder();
+    private final Set<VariableStore> stores = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private final LatencyHistogram compileLatency = new LatencyHistogram();
+    private final LatencyHistogram executeLatency = new LatencyHistogram();
+
+    public CalculatorMetrics() {
+        for (int i = 0; i < failures.length; i++) {
+            failures[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server under
+     * {@code com.taboola.calculator:type=CalculatorMetrics,name=<name>}.
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("com.taboola.calculator:type=CalculatorMetrics,name="
+                    + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, objectName);
+            return objectName;
+        } catch (InstanceAlreadyExistsException e) {
+            throw new IllegalArgumentException("Metrics already registered under name: " + name, e);
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register metrics MBean", e);
+        }
+    }
+
+    void planCacheHit() {
+        planCacheHits.increment();
+    }
+
+    void planCacheMiss() {
+        planCacheMisses.increment();
+    }
+
+    void compiled(long nanos) {
+        compileLatency.record(nanos);
+    }
+
+    /**
+     * Counts the variables of the store in {@link #getVariableCount()} until it is detached.
+     * Stores are held weakly, so a discarded calculator stops counting.
+     */
+    void attach(VariableStore store) {
+        stores.add(store);
+    }
+
+    void detach(VariableStore store) {
+        stores.remove(store);
+    }
+
+    /**
+     * Records a statement that ran; the line is counted once its last statement has run.
+     * A failing statement ends its line, which {@link #failed} counts instead.
+     */
+    void executed(long nanos, boolean lastOfLine) {
+        executeLatency.record(nanos);
+        if (lastOfLine) {
+            linesEvaluated.increment();
+        }
+    }
+
+    /**
+     * Records a line that failed to compile or run, classified like {@link EvaluationResult#getCode()}.
+     */
+    void failed(ErrorCode code) {
+        linesEvaluated.increment();
+        failures[code.ordinal()].increment();
+    }
+
+    public long getFailures(ErrorCode code) {
+        return failures[code.ordinal()].sum();
+    }
+
+    @Override
+    public long getLinesEvaluated() {
+        return linesEvaluated.sum();
+    }
+
+    @Override
+    public long getLinesFailed() {
+        long total = 0;
+        for (LongAdder failure : failures) {
+            total += failure.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getFailuresByKind() {
+        Map<String, Long> byKind = new LinkedHashMap<>();
+        for (ErrorCode code : ErrorCode.values()) {
+            byKind.put(code.name(), getFailures(code));
+        }
+        return byKind;
+    }
+
+    @Override
+    public long getPlanCacheHits() {
+        return planCacheHits.sum();
+    }
+
+    @Override
+    public long getPlanCacheMisses() {
+        return planCacheMisses.sum();
+    }
+
+    @Override
+    public long getVariableCount() {
+        long total = 0;
+        synchronized (stores) {
+            for (VariableStore store : stores) {
+                total += store.size();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getCompileLatency() {
+        return compileLatency.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getExecuteLatency() {
+        return executeLatency.snapshot();
+    }
+
+    /**
+     * Clears counters and histograms. The variable count is not a counter: it is read from the attached calculators.
+     */
+    @Override
+    public void reset() {
+        linesEvaluated.reset();
+        for (LongAdder failure : failures) {
+            failure.reset();
+        }
+        planCacheHits.reset();
+        planCacheMisses.reset();
+        compileLatency.reset();
+        executeLatency.reset();
+    }
+}
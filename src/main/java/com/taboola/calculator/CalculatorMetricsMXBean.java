@@ -0,0 +1,42 @@
+package com.taboola.calculator;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link CalculatorMetrics}.
+ */
+public interface CalculatorMetricsMXBean {
+
+    /**
+     * Lines run to the end or failed, however many statements they hold.
+     */
+    long getLinesEvaluated();
+
+    long getLinesFailed();
+
+    /**
+     * Failed lines per {@link ErrorCode} name.
+     */
+    Map<String, Long> getFailuresByKind();
+
+    long getPlanCacheHits();
+
+    long getPlanCacheMisses();
+
+    /**
+     * Variables currently defined in the calculators using these metrics.
+     */
+    long getVariableCount();
+
+    /**
+     * Lexing and parsing of lines missing from the plan cache.
+     */
+    LatencyHistogram.Snapshot getCompileLatency();
+
+    /**
+     * Evaluation of the expression and assignment of the result, per statement.
+     */
+    LatencyHistogram.Snapshot getExecuteLatency();
+
+    void reset();
+}
@@ -0,0 +1,188 @@
+package com.taboola.calculator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * CalculatorServer serves independent calculator sessions over a local TCP socket.
+ * Every connection gets its own {@link Calculator}, so sessions share no mutable state,
+ * and is served by its own virtual thread, so idle sessions cost only their memory.
+ * <p>
+ * The protocol mirrors the interactive mode, one UTF-8 line per request:
+ * an assignment is answered with the session's variables, e.g. {@code (i=1,j=2)},
+ * a failed line with {@code Error: <message>}, blank lines are ignored and {@code exit} ends the session.
+ * Variables are printed by a {@link VariableWriter}, like the console output. Lines longer than
+ * {@link #MAX_LINE_LENGTH} characters are answered with an error and not evaluated.
+ */
+public final class CalculatorServer implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CalculatorServer.class);
+
+    /** Longest request line, in characters; longer lines are answered with an error. */
+    static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final ServerSocket serverSocket;
+    private final Supplier<Calculator> sessionFactory;
+    private final Set<Socket> sessions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sessionCounter = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Creates a server on the loopback interface, using a new {@link Calculator} per session
+     * with per-line logging turned off.
+     *
+     * @param port port to listen on (0 picks a free port, see {@link #getPort()})
+     */
+    public CalculatorServer(int port) throws IOException {
+        this(port, CalculatorServer::newSession);
+    }
+
+    public CalculatorServer(int port, Supplier<Calculator> sessionFactory) throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Starts accepting connections on a virtual thread and returns immediately.
+     */
+    public void start() {
+        Thread.ofVirtual().name("calculator-acceptor").start(this::acceptLoop);
+        logger.info("Calculator server listening on port {}", getPort());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Number of currently connected sessions.
+     */
+    public int getActiveSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Stops accepting connections and closes every open session.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (Socket socket : sessions) {
+            closeQuietly(socket);
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                sessions.add(socket);
+                Thread.ofVirtual()
+                        .name("calculator-session-" + sessionCounter.incrementAndGet())
+                        .start(() -> serve(socket));
+            } catch (IOException e) {
+                if (!closed) {
+                    logger.warn("Failed to accept connection: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        Calculator calculator = sessionFactory.get();
+        try (socket;
+             Reader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             VariableWriter out = new VariableWriter(socket.getOutputStream())) {
+            StringBuilder buffer = new StringBuilder();
+            while (readLine(in, buffer)) {
+                if (buffer.length() > MAX_LINE_LENGTH) {
+                    out.writeLine("Error: Line too long (more than " + MAX_LINE_LENGTH + " characters)");
+                    out.flush();
+                    continue;
+                }
+                String line = buffer.toString();
+                if (line.trim().equalsIgnoreCase("exit")) {
+                    break;
+                }
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                String error = null;
+                try {
+                    calculator.evaluate(line);
+                } catch (IllegalArgumentException | ArithmeticException e) {
+                    error = "Error: " + e.getMessage();
+                } catch (RuntimeException e) {
+                    error = "Unexpected error: " + e.getMessage(); // Keeps the session open, like the console
+                }
+                if (error == null) {
+                    out.writeVariables(calculator);
+                } else {
+                    out.writeLine(error);
+                }
+                out.flush();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            if (!closed) {
+                logger.debug("Session ended: {}", e.getMessage());
+            }
+        } finally {
+            sessions.remove(socket);
+        }
+    }
+
+    /**
+     * Reads the next line into the buffer, without its line break, and returns false at the end of
+     * the input. At most MAX_LINE_LENGTH + 1 characters are kept, so a longer line shows as too long
+     * and one client cannot fill the shared heap with an endless line.
+     */
+    private static boolean readLine(Reader in, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int ch;
+        while ((ch = in.read()) != -1) {
+            if (ch == '\n') {
+                if (line.length() > 0 && line.length() <= MAX_LINE_LENGTH && line.charAt(line.length() - 1) == '\r') {
+                    line.setLength(line.length() - 1);
+                }
+                return true;
+            }
+            if (line.length() <= MAX_LINE_LENGTH) {
+                line.append((char) ch);
+            }
+        }
+        return line.length() > 0; // A last line without a line break
+    }
+
+    private static Calculator newSession() {
+        Calculator calculator = new Calculator();
+        calculator.setLineLogging(false);
+        return calculator;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed by the session
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.taboola.calculator;
+
+import java.util.Arrays;
+
+/**
+ * Slots written by the current line, in the order of the statements that first wrote them, without duplicates.
+ * A slot counts as written when its {@link VariableStore#version(int) version} changed while a statement
+ * ran, so a statement that fails before its assignment only reports the increments it made.
+ * Each slot remembers the line (epoch) it was last recorded in, so clearing is O(1).
+ */
+final class ChangeTracker {
+    private final IntList slots = new IntList();
+    private int[] stamps = new int[16];  // Epoch in which each slot was last recorded
+    private int epoch = 1;
+    private long[] versions = new long[4]; // Versions of the running statement's writes before it ran
+
+    /**
+     * Starts a new line.
+     */
+    void clear() {
+        slots.size = 0;
+        if (++epoch == 0) {
+            Arrays.fill(stamps, 0); // Wrapped around: old stamps could match again
+            epoch = 1;
+        }
+    }
+
+    /**
+     * Remembers the versions of the variables the statement may write. Called before it runs.
+     */
+    void before(CompiledStatement statement, VariableStore variables) {
+        int[] writes = statement.slotUsage().writes();
+        if (writes.length > versions.length) {
+            versions = new long[Math.max(writes.length, versions.length * 2)];
+        }
+        for (int i = 0; i < writes.length; i++) {
+            versions[i] = variables.version(writes[i]);
+        }
+    }
+
+    /**
+     * Records the variables the statement wrote. Called after it ran, also when it failed.
+     */
+    void record(CompiledStatement statement, VariableStore variables) {
+        int[] writes = statement.slotUsage().writes();
+        for (int i = 0; i < writes.length; i++) {
+            int slot = writes[i];
+            if (variables.version(slot) == versions[i]) {
+                continue; // Not written, as the statement failed first
+            }
+            if (slot >= stamps.length) {
+                stamps = Arrays.copyOf(stamps, Math.max(slot + 1, stamps.length * 2));
+            }
+            if (stamps[slot] != epoch) {
+                stamps[slot] = epoch;
+                slots.add(slot);
+            }
+        }
+    }
+
+    int size() {
+        return slots.size;
+    }
+
+    int slotAt(int index) {
+        return slots.values[index];
+    }
+}
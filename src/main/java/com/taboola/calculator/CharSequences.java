@@ -0,0 +1,22 @@
+package com.taboola.calculator;
+
+/**
+ * Helpers for lines held as any {@link CharSequence}, such as the reused buffers of {@link ScriptReader}.
+ */
+public final class CharSequences {
+
+    private CharSequences() {
+    }
+
+    /**
+     * Returns true if the line is empty or only holds whitespace, like {@link String#isBlank()}.
+     */
+    public static boolean isBlank(CharSequence line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (!Character.isWhitespace(line.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,262 @@
+package com.taboola.calculator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * ChunkedBatchEvaluator compiles a script file on all cores ahead of running it. The file is split at
+ * line boundaries into chunks of about {@code chunkBytes} bytes, each chunk is memory-mapped and
+ * compiled on its own pool thread into compact arrays (byte range and compiled statement per
+ * non-blank line), and one sequential pass then executes the statements in line order.
+ * The pass starts on the first chunk as soon as it is compiled, while later chunks are still compiling.
+ * At most one chunk per pool thread, plus one, is compiled ahead of the pass, so memory stays bounded
+ * by the chunk size however large the file is.
+ * <p>
+ * Lines are split on the bytes, as '\n' and '\r' never occur inside a multi-byte UTF-8 character,
+ * and each line is decoded on its own. Chunks end after '\n' or a lone '\r', never between '\r' and '\n'. Each chunk has its own
+ * plan cache, so repeated lines are compiled once per chunk. The text of a line is only decoded again,
+ * from the mapped file, when it has to be reported.
+ * <p>
+ * The outcome is exactly that of calling {@link Calculator#evaluate(CharSequence)} on every line in
+ * order and catching its exception. Errors, compile errors included, carry their 1-based line numbers.
+ */
+public final class ChunkedBatchEvaluator {
+    static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+    private static final int BOUNDARY_SCAN_BYTES = 4096;
+
+    private final Calculator calculator;
+    private final ForkJoinPool pool;
+    private final int chunkBytes;
+
+    public ChunkedBatchEvaluator(Calculator calculator) {
+        this(calculator, ForkJoinPool.commonPool(), DEFAULT_CHUNK_BYTES);
+    }
+
+    public ChunkedBatchEvaluator(Calculator calculator, ForkJoinPool pool, int chunkBytes) {
+        if (chunkBytes <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkBytes);
+        }
+        this.calculator = calculator;
+        this.pool = pool;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Evaluates the file, reporting errors in line order as they happen. Blank lines are skipped.
+     * Throws IOException if the file cannot be read or is not valid UTF-8; lines before the
+     * malformed one have been evaluated by then.
+     */
+    public void evaluateAll(Path file, Consumer<LineError> onError) throws IOException {
+        int maxInFlight = pool.getParallelism() + 1; // Keeps every worker busy while one chunk runs
+        ArrayDeque<ForkJoinTask<Chunk>> tasks = new ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long next = 0;     // Offset of the next chunk to submit
+            long lineBase = 0; // Lines in the chunks before the current one
+            while (true) {
+                while (tasks.size() < maxInFlight && next < size) {
+                    long end = chunkEnd(channel, next, size);
+                    MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, next, end - next);
+                    tasks.add(pool.submit(() -> compile(bytes)));
+                    next = end;
+                }
+                ForkJoinTask<Chunk> task = tasks.poll();
+                if (task == null) {
+                    return;
+                }
+                Chunk chunk = task.join(); // Dropped once it has run
+                run(chunk, lineBase, onError);
+                if (chunk.malformedLength > 0) {
+                    throw new MalformedInputException(chunk.malformedLength);
+                }
+                lineBase += chunk.lines;
+            }
+        } finally {
+            for (ForkJoinTask<Chunk> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Executes the compiled lines of a chunk and reports their errors.
+     */
+    private void run(Chunk chunk, long lineBase, Consumer<LineError> onError) {
+        for (int i = 0; i < chunk.count; i++) {
+            long lineNumber = lineBase + chunk.lineIndexes[i] + 1;
+            RuntimeException error = chunk.errors != null ? chunk.errors[i] : null;
+            if (error == null) {
+                try {
+                    calculator.run(chunk.statements[i], lineNumber);
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+            }
+            if (error != null) {
+                onError.accept(new LineError(lineNumber, chunk.text(i), error));
+            }
+        }
+    }
+
+    /**
+     * Returns the offset just past the first line break at or after start + chunkBytes, or the file size.
+     * A line break is a '\n', or a '\r' that is not followed by '\n', so a chunk never ends inside "\r\n".
+     */
+    long chunkEnd(FileChannel channel, long start, long size) throws IOException {
+        long position = start + Math.min(chunkBytes, Integer.MAX_VALUE - BOUNDARY_SCAN_BYTES);
+        ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_BYTES + 1); // One more byte to see past a '\r'
+        while (position < size) {
+            scan.clear();
+            int read = channel.read(scan, position);
+            int scanned = position + read == size ? read : read - 1; // The last byte is only looked at past a '\r'
+            for (int i = 0; i < scanned; i++) {
+                byte b = scan.get(i);
+                if (b == '\n' || b == '\r' && (i + 1 == read || scan.get(i + 1) != '\n')) {
+                    return position + i + 1;
+                }
+            }
+            position += scanned;
+        }
+        return size;
+    }
+
+    /**
+     * Compile stage, run on a pool thread.
+     */
+    private Chunk compile(ByteBuffer bytes) {
+        Chunk chunk = new Chunk(bytes);
+        CompiledStatementCache plans = new CompiledStatementCache(calculator.planCacheCapacity());
+        CalculatorMetrics metrics = calculator.getMetrics();
+        CharsetDecoder decoder = newDecoder();
+        CharBuffer chars = CharBuffer.allocate(256);
+
+        int limit = bytes.limit();
+        int lineStart = 0;
+        for (int i = 0; i <= limit; i++) {
+            byte b = i < limit ? bytes.get(i) : (byte) '\n';
+            if (b != '\n' && b != '\r') {
+                continue;
+            }
+            if (i == limit && lineStart == limit) {
+                break; // No text after the last terminator
+            }
+            int lineEnd = i;
+            if (b == '\r' && i + 1 < limit && bytes.get(i + 1) == '\n') {
+                i++;
+            }
+            int lineIndex = chunk.lines++;
+
+            if (lineEnd - lineStart > chars.capacity()) {
+                chars = CharBuffer.allocate(Math.max(lineEnd - lineStart, 2 * chars.capacity()));
+            }
+            CoderResult decoded = decode(decoder, bytes, lineStart, lineEnd, chars);
+            if (decoded.isError()) {
+                chunk.malformedLength = decoded.length(); // Ends the chunk; reported after the lines before it
+                break;
+            }
+            if (!CharSequences.isBlank(chars)) {
+                CompiledStatement statement = null;
+                RuntimeException error = null;
+                try {
+                    statement = plans.get(chars);
+                    if (statement != null) {
+                        if (metrics != null) {
+                            metrics.planCacheHit();
+                        }
+                    } else {
+                        String text = chars.toString();
+                        statement = calculator.compileMiss(text, metrics);
+                        plans.put(text, statement);
+                    }
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+                chunk.add(lineIndex, lineStart, lineEnd, statement, error);
+            }
+            lineStart = i + 1;
+        }
+        return chunk;
+    }
+
+    private static CoderResult decode(CharsetDecoder decoder, ByteBuffer bytes, int start, int end, CharBuffer chars) {
+        decoder.reset();
+        chars.clear();
+        CoderResult result = decoder.decode(bytes.slice(start, end - start), chars, true);
+        if (!result.isError()) {
+            decoder.flush(chars);
+            chars.flip();
+        }
+        return result;
+    }
+
+    private static CharsetDecoder newDecoder() {
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    /**
+     * The compiled non-blank lines of one chunk of the file, in parallel arrays.
+     */
+    private static final class Chunk {
+        final ByteBuffer bytes;            // The chunk's mapping, to decode the lines that are reported
+        int lines;                         // Lines in the chunk, blank ones included
+        int count;                         // Non-blank lines
+        int malformedLength;               // Set if a line is not valid UTF-8; no lines follow it
+        int[] lineIndexes = new int[64];   // 0-based line in the chunk
+        int[] starts = new int[64];        // Byte range of the line in the chunk
+        int[] ends = new int[64];
+        CompiledStatement[] statements = new CompiledStatement[64];
+        RuntimeException[] errors;         // Compile error per line, allocated on the first one
+
+        Chunk(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        void add(int lineIndex, int start, int end, CompiledStatement statement, RuntimeException error) {
+            if (count == statements.length) {
+                int capacity = 2 * count;
+                lineIndexes = Arrays.copyOf(lineIndexes, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                statements = Arrays.copyOf(statements, capacity);
+                if (errors != null) {
+                    errors = Arrays.copyOf(errors, capacity);
+                }
+            }
+            if (error != null && errors == null) {
+                errors = new RuntimeException[statements.length];
+            }
+            lineIndexes[count] = lineIndex;
+            starts[count] = start;
+            ends[count] = end;
+            statements[count] = statement;
+            if (errors != null) {
+                errors[count] = error;
+            }
+            count++;
+        }
+
+        /**
+         * Decodes the text of the i-th non-blank line again, for an error report.
+         */
+        String text(int i) {
+            return StandardCharsets.UTF_8.decode(bytes.slice(starts[i], ends[i] - starts[i])).toString();
+        }
+    }
+}
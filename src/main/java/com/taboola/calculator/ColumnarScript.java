@@ -0,0 +1,479 @@
+package com.taboola.calculator;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ColumnarScript runs one script over many independent rows of input variables.
+ * The script is compiled once; inputs and results are {@code int[]} columns, one element per row,
+ * and every statement is applied to a block of rows at a time with {@code jdk.incubator.vector}
+ * operations (requires {@code --add-modules jdk.incubator.vector}).
+ * <p>
+ * Each row gives exactly the result of evaluating the script line by line in its own
+ * {@link Calculator}, starting from that row's inputs and catching errors per line:
+ * a line that fails in a row (division by zero, undefined variable) keeps the side effects
+ * that happened before the failure in that row, leaves its target unchanged and is reported
+ * as a {@link RowError}, while other rows are unaffected.
+ * <p>
+ * Columns are {@code int[]}, so unlike a {@link Calculator}, which widens such values to
+ * {@code long} or {@code BigInteger}, a row whose value leaves the {@code int} range at any step
+ * fails that line with an "Integer overflow" error. Overflow is detected with vector compares
+ * and costs nothing extra for rows that stay in range.
+ */
+public final class ColumnarScript {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final String OVERFLOW = "Integer overflow";
+    private static final int SAFE_FACTOR = 46340;  // Products of two factors within ±46340 fit in an int
+    static final int BLOCK_SIZE = 1024;  // Rows run through all statements before moving to the next block
+
+    /**
+     * A line that failed in one row. Line numbers count the script lines from 1.
+     */
+    public record RowError(int row, int lineNumber, String message) {
+    }
+
+    private final SymbolTable symbols;
+    private final CompiledStatement[] statements;  // Statements of all lines, in order
+    private final int[] lineNumbers;               // Script line of each statement
+
+    /**
+     * Compiles the script. Blank lines are skipped.
+     * Throws IllegalArgumentException (or ArithmeticException for a division by a literal zero)
+     * naming the line if a line does not compile, as it would fail in every row.
+     */
+    public ColumnarScript(List<String> lines) {
+        Calculator compiler = new Calculator();
+        this.symbols = compiler.variables().symbols();
+        List<CompiledStatement> compiled = new ArrayList<>();
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).isBlank()) continue;
+            CompiledStatement first;
+            try {
+                first = compiler.compile(lines.get(i));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Error in line " + (i + 1) + ": " + e.getMessage(), e);
+            } catch (ArithmeticException e) {
+                ArithmeticException error = new ArithmeticException("Error in line " + (i + 1) + ": " + e.getMessage());
+                error.initCause(e); // ArithmeticException has no constructor taking a cause
+                throw error;
+            }
+            for (CompiledStatement statement = first; statement != null; statement = statement.next()) {
+                compiled.add(statement);
+                numbers.add(i + 1);
+            }
+        }
+        this.statements = compiled.toArray(new CompiledStatement[0]);
+        this.lineNumbers = numbers.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Runs the script for every row. All input columns must have the same length, the number of rows.
+     * Input arrays are not modified. Not thread-safe: input names are added to the script's symbol table.
+     */
+    public Result evaluate(Map<String, int[]> inputs) {
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("At least one input column is required");
+        }
+        int rows = -1;
+        for (Map.Entry<String, int[]> input : inputs.entrySet()) {
+            if (rows >= 0 && input.getValue().length != rows) {
+                throw new IllegalArgumentException("Column '" + input.getKey() + "' has " + input.getValue().length
+                        + " rows, expected " + rows);
+            }
+            rows = input.getValue().length;
+        }
+        for (String name : inputs.keySet()) {
+            symbols.resolve(name);
+        }
+
+        Run run = new Run(rows, symbols.size());
+        inputs.forEach((name, column) -> run.setInput(symbols.lookup(name), column.clone()));
+        for (int from = 0; from < rows; from += BLOCK_SIZE) {
+            run.runBlock(from, Math.min(rows, from + BLOCK_SIZE));
+        }
+        return run.result();
+    }
+
+    /**
+     * Output columns of a run and the errors of every row.
+     */
+    public final class Result {
+        private final int rows;
+        private final int[][] values;
+        private final boolean[][] defined;  // null for columns defined in every row
+        private final boolean[] used;       // Slot is an input or defined in some row
+        private final List<RowError> errors;
+
+        private Result(int rows, int[][] values, boolean[][] defined, boolean[] used, List<RowError> errors) {
+            this.rows = rows;
+            this.values = values;
+            this.defined = defined;
+            this.used = used;
+            this.errors = errors;
+        }
+
+        public int getRowCount() {
+            return rows;
+        }
+
+        /**
+         * Values of the variable in every row, or null if no row defines it.
+         * Rows where the variable is not defined hold 0, see {@link #isDefined(String, int)}.
+         */
+        public int[] getColumn(String name) {
+            int slot = symbols.lookup(name);
+            return slot >= 0 && used[slot] ? values[slot] : null;
+        }
+
+        public boolean isDefined(String name, int row) {
+            int slot = symbols.lookup(name);
+            return slot >= 0 && used[slot] && (defined[slot] == null || defined[slot][row]);
+        }
+
+        /**
+         * The columns of all variables defined in at least one row.
+         */
+        public Map<String, int[]> getColumns() {
+            Map<String, int[]> columns = new LinkedHashMap<>();
+            for (int slot = 0; slot < values.length; slot++) {
+                if (used[slot]) {
+                    columns.put(symbols.name(slot), values[slot]);
+                }
+            }
+            return columns;
+        }
+
+        /**
+         * Failed lines, ordered by row and then by line.
+         */
+        public List<RowError> getErrors() {
+            return errors;
+        }
+    }
+
+    /**
+     * State of one {@link #evaluate(Map)} call.
+     */
+    private final class Run {
+        private final int rows;
+        private final int[][] values;
+        private final boolean[][] defined;  // null for inputs
+        private final boolean[] used;
+        private final List<RowError> errors = new ArrayList<>();
+        private final String[] undefinedMessages;
+
+        // Per block
+        private final boolean[] allDefined;  // Slot is defined in every row of the block
+        private final boolean[] active;      // Row has not failed the current statement
+        private final List<RowError> blockErrors = new ArrayList<>();
+        private final List<int[]> buffers = new ArrayList<>();  // Scratch column per expression depth
+        private int blockStart;
+        private int blockLength;
+        private int lineNumber;
+
+        Run(int rows, int slots) {
+            this.rows = rows;
+            this.values = new int[slots][];
+            this.defined = new boolean[slots][];
+            this.used = new boolean[slots];
+            this.undefinedMessages = new String[slots];
+            this.allDefined = new boolean[slots];
+            this.active = new boolean[BLOCK_SIZE];
+        }
+
+        void setInput(int slot, int[] column) {
+            values[slot] = column;
+            used[slot] = true;  // defined[slot] stays null: defined in every row
+        }
+
+        Result result() {
+            return new Result(rows, values, defined, used, errors);
+        }
+
+        void runBlock(int from, int to) {
+            blockStart = from;
+            blockLength = to - from;
+            for (int slot = 0; slot < values.length; slot++) {
+                allDefined[slot] = values[slot] != null && defined[slot] == null;
+            }
+            for (int i = 0; i < statements.length; i++) {
+                if (i == 0 || lineNumbers[i] != lineNumbers[i - 1]) {
+                    // A row that failed stays inactive for the rest of its line
+                    Arrays.fill(active, 0, blockLength, true);
+                }
+                lineNumber = lineNumbers[i];
+                runStatement(statements[i]);
+            }
+            blockErrors.sort(Comparator.comparingInt(RowError::row)); // Stable: lines stay in order
+            errors.addAll(blockErrors);
+            blockErrors.clear();
+        }
+
+        private void runStatement(CompiledStatement statement) {
+            int[] rhs = evaluate(statement.getExpression(), 0);
+
+            int slot = statement.getTargetSlot();
+            column(slot);
+            int[] target = values[slot];
+            if (statement.getOperator() != TokenType.ASSIGN) {
+                checkDefined(slot);
+                int sign = statement.getOperator() == TokenType.PLUS_ASSIGN ? 1 : -1;
+                for (int i = 0; i < blockLength; i++) {
+                    long value = target[blockStart + i] + sign * (long) rhs[i];
+                    if ((int) value != value) {
+                        fail(i, OVERFLOW);
+                    }
+                    rhs[i] = (int) value;
+                }
+            }
+
+            boolean allActive = true;
+            boolean anyActive = false;
+            for (int i = 0; i < blockLength; i++) {
+                if (active[i]) {
+                    target[blockStart + i] = rhs[i];
+                    if (defined[slot] != null) {
+                        defined[slot][blockStart + i] = true;
+                    }
+                    anyActive = true;
+                } else {
+                    allActive = false;
+                }
+            }
+            allDefined[slot] |= allActive;
+            used[slot] |= anyActive;
+        }
+
+        /**
+         * Evaluates the expression for the rows of the block into the scratch column of the depth.
+         * Values of inactive rows are meaningless. A variable that no row defines has no column:
+         * reading it fails every active row, so nothing needs to be computed.
+         */
+        private int[] evaluate(Expression expression, int depth) {
+            int[] out = buffer(depth);
+            switch (expression) {
+                case Expression.Literal literal -> Arrays.fill(out, 0, blockLength, literal.value());
+
+                case Expression.WideLiteral literal -> {
+                    for (int i = 0; i < blockLength; i++) {
+                        fail(i, OVERFLOW); // Out of the int range in every row
+                    }
+                }
+
+                case Expression.Variable variable -> {
+                    checkDefined(variable.slot());
+                    int[] column = values[variable.slot()];
+                    if (column != null) {
+                        System.arraycopy(column, blockStart, out, 0, blockLength);
+                    }
+                }
+
+                case Expression.Negate negate -> negate(evaluate(negate.operand(), depth));
+
+                case Expression.Chain chain -> {
+                    evaluate(chain.first(), depth);
+                    for (int k = 0; k < chain.operands().length; k++) {
+                        int[] rhs = evaluate(chain.operands()[k], depth + 1);
+                        switch (chain.operators()[k]) {
+                            case PLUS -> binary(out, rhs, VectorOperators.ADD);
+                            case MINUS -> binary(out, rhs, VectorOperators.SUB);
+                            case MUL -> binary(out, rhs, VectorOperators.MUL);
+                            case DIV -> divide(out, rhs);
+                            default -> throw new IllegalStateException("Unsupported operator: " + chain.operators()[k]);
+                        }
+                    }
+                }
+
+                case Expression.Update update -> {
+                    checkDefined(update.slot());
+                    int[] column = values[update.slot()];
+                    if (column != null) {
+                        increment(column, update.delta(), update.isPrefix(), out);
+                    }
+                }
+            }
+            return out;
+        }
+
+        private void negate(int[] column) {
+            int i = 0;
+            for (int upper = SPECIES.loopBound(blockLength); i < upper; i += SPECIES.length()) {
+                IntVector v = IntVector.fromArray(SPECIES, column, i);
+                failOverflows(i, v.eq(Integer.MIN_VALUE));
+                v.lanewise(VectorOperators.NEG).intoArray(column, i);
+            }
+            for (; i < blockLength; i++) {
+                if (column[i] == Integer.MIN_VALUE) {
+                    fail(i, OVERFLOW);
+                }
+                column[i] = -column[i];
+            }
+        }
+
+        /**
+         * Adds, subtracts or multiplies lane by lane. Active rows whose result does not fit in an int fail.
+         * Sums overflow when the result's sign differs from both operands' (from the minuend's and not
+         * the subtrahend's for a difference); products are only checked exactly in lanes with a large factor.
+         */
+        private void binary(int[] lhs, int[] rhs, VectorOperators.Binary op) {
+            int i = 0;
+            for (int upper = SPECIES.loopBound(blockLength); i < upper; i += SPECIES.length()) {
+                IntVector a = IntVector.fromArray(SPECIES, lhs, i);
+                IntVector b = IntVector.fromArray(SPECIES, rhs, i);
+                IntVector result = a.lanewise(op, b);
+                if (op == VectorOperators.ADD) {
+                    failOverflows(i, a.lanewise(VectorOperators.XOR, result)
+                            .lanewise(VectorOperators.AND, b.lanewise(VectorOperators.XOR, result)).lt(0));
+                } else if (op == VectorOperators.SUB) {
+                    failOverflows(i, a.lanewise(VectorOperators.XOR, b)
+                            .lanewise(VectorOperators.AND, a.lanewise(VectorOperators.XOR, result)).lt(0));
+                } else {
+                    VectorMask<Integer> large = a.add(SAFE_FACTOR).compare(VectorOperators.UNSIGNED_GT, 2 * SAFE_FACTOR)
+                            .or(b.add(SAFE_FACTOR).compare(VectorOperators.UNSIGNED_GT, 2 * SAFE_FACTOR));
+                    if (large.anyTrue()) {
+                        for (int lane = 0; lane < SPECIES.length(); lane++) {
+                            long product = (long) lhs[i + lane] * rhs[i + lane];
+                            if ((int) product != product) {
+                                fail(i + lane, OVERFLOW);
+                            }
+                        }
+                    }
+                }
+                result.intoArray(lhs, i);
+            }
+            for (; i < blockLength; i++) {
+                long result = op == VectorOperators.ADD ? (long) lhs[i] + rhs[i]
+                        : op == VectorOperators.SUB ? (long) lhs[i] - rhs[i]
+                        : (long) lhs[i] * rhs[i];
+                if ((int) result != result) {
+                    fail(i, OVERFLOW);
+                }
+                lhs[i] = (int) result;
+            }
+        }
+
+        private void failOverflows(int from, VectorMask<Integer> overflow) {
+            if (overflow.anyTrue()) {
+                for (int lane = overflow.firstTrue(); lane < SPECIES.length(); lane++) {
+                    if (overflow.laneIsSet(lane)) {
+                        fail(from + lane, OVERFLOW);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Divides lane by lane. Active rows dividing by zero fail, as do those dividing
+         * {@code Integer.MIN_VALUE} by -1; zero divisors are replaced by 1 so the vector
+         * division itself never throws.
+         */
+        private void divide(int[] lhs, int[] rhs) {
+            int i = 0;
+            for (int upper = SPECIES.loopBound(blockLength); i < upper; i += SPECIES.length()) {
+                IntVector a = IntVector.fromArray(SPECIES, lhs, i);
+                IntVector b = IntVector.fromArray(SPECIES, rhs, i);
+                failOverflows(i, a.eq(Integer.MIN_VALUE).and(b.eq(-1)));
+                VectorMask<Integer> zero = b.eq(0);
+                if (zero.anyTrue()) {
+                    for (int lane = 0; lane < SPECIES.length(); lane++) {
+                        if (rhs[i + lane] == 0) {
+                            fail(i + lane, "Division by zero");
+                        }
+                    }
+                    b = b.blend(1, zero);
+                }
+                a.lanewise(VectorOperators.DIV, b).intoArray(lhs, i);
+            }
+            for (; i < blockLength; i++) {
+                if (rhs[i] == 0) {
+                    fail(i, "Division by zero");
+                } else {
+                    if (lhs[i] == Integer.MIN_VALUE && rhs[i] == -1) {
+                        fail(i, OVERFLOW);
+                    }
+                    lhs[i] /= rhs[i];
+                }
+            }
+        }
+
+        /**
+         * Adds delta to the variable in the active rows and writes the updated (prefix)
+         * or previous (postfix) values to out. Rows where the variable is already at the end
+         * of the int range fail without being updated.
+         */
+        private void increment(int[] column, int delta, boolean prefix, int[] out) {
+            int limit = delta > 0 ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+            int i = 0;
+            for (int upper = SPECIES.loopBound(blockLength); i < upper; i += SPECIES.length()) {
+                IntVector previous = IntVector.fromArray(SPECIES, column, blockStart + i);
+                failOverflows(i, previous.eq(limit));
+                VectorMask<Integer> mask = VectorMask.fromArray(SPECIES, active, i);
+                IntVector updated = previous.lanewise(VectorOperators.ADD, delta, mask);
+                updated.intoArray(column, blockStart + i);
+                (prefix ? updated : previous).intoArray(out, i);
+            }
+            for (; i < blockLength; i++) {
+                int previous = column[blockStart + i];
+                if (previous == limit) {
+                    fail(i, OVERFLOW);
+                }
+                if (active[i]) {
+                    column[blockStart + i] = previous + delta;
+                }
+                out[i] = prefix ? previous + delta : previous;
+            }
+        }
+
+        /**
+         * Fails the active rows of the block where the variable is not defined.
+         */
+        private void checkDefined(int slot) {
+            if (allDefined[slot]) {
+                return;
+            }
+            boolean[] rowDefined = defined[slot];  // null if never assigned, as inputs returned above
+            for (int i = 0; i < blockLength; i++) {
+                if (active[i] && (rowDefined == null || !rowDefined[blockStart + i])) {
+                    if (undefinedMessages[slot] == null) {
+                        undefinedMessages[slot] = "Variable '" + symbols.name(slot) + "' is not defined";
+                    }
+                    fail(i, undefinedMessages[slot]);
+                }
+            }
+        }
+
+        private void fail(int row, String message) {
+            if (active[row]) {
+                active[row] = false;
+                blockErrors.add(new RowError(blockStart + row, lineNumber, message));
+            }
+        }
+
+        /**
+         * Allocates the column of an assigned variable that is not an input.
+         */
+        private void column(int slot) {
+            if (values[slot] == null) {
+                values[slot] = new int[rows];
+                defined[slot] = new boolean[rows];
+            }
+        }
+
+        private int[] buffer(int depth) {
+            while (buffers.size() <= depth) {
+                buffers.add(new int[BLOCK_SIZE]);
+            }
+            return buffers.get(depth);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.taboola.calculator;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * CompiledStatement is the ready-to-run form of one assignment statement (e.g., x += i++ * 2).
+ * It is produced once by {@link Calculator#compile(CharSequence)} and can be executed repeatedly
+ * without lexing or parsing the line again. What it computes never changes, but it keeps
+ * execution state: the run count and bytecode of its tier, the rollback buffer of its
+ * increments, and the slot usage and cache plan computed on first use.
+ * A line holding several {@code ;}-separated statements compiles to its first statement,
+ * with the others reachable through {@link #next()}.
+ * Variables are bound to slots of the compiling calculator's {@link SymbolTable},
+ * so a statement must be executed against a {@link VariableStore} using that table.
+ * <p>
+ * Execution is tiered: a statement starts in the tree interpreter and, once it has run
+ * {@code compileThreshold} times, its expression is compiled to bytecode by
+ * {@link BytecodeCompiler}. The tier switch is invisible to callers: results, side effects
+ * and errors are the same in both tiers.
+ * <p>
+ * Values are exact. A statement first runs in {@code int} arithmetic, which allocates nothing;
+ * if a value overflows, or a variable it uses already holds a wider value, the increments it made
+ * are rolled back and it runs again in {@code long}, and then in {@link java.math.BigInteger}.
+ * <p>
+ * Thread safety: a statement must never run on two threads at once. The run count, the bytecode
+ * and the rollback buffer are plain fields, updated without synchronization. The engines that
+ * share compiled statements across threads keep to this rule. Worker threads only compile lines.
+ * Concurrent evaluators only run statements with disjoint writes, and two runs of one statement
+ * write the same variables. Slot usage and cache plans are immutable and computed the same way on
+ * any thread, so computing them on several threads at once only wastes a little work.
+ */
+public final class CompiledStatement {
+    private final String target;          // Variable being assigned
+    private final int targetSlot;         // Slot of the target variable
+    private final TokenType operator;     // ASSIGN, PLUS_ASSIGN or MINUS_ASSIGN
+    private final Expression expression;  // Right-hand side
+    private final int compileThreshold;   // Executions before tiering up (0 = never)
+    private final CompiledStatement next; // Following statement on the same line, or null
+    private final int offset;             // Offset of the statement in its line
+
+    private ExpressionCode compiledCode;  // Generated bytecode, null while interpreted
+    private int executions;
+    private SlotUsage slotUsage;          // Computed on first use
+    private SubexpressionCache.Plan cachePlan; // Computed on first run with a subexpression cache
+    private final boolean wide;           // Holds a literal too large for an int, so never runs in int
+    private final int[] updateSlots;      // Variables the expression increments or decrements, null if none
+    private final long[] savedValues;     // Their values before the current attempt, for rollback
+
+    public CompiledStatement(String target, int targetSlot, TokenType operator, Expression expression) {
+        this(target, targetSlot, operator, expression, 0);
+    }
+
+    public CompiledStatement(String target, int targetSlot, TokenType operator, Expression expression,
+                             int compileThreshold) {
+        this(target, targetSlot, operator, expression, compileThreshold, 0, null);
+    }
+
+    CompiledStatement(String target, int targetSlot, TokenType operator, Expression expression,
+                      int compileThreshold, int offset, CompiledStatement next) {
+        if (compileThreshold < 0) {
+            throw new IllegalArgumentException("Compile threshold cannot be negative: " + compileThreshold);
+        }
+        this.target = target;
+        this.targetSlot = targetSlot;
+        this.operator = operator;
+        this.expression = expression;
+        this.compileThreshold = compileThreshold;
+        this.next = next;
+        this.offset = offset;
+        this.wide = hasWideLiteral(expression);
+        this.updateSlots = hasUpdates(expression) ? slotUsage().writes() : null;
+        this.savedValues = updateSlots != null ? new long[updateSlots.length] : null;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public int getTargetSlot() {
+        return targetSlot;
+    }
+
+    public TokenType getOperator() {
+        return operator;
+    }
+
+    public Expression getExpression() {
+        return expression;
+    }
+
+    /**
+     * The statement that follows this one on the same line, or null if this is the last one.
+     */
+    public CompiledStatement next() {
+        return next;
+    }
+
+    /**
+     * Offset of the statement's first character in the compiled line.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns true once the expression runs as generated bytecode instead of being interpreted.
+     */
+    public boolean isCompiledToBytecode() {
+        return compiledCode != null;
+    }
+
+    /**
+     * Variables the statement reads and writes, computed once.
+     */
+    SlotUsage slotUsage() {
+        SlotUsage usage = slotUsage;
+        if (usage == null) {
+            usage = SlotUsage.of(this);
+            slotUsage = usage;
+        }
+        return usage;
+    }
+
+    /**
+     * Executes the statement against the given variables.
+     * The right-hand side is evaluated first, so its increments are applied even if
+     * a compound assignment then fails because the target is not defined.
+     */
+    public void execute(VariableStore variables) {
+        execute(variables, null);
+    }
+
+    /**
+     * Executes the statement, looking its pure subexpressions up in the cache when one is given.
+     * The cache replaces both tiers for the {@code int} attempt, so runs with a cache do not count
+     * towards compiling the statement to bytecode.
+     */
+    void execute(VariableStore variables, SubexpressionCache cache) {
+        if (wide || savedValues != null && !saveUpdates(variables, NumericWidth.INT)) {
+            executeWide(variables);
+            return;
+        }
+        try {
+            int rightValue;
+            ExpressionCode code = compiledCode;
+            if (cache != null) {
+                SubexpressionCache.Plan plan = cachePlan;
+                if (plan == null) {
+                    plan = SubexpressionCache.plan(expression);
+                    cachePlan = plan;
+                }
+                rightValue = plan.evaluate(cache, variables);
+            } else if (code != null) {
+                rightValue = code.evaluate(variables);
+            } else {
+                rightValue = expression.evaluate(variables);
+                if (++executions == compileThreshold) {
+                    compiledCode = BytecodeCompiler.compile(expression);
+                }
+            }
+
+            int newValue;
+            if (operator == TokenType.ASSIGN) {
+                newValue = rightValue;
+            } else {
+                int oldValue = variables.get(targetSlot);
+                newValue = operator == TokenType.PLUS_ASSIGN
+                        ? ExpressionSupport.add(oldValue, rightValue) : ExpressionSupport.subtract(oldValue, rightValue);
+            }
+            variables.set(targetSlot, newValue);
+        } catch (NumericOverflow e) {
+            restoreUpdates(variables);
+            executeWide(variables);
+        }
+    }
+
+    /**
+     * Runs the statement in long arithmetic, or in BigInteger arithmetic if that overflows too.
+     */
+    private void executeWide(VariableStore variables) {
+        if (savedValues == null || saveUpdates(variables, NumericWidth.LONG)) {
+            try {
+                long rightValue = WideEvaluator.evaluateLong(expression, variables);
+                long newValue;
+                if (operator == TokenType.ASSIGN) {
+                    newValue = rightValue;
+                } else {
+                    long oldValue = variables.getLong(targetSlot);
+                    newValue = operator == TokenType.PLUS_ASSIGN
+                            ? ExpressionSupport.add(oldValue, rightValue) : ExpressionSupport.subtract(oldValue, rightValue);
+                }
+                variables.setLong(targetSlot, newValue);
+                return;
+            } catch (NumericOverflow e) {
+                restoreUpdates(variables);
+            }
+        }
+
+        BigInteger rightValue = WideEvaluator.evaluateBig(expression, variables);
+        BigInteger newValue;
+        if (operator == TokenType.ASSIGN) {
+            newValue = rightValue;
+        } else {
+            BigInteger oldValue = variables.getBig(targetSlot);
+            newValue = operator == TokenType.PLUS_ASSIGN ? oldValue.add(rightValue) : oldValue.subtract(rightValue);
+        }
+        variables.setBig(targetSlot, newValue);
+    }
+
+    /**
+     * Saves the values of the incremented variables before an attempt at the given width.
+     * Returns false if one of them is already wider, as the attempt would overflow anyway.
+     * Undefined variables need no saving: the increment fails before defining them.
+     */
+    private boolean saveUpdates(VariableStore variables, NumericWidth width) {
+        for (int i = 0; i < updateSlots.length; i++) {
+            NumericWidth current = variables.getWidth(updateSlots[i]);
+            if (current == null) {
+                continue;
+            }
+            if (current.compareTo(width) > 0) {
+                return false;
+            }
+            savedValues[i] = variables.getLong(updateSlots[i]);
+        }
+        return true;
+    }
+
+    private void restoreUpdates(VariableStore variables) {
+        if (savedValues == null) {
+            return;
+        }
+        for (int i = 0; i < updateSlots.length; i++) {
+            if (variables.isDefined(updateSlots[i])) {
+                variables.setLong(updateSlots[i], savedValues[i]);
+            }
+        }
+    }
+
+    private static boolean hasUpdates(Expression expression) {
+        return switch (expression) {
+            case Expression.Literal literal -> false;
+            case Expression.WideLiteral literal -> false;
+            case Expression.Variable variable -> false;
+            case Expression.Update update -> true;
+            case Expression.Negate negate -> hasUpdates(negate.operand());
+            case Expression.Chain chain -> hasUpdates(chain.first())
+                    || Arrays.stream(chain.operands()).anyMatch(CompiledStatement::hasUpdates);
+        };
+    }
+
+    private static boolean hasWideLiteral(Expression expression) {
+        return switch (expression) {
+            case Expression.WideLiteral literal -> true;
+            case Expression.Negate negate -> hasWideLiteral(negate.operand());
+            case Expression.Chain chain -> hasWideLiteral(chain.first())
+                    || Arrays.stream(chain.operands()).anyMatch(CompiledStatement::hasWideLiteral);
+            default -> false;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledStatement{" + "target='" + target + '\'' + ", operator=" + operator
+                + ", expression=" + expression + (next != null ? ", next=" + next : "") + '}';
+    }
+}
@@ -0,0 +1,87 @@
+package com.taboola.calculator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of compiled statements keyed by the source line text.
+ * Lines that repeat in a script are lexed and parsed only once while they stay in the cache.
+ * Lookups accept any {@link CharSequence}, so a streamed line can be found without
+ * turning it into a String first.
+ */
+final class CompiledStatementCache {
+    private final int capacity;
+    private final LinkedHashMap<LineKey, CompiledStatement> entries;
+    private final LineKey probe = new LineKey(); // Reused for lookups
+
+    CompiledStatementCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Cache capacity cannot be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LineKey, CompiledStatement> eldest) {
+                return size() > CompiledStatementCache.this.capacity;
+            }
+        };
+    }
+
+    CompiledStatement get(CharSequence line) {
+        if (capacity == 0) {
+            return null;
+        }
+        probe.set(line);
+        try {
+            return entries.get(probe);
+        } finally {
+            probe.set(null);
+        }
+    }
+
+    void put(String line, CompiledStatement statement) {
+        if (capacity > 0) {
+            LineKey key = new LineKey();
+            key.set(line);
+            entries.put(key, statement);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Map key comparing lines by content. Stored keys hold a String,
+     * the lookup probe holds whatever sequence is being looked up.
+     */
+    private static final class LineKey {
+        private CharSequence text;
+        private int hash;
+
+        void set(CharSequence text) {
+            this.text = text;
+            if (text != null) {
+                int h = 0;
+                for (int i = 0; i < text.length(); i++) {
+                    h = 31 * h + text.charAt(i);
+                }
+                this.hash = h;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof LineKey other && hash == other.hash && CharSequence.compare(text, other.text) == 0;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.taboola.calculator;
+
+/**
+ * Signals a division by zero. Like {@link NumericOverflow}, a single instance without a stack trace
+ * is thrown at runtime, so lines that divide by zero cost no more than those that do not. A division
+ * by a literal zero, found when compiling, is thrown as its own instance carrying the offset of the
+ * statement, as the line's statements have no offsets yet when it is run.
+ */
+final class DivisionByZero extends ArithmeticException {
+    static final DivisionByZero INSTANCE = new DivisionByZero(-1);
+
+    private final int offset;
+
+    private DivisionByZero(int offset) {
+        super("Division by zero");
+        this.offset = offset;
+    }
+
+    /**
+     * A division by zero in the statement starting at the offset.
+     */
+    static DivisionByZero at(int offset) {
+        return new DivisionByZero(offset);
+    }
+
+    /**
+     * Offset of the failing statement in the line, or -1 if unknown.
+     */
+    int getOffset() {
+        return offset;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this; // Thrown as a constant, the stack trace would be wrong anyway
+    }
+}
@@ -0,0 +1,29 @@
+package com.taboola.calculator;
+
+/**
+ * Why a line failed, as reported by {@link EvaluationResult} and counted by {@link ErrorStatistics}.
+ */
+public enum ErrorCode {
+    UNEXPECTED_CHARACTER,   // A character that starts no token
+    INVALID_VARIABLE_NAME,  // A statement that does not start with a name, or a name ending with '_'
+    EXPECTED_ASSIGNMENT,    // A statement target not followed by '=', '+=' or '-='
+    EXPECTED_VARIABLE,      // '++' or '--' not followed by a variable
+    UNEXPECTED_TOKEN,       // A token where the grammar does not allow it
+    NUMBER_TOO_LARGE,       // A literal that does not fit in an int, in Parser's int-only evaluation
+    UNDEFINED_VARIABLE,     // A variable read before being assigned
+    DIVISION_BY_ZERO,
+    OTHER;
+
+    /**
+     * Classifies an error thrown by {@link Calculator#evaluate(CharSequence)}.
+     */
+    public static ErrorCode of(Throwable error) {
+        if (error instanceof EvaluationException e) {
+            return e.getCode();
+        }
+        if (error instanceof DivisionByZero) {
+            return DIVISION_BY_ZERO;
+        }
+        return OTHER;
+    }
+}
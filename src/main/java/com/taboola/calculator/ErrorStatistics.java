@@ -0,0 +1,71 @@
+package com.taboola.calculator;
+
+import java.util.Arrays;
+
+/**
+ * ErrorStatistics counts the failed lines of a batch by {@link ErrorCode}, remembering the first
+ * line each kind of error appeared on, for a summary at the end of the run. Not thread-safe:
+ * errors are recorded where they are reported, in line order.
+ */
+public final class ErrorStatistics {
+    private final long[] counts = new long[ErrorCode.values().length];
+    private final long[] firstLines = new long[ErrorCode.values().length];
+    private long total;
+
+    /**
+     * Records a failed line by its 1-based number.
+     */
+    public void record(ErrorCode code, long lineNumber) {
+        int kind = code.ordinal();
+        if (counts[kind]++ == 0) {
+            firstLines[kind] = lineNumber;
+        }
+        total++;
+    }
+
+    /**
+     * Records a line that failed with the exception, classified by {@link ErrorCode#of(Throwable)}.
+     */
+    public void record(Throwable error, long lineNumber) {
+        record(ErrorCode.of(error), lineNumber);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getCount(ErrorCode code) {
+        return counts[code.ordinal()];
+    }
+
+    /**
+     * Number of the first line that failed with the code, or 0 if none did.
+     */
+    public long getFirstLine(ErrorCode code) {
+        return firstLines[code.ordinal()];
+    }
+
+    /**
+     * One line such as {@code Errors: 3 (UNDEFINED_VARIABLE: 2, first in line 4; DIVISION_BY_ZERO: 1, first in line 7)},
+     * listing the codes from the most to the least frequent.
+     */
+    public String summary() {
+        ErrorCode[] codes = ErrorCode.values().clone();
+        Arrays.sort(codes, (a, b) -> Long.compare(counts[b.ordinal()], counts[a.ordinal()]));
+        StringBuilder text = new StringBuilder("Errors: ").append(total);
+        String separator = " (";
+        for (ErrorCode code : codes) {
+            if (counts[code.ordinal()] > 0) {
+                text.append(separator).append(code).append(": ").append(counts[code.ordinal()])
+                        .append(", first in line ").append(firstLines[code.ordinal()]);
+                separator = "; ";
+            }
+        }
+        return total > 0 ? text.append(')').toString() : text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return summary();
+    }
+}
@@ -0,0 +1,73 @@
+package com.taboola.calculator;
+
+/**
+ * The IllegalArgumentException thrown for syntax errors and undefined variables. It carries an
+ * {@link ErrorCode} and the offset of the error in the line, and is cheap to throw: it has no stack
+ * trace, and its message is only built when {@link #getMessage()} is called, as
+ * prefix + the detail text + suffix. Bad lines are expected input, not program errors, and
+ * {@link Calculator#tryEvaluate(CharSequence)} turns them into results without ever reading the message.
+ * <p>
+ * The detail is a range of the input, so the input must not change until the message has been read;
+ * {@link Calculator} always compiles from a String.
+ */
+final class EvaluationException extends IllegalArgumentException {
+    private final ErrorCode code;
+    private final int offset;
+    private final String prefix;
+    private final String suffix;
+    private final CharSequence source;
+    private final int start;
+    private final int end;
+    private String message;  // Built on first use
+
+    /**
+     * @param offset offset of the error in the line, or -1 if unknown
+     */
+    EvaluationException(ErrorCode code, int offset, String prefix, CharSequence source, int start, int end, String suffix) {
+        this.code = code;
+        this.offset = offset;
+        this.prefix = prefix;
+        this.source = source;
+        this.start = start;
+        this.end = end;
+        this.suffix = suffix;
+    }
+
+    /**
+     * An error whose message is the prefix followed by the current token's text.
+     */
+    static EvaluationException atToken(ErrorCode code, String prefix, Tokenizer tokenizer) {
+        return new EvaluationException(code, tokenizer.start(), prefix, tokenizer.input(),
+                tokenizer.start(), tokenizer.end(), "");
+    }
+
+    /**
+     * An error with a constant message.
+     */
+    static EvaluationException of(ErrorCode code, int offset, String message) {
+        return new EvaluationException(code, offset, message, "", 0, 0, "");
+    }
+
+    ErrorCode getCode() {
+        return code;
+    }
+
+    int getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String getMessage() {
+        String text = message;
+        if (text == null) {
+            text = prefix + source.subSequence(start, end) + suffix;
+            message = text;
+        }
+        return text;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this; // Expected for bad input; the stack trace is never used
+    }
+}
@@ -0,0 +1,72 @@
+package com.taboola.calculator;
+
+/**
+ * Outcome of {@link Calculator#tryEvaluate(CharSequence)}: success, or the {@link ErrorCode} of the
+ * failure and where in the line it happened. The message is formatted only if {@link #getMessage()}
+ * is called, so counting or skipping bad lines costs no string building.
+ */
+public final class EvaluationResult {
+    /** The line was evaluated. */
+    public static final EvaluationResult OK = new EvaluationResult(null, -1, null);
+
+    private final ErrorCode code;
+    private final int offset;
+    private final RuntimeException error;  // Formats the message on demand
+
+    private EvaluationResult(ErrorCode code, int offset, RuntimeException error) {
+        this.code = code;
+        this.offset = offset;
+        this.error = error;
+    }
+
+    /**
+     * The result of a line that failed with the error. An error that does not know its position
+     * (a runtime error) is placed at the start of the failing statement.
+     */
+    static EvaluationResult failed(RuntimeException error, int statementOffset) {
+        int offset = offsetOf(error);
+        return new EvaluationResult(ErrorCode.of(error), offset >= 0 ? offset : statementOffset, error);
+    }
+
+    /**
+     * Offset the error was thrown with, or -1 if it does not know its position.
+     */
+    private static int offsetOf(RuntimeException error) {
+        return switch (error) {
+            case EvaluationException e -> e.getOffset();
+            case DivisionByZero e -> e.getOffset();
+            default -> -1;
+        };
+    }
+
+    public boolean isOk() {
+        return code == null;
+    }
+
+    /**
+     * Why the line failed, or null if it did not.
+     */
+    public ErrorCode getCode() {
+        return code;
+    }
+
+    /**
+     * Offset in the line of the character or statement at fault, or -1 if the line did not fail
+     * or the position is not known.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * The message {@link Calculator#evaluate(CharSequence)} would have thrown, or null if the line did not fail.
+     */
+    public String getMessage() {
+        return error != null ? error.getMessage() : null;
+    }
+
+    @Override
+    public String toString() {
+        return isOk() ? "OK" : code + " at " + offset + ": " + getMessage();
+    }
+}
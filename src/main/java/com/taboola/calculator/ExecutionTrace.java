@@ -0,0 +1,208 @@
+package com.taboola.calculator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ExecutionTrace keeps the last N statements a calculator executed (see {@link Calculator#setTrace(ExecutionTrace)}):
+ * line number, target, value before and after, start time and duration. Records are written into one
+ * preallocated {@code long[]} used as a ring buffer, so recording allocates nothing and the trace can
+ * stay on for full-size runs. When a run ends with a wrong value, {@link #dump(Appendable)} shows
+ * how the last writes got there and which lines took the most time.
+ * <p>
+ * Values wider than a {@code long} are marked as such rather than recorded. Statements are recorded
+ * from any thread, but a record being overwritten while it is read may be torn, so dump the trace
+ * when the calculator is idle, e.g. after a failure or at the end of a run.
+ */
+public final class ExecutionTrace {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final int STRIDE = 6;       // Longs per record
+    private static final int LINE = 0;
+    private static final int SLOT_AND_FLAGS = 1; // Slot << 32 | old width << 8 | new width << 1 | failed
+    private static final int OLD_VALUE = 2;
+    private static final int NEW_VALUE = 3;
+    private static final int START = 4;
+    private static final int DURATION = 5;
+    private static final int SLOWEST_LINES = 10;
+
+    /**
+     * One executed statement. A width is null when the variable was undefined; a BIG value is not recorded (0).
+     */
+    public record Entry(long lineNumber, String target, NumericWidth oldWidth, long oldValue,
+                        NumericWidth newWidth, long newValue, boolean failed, long startNanos, long durationNanos) {
+    }
+
+    private final long[] records;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong(); // Records ever written
+    private volatile SymbolTable symbols;             // Names the targets; set when attached to a calculator
+
+    public ExecutionTrace() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of statements kept, rounded up to a power of two
+     */
+    public ExecutionTrace(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 20) {
+            throw new IllegalArgumentException("Trace capacity must be between 1 and " + (1 << 20) + ": " + capacity);
+        }
+        int size = Math.max(1, Integer.highestOneBit(capacity - 1) << 1);
+        this.records = new long[size * STRIDE];
+        this.mask = size - 1;
+    }
+
+    void attach(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Records a statement; the old value is read before it ran, the new one from the variables afterwards.
+     */
+    void record(long lineNumber, int slot, int oldWidth, long oldValue, VariableStore variables,
+                boolean failed, long start, long duration) {
+        int base = (int) (next.getAndIncrement() & mask) * STRIDE;
+        int newWidth = widthCode(variables, slot);
+        long[] r = records;
+        r[base + LINE] = lineNumber;
+        r[base + SLOT_AND_FLAGS] = (long) slot << 32 | oldWidth << 8 | newWidth << 1 | (failed ? 1 : 0);
+        r[base + OLD_VALUE] = oldValue;
+        r[base + NEW_VALUE] = valueOf(variables, slot, newWidth);
+        r[base + START] = start;
+        r[base + DURATION] = duration;
+    }
+
+    /**
+     * Width of the variable as 0 (undefined) or 1 + {@link NumericWidth#ordinal()}.
+     */
+    static int widthCode(VariableStore variables, int slot) {
+        NumericWidth width = variables.getWidth(slot);
+        return width == null ? 0 : width.ordinal() + 1;
+    }
+
+    static long valueOf(VariableStore variables, int slot, int widthCode) {
+        return widthCode == 1 || widthCode == 2 ? variables.getLong(slot) : 0;
+    }
+
+    /**
+     * Number of statements kept, at most the capacity.
+     */
+    public int size() {
+        return (int) Math.min(next.get(), mask + 1);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Number of statements recorded since the trace was created, including those overwritten.
+     */
+    public long recorded() {
+        return next.get();
+    }
+
+    /**
+     * The statements kept, oldest first.
+     */
+    public List<Entry> entries() {
+        long end = next.get();
+        long first = Math.max(0, end - (mask + 1));
+        SymbolTable names = symbols;
+        List<Entry> entries = new ArrayList<>((int) (end - first));
+        for (long i = first; i < end; i++) {
+            int base = (int) (i & mask) * STRIDE;
+            long slotAndFlags = records[base + SLOT_AND_FLAGS];
+            int slot = (int) (slotAndFlags >>> 32);
+            entries.add(new Entry(records[base + LINE], names != null ? names.name(slot) : "#" + slot,
+                    width((int) (slotAndFlags >>> 8) & 3), records[base + OLD_VALUE],
+                    width((int) (slotAndFlags >>> 1) & 3), records[base + NEW_VALUE],
+                    (slotAndFlags & 1) != 0, records[base + START], records[base + DURATION]));
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the statements kept, oldest first, one per line, followed by the lines that took the most
+     * time in total among them, e.g.:
+     * <pre>
+     * Trace: last 2 of 2 statements
+     * line 1 +0 ns: x undefined -> 5 (410 ns)
+     * line 2 +9120 ns: x 5 -> 7 (230 ns)
+     * Slowest lines:
+     * line 1: 410 ns in 1 statement
+     * line 2: 230 ns in 1 statement
+     * </pre>
+     */
+    public void dump(Appendable out) {
+        List<Entry> entries = entries();
+        try {
+            out.append("Trace: last ").append(String.valueOf(entries.size())).append(" of ")
+                    .append(String.valueOf(recorded())).append(" statements\n");
+            long origin = entries.isEmpty() ? 0 : entries.get(0).startNanos();
+            for (Entry entry : entries) {
+                out.append("line ").append(String.valueOf(entry.lineNumber()))
+                        .append(" +").append(String.valueOf(entry.startNanos() - origin)).append(" ns: ")
+                        .append(entry.target()).append(' ')
+                        .append(format(entry.oldWidth(), entry.oldValue())).append(" -> ")
+                        .append(format(entry.newWidth(), entry.newValue()))
+                        .append(entry.failed() ? " FAILED (" : " (")
+                        .append(String.valueOf(entry.durationNanos())).append(" ns)\n");
+            }
+            out.append("Slowest lines:\n");
+            for (LineLatency line : slowestLines(entries)) {
+                out.append("line ").append(String.valueOf(line.lineNumber)).append(": ")
+                        .append(String.valueOf(line.nanos)).append(" ns in ")
+                        .append(String.valueOf(line.statements))
+                        .append(line.statements == 1 ? " statement\n" : " statements\n");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Total execution time per line among the entries, slowest first.
+     */
+    private static List<LineLatency> slowestLines(List<Entry> entries) {
+        Map<Long, LineLatency> lines = new HashMap<>();
+        for (Entry entry : entries) {
+            LineLatency line = lines.computeIfAbsent(entry.lineNumber(), LineLatency::new);
+            line.nanos += entry.durationNanos();
+            line.statements++;
+        }
+        List<LineLatency> slowest = new ArrayList<>(lines.values());
+        slowest.sort(Comparator.comparingLong((LineLatency line) -> line.nanos).reversed()
+                .thenComparingLong(line -> line.lineNumber));
+        return slowest.subList(0, Math.min(SLOWEST_LINES, slowest.size()));
+    }
+
+    private static NumericWidth width(int code) {
+        return code == 0 ? null : NumericWidth.values()[code - 1];
+    }
+
+    private static String format(NumericWidth width, long value) {
+        if (width == null) {
+            return "undefined";
+        }
+        return width == NumericWidth.BIG ? "<big>" : String.valueOf(value);
+    }
+
+    private static final class LineLatency {
+        final long lineNumber;
+        long nanos;
+        int statements;
+
+        LineLatency(long lineNumber) {
+            this.lineNumber = lineNumber;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.taboola.calculator;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Expression is an immutable expression tree produced by {@link ExpressionCompiler}.
+ * A tree is built once from the tokens of a line and can then be evaluated any
+ * number of times without lexing or parsing the input again.
+ * Variables are referenced by their {@link SymbolTable} slot, resolved at compile time.
+ * Evaluation follows exactly the same order and error semantics as {@link Parser}.
+ * <p>
+ * {@link #evaluate(VariableStore)} is the {@code int} fast path: it throws {@link NumericOverflow}
+ * (an ArithmeticException) when a value leaves the {@code int} range or a variable holds a wider value.
+ * {@link CompiledStatement} then evaluates the tree again with {@link WideEvaluator}.
+ */
+public sealed interface Expression {
+
+    /**
+     * Evaluates the expression against the given variables.
+     * Increments and decrements update the store as they are evaluated.
+     * Arithmetic is exact: a result that does not fit in an int throws instead of wrapping around.
+     */
+    int evaluate(VariableStore variables);
+
+    /**
+     * Integer literal (e.g., 42).
+     */
+    record Literal(int value) implements Expression {
+        @Override
+        public int evaluate(VariableStore variables) {
+            return value;
+        }
+    }
+
+    /**
+     * Integer literal too large for an int (e.g., 3000000000). Its int evaluation always overflows,
+     * so a statement holding one runs in long or BigInteger arithmetic (see {@link WideEvaluator}).
+     */
+    record WideLiteral(BigInteger value) implements Expression {
+        @Override
+        public int evaluate(VariableStore variables) {
+            throw NumericOverflow.INSTANCE;
+        }
+    }
+
+    /**
+     * Plain variable read (e.g., x).
+     */
+    record Variable(int slot) implements Expression {
+        @Override
+        public int evaluate(VariableStore variables) {
+            return variables.get(slot);
+        }
+    }
+
+    /**
+     * Unary minus (e.g., -x).
+     */
+    record Negate(Expression operand) implements Expression {
+        @Override
+        public int evaluate(VariableStore variables) {
+            return ExpressionSupport.negate(operand.evaluate(variables));
+        }
+    }
+
+    /**
+     * Left-associative chain of operators with the same precedence
+     * (e.g., a - b + c or a * b / c): first, then operators[i] applied with operands[i].
+     * Chains are kept flat so long expressions are evaluated in a loop rather than by recursion.
+     */
+    record Chain(Expression first, TokenType[] operators, Expression[] operands) implements Expression {
+        @Override
+        public int evaluate(VariableStore variables) {
+            int value = first.evaluate(variables);
+            for (int i = 0; i < operands.length; i++) {
+                int rhs = operands[i].evaluate(variables);
+                switch (operators[i]) {
+                    case PLUS:
+                        value = ExpressionSupport.add(value, rhs);
+                        break;
+                    case MINUS:
+                        value = ExpressionSupport.subtract(value, rhs);
+                        break;
+                    case MUL:
+                        value = ExpressionSupport.multiply(value, rhs);
+                        break;
+                    case DIV:
+                        value = ExpressionSupport.divide(value, rhs);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unsupported operator: " + operators[i]);
+                }
+            }
+            return value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Chain other && first.equals(other.first)
+                    && Arrays.equals(operators, other.operators) && Arrays.equals(operands, other.operands);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * first.hashCode() + Arrays.hashCode(operators)) + Arrays.hashCode(operands);
+        }
+
+        @Override
+        public String toString() {
+            return "Chain[first=" + first + ", operators=" + Arrays.toString(operators)
+                    + ", operands=" + Arrays.toString(operands) + "]";
+        }
+    }
+
+    /**
+     * Increment or decrement of a variable: PRE_INC, PRE_DEC, POST_INC or POST_DEC.
+     * Prefix forms return the updated value, postfix forms return the previous one.
+     */
+    record Update(TokenType kind, int slot) implements Expression {
+        @Override
+        public int evaluate(VariableStore variables) {
+            int newValue = variables.increment(slot, delta());
+            return isPrefix() ? newValue : newValue - delta();
+        }
+
+        public int delta() {
+            return (kind == TokenType.PRE_INC || kind == TokenType.POST_INC) ? 1 : -1;
+        }
+
+        public boolean isPrefix() {
+            return kind == TokenType.PRE_INC || kind == TokenType.PRE_DEC;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.taboola.calculator;
+
+/**
+ * Executable form of an {@link Expression}: either the tree interpreter itself
+ * or a class generated by {@link BytecodeCompiler} once the expression is hot.
+ */
+interface ExpressionCode {
+    int evaluate(VariableStore variables);
+}
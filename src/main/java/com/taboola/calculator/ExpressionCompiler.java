@@ -0,0 +1,171 @@
+package com.taboola.calculator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ExpressionCompiler builds an {@link Expression} tree using recursive descent.
+ * It follows the same grammar as {@link Parser}, but instead of computing a value
+ * while reading tokens it returns a tree that can be evaluated many times.
+ * Identifiers are resolved to slots of the given {@link SymbolTable}.
+ */
+public class ExpressionCompiler {
+    private final Tokenizer tokenizer;  // Supplies tokens from the input string
+    private final SymbolTable symbols;  // Resolves identifiers to slots
+
+    public ExpressionCompiler(Tokenizer tokenizer, SymbolTable symbols) {
+        this.tokenizer = tokenizer;
+        this.symbols = symbols;
+    }
+
+    /**
+     * compileStatements:
+     * Compiles a whole line in one pass over its tokens. Returns the first statement;
+     * the following ones are linked through {@link CompiledStatement#next()}.
+     * Right-hand sides are simplified by {@link ExpressionOptimizer}. An error in any statement,
+     * including a division by zero found while folding constants, fails the whole line, so none
+     * of its statements run. Errors carry their offset in the line: the offending token's, or the
+     * statement's for a division by zero.
+     * Grammar:
+     *   Line      := Statement (SEMICOLON Statement)* [SEMICOLON] EOF
+     *   Statement := IDENTIFIER (ASSIGN | PLUS_ASSIGN | MINUS_ASSIGN) Expression
+     */
+    public CompiledStatement compileStatements(int compileThreshold) {
+        List<String> targets = new ArrayList<>();
+        IntList offsets = new IntList();
+        List<TokenType> operators = new ArrayList<>();
+        List<Expression> expressions = new ArrayList<>();
+
+        do {
+            if (tokenizer.kind() != TokenType.IDENTIFIER) {
+                throw EvaluationException.atToken(ErrorCode.INVALID_VARIABLE_NAME, "Invalid variable name: ", tokenizer);
+            }
+            int targetStart = tokenizer.start();
+            int targetEnd = tokenizer.end();
+            TokenType operator = tokenizer.advance(); // Consume the target
+            if (operator != TokenType.ASSIGN && operator != TokenType.PLUS_ASSIGN && operator != TokenType.MINUS_ASSIGN) {
+                throw new EvaluationException(ErrorCode.EXPECTED_ASSIGNMENT, tokenizer.start(),
+                        "Expected '=', '+=' or '-=' after ", tokenizer.input(), targetStart, targetEnd, "");
+            }
+            tokenizer.advance(); // Consume the assignment operator
+            targets.add(tokenizer.input().subSequence(targetStart, targetEnd).toString());
+            offsets.add(targetStart);
+            operators.add(operator);
+            Expression expression = compileExpression();
+            try {
+                expressions.add(ExpressionOptimizer.optimize(expression));
+            } catch (DivisionByZero e) {
+                throw DivisionByZero.at(targetStart);
+            }
+
+            if (tokenizer.kind() == TokenType.SEMICOLON) {
+                tokenizer.advance(); // Consume ';'
+            } else if (tokenizer.kind() != TokenType.EOF) {
+                throw EvaluationException.atToken(ErrorCode.UNEXPECTED_TOKEN, "Unexpected token after expression: ", tokenizer);
+            }
+        } while (tokenizer.kind() != TokenType.EOF);
+
+        // Link the statements from the last one back
+        CompiledStatement next = null;
+        for (int i = targets.size() - 1; i >= 0; i--) {
+            String target = targets.get(i);
+            next = new CompiledStatement(target, symbols.resolve(target), operators.get(i), expressions.get(i),
+                    compileThreshold, offsets.values[i], next);
+        }
+        return next;
+    }
+
+    /**
+     * compileExpression:
+     * Grammar (simplified):
+     *   Expression := Term ((PLUS | MINUS) Term)*
+     */
+    public Expression compileExpression() {
+        Expression first = compileTerm();
+        List<TokenType> operators = new ArrayList<>();
+        List<Expression> operands = new ArrayList<>();
+
+        while (tokenizer.kind() == TokenType.PLUS || tokenizer.kind() == TokenType.MINUS) {
+            operators.add(tokenizer.kind());
+            tokenizer.advance(); // Consume '+' or '-'
+            operands.add(compileTerm());
+        }
+
+        return chain(first, operators, operands);
+    }
+
+    /**
+     * compileTerm:
+     * Grammar:
+     *   Term := Factor ((MUL | DIV) Factor)*
+     */
+    private Expression compileTerm() {
+        Expression first = compileFactor();
+        List<TokenType> operators = new ArrayList<>();
+        List<Expression> operands = new ArrayList<>();
+
+        while (tokenizer.kind() == TokenType.MUL || tokenizer.kind() == TokenType.DIV) {
+            operators.add(tokenizer.kind());
+            tokenizer.advance(); // Consume '*' or '/'
+            operands.add(compileFactor());
+        }
+
+        return chain(first, operators, operands);
+    }
+
+    private static Expression chain(Expression first, List<TokenType> operators, List<Expression> operands) {
+        if (operands.isEmpty()) {
+            return first; // A single operand needs no chain node
+        }
+        return new Expression.Chain(first, operators.toArray(new TokenType[0]), operands.toArray(new Expression[0]));
+    }
+
+    /**
+     * compileFactor:
+     * Grammar:
+     *   Factor := MINUS Factor
+     *           | NUMBER
+     *           | IDENTIFIER [POST_INC | POST_DEC]
+     *           | (PRE_INC | PRE_DEC) IDENTIFIER
+     */
+    private Expression compileFactor() {
+        TokenType type = tokenizer.kind();
+
+        switch (type) {
+            case MINUS:
+                tokenizer.advance(); // Consume '-'
+                return new Expression.Negate(compileFactor());
+
+            case NUMBER:
+                Expression literal = tokenizer.numberFitsInt()
+                        ? new Expression.Literal(tokenizer.numberValue())
+                        : new Expression.WideLiteral(tokenizer.bigNumberValue());
+                tokenizer.advance(); // Consume the number token
+                return literal;
+
+            case PRE_INC:
+            case PRE_DEC:
+                tokenizer.advance(); // Consume '++' or '--'
+                if (tokenizer.kind() != TokenType.IDENTIFIER) {
+                    throw EvaluationException.of(ErrorCode.EXPECTED_VARIABLE, tokenizer.start(),
+                            type == TokenType.PRE_INC ? "Expected variable after ++" : "Expected variable after --");
+                }
+                int target = symbols.resolve(tokenizer.text());
+                tokenizer.advance(); // Consume variable
+                return new Expression.Update(type, target);
+
+            case IDENTIFIER:
+                int slot = symbols.resolve(tokenizer.text());
+                tokenizer.advance(); // Consume the variable
+                TokenType suffix = tokenizer.kind();
+                if (suffix == TokenType.POST_INC || suffix == TokenType.POST_DEC) {
+                    tokenizer.advance();
+                    return new Expression.Update(suffix, slot);
+                }
+                return new Expression.Variable(slot);
+
+            default:
+                throw EvaluationException.atToken(ErrorCode.UNEXPECTED_TOKEN, "Unexpected token in expression: ", tokenizer);
+        }
+    }
+}
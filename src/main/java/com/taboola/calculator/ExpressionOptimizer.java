@@ -0,0 +1,165 @@
+package com.taboola.calculator;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ExpressionOptimizer simplifies a compiled {@link Expression} once, so the work is not
+ * repeated on every execution. It folds literal subexpressions, drops {@code * 1}, {@code / 1},
+ * {@code + 0} and {@code - 0}, and removes double negation.
+ * <p>
+ * The result evaluates to the same value with the same side effects: variable reads,
+ * increments and decrements are never removed or reordered, only literals move.
+ * Literals are combined only where integer arithmetic allows it: all literal terms of a sum,
+ * and runs of literal factors that are only multiplied, and only into a literal that fits in an int.
+ * As statements are evaluated exactly (widening instead of wrapping around), moving literals
+ * may change which width a statement runs in, but never its result. Division by a literal zero
+ * cannot succeed, so it is reported when compiling.
+ */
+final class ExpressionOptimizer {
+
+    private ExpressionOptimizer() {
+    }
+
+    /**
+     * Returns the simplified expression.
+     * Throws ArithmeticException if the expression divides by a literal zero.
+     */
+    static Expression optimize(Expression expression) {
+        return switch (expression) {
+            case Expression.Literal literal -> literal;
+            case Expression.WideLiteral literal -> literal;
+            case Expression.Variable variable -> variable;
+            case Expression.Update update -> update;
+            case Expression.Negate negate -> negate(optimize(negate.operand()));
+            case Expression.Chain chain -> isAdditive(chain) ? optimizeSum(chain) : optimizeProduct(chain);
+        };
+    }
+
+    private static boolean isAdditive(Expression.Chain chain) {
+        TokenType operator = chain.operators()[0];
+        return operator == TokenType.PLUS || operator == TokenType.MINUS;
+    }
+
+    private static Expression negate(Expression operand) {
+        if (operand instanceof Expression.Literal literal) {
+            return literal(BigInteger.valueOf(literal.value()).negate());
+        }
+        if (operand instanceof Expression.WideLiteral literal) {
+            return literal(literal.value().negate()); // -2147483648 is an int literal again
+        }
+        if (operand instanceof Expression.Negate negate) {
+            return negate.operand(); // -(-x) is x
+        }
+        return new Expression.Negate(operand);
+    }
+
+    /**
+     * Sums all literal terms into one constant added at the end, as exact addition is associative
+     * and commutative. Other terms keep their order. If the constant does not fit in an int,
+     * the terms are only simplified one by one.
+     */
+    private static Expression optimizeSum(Expression.Chain chain) {
+        long constant = 0;
+        List<TokenType> operators = new ArrayList<>();
+        List<Expression> operands = new ArrayList<>();
+
+        Expression first = optimize(chain.first());
+        if (first instanceof Expression.Literal literal) {
+            constant = literal.value();
+            first = null;
+        }
+        for (int i = 0; i < chain.operands().length; i++) {
+            TokenType operator = chain.operators()[i];
+            Expression operand = optimize(chain.operands()[i]);
+            if (operand instanceof Expression.Literal literal) {
+                constant += operator == TokenType.PLUS ? literal.value() : -literal.value();
+            } else if (first == null) {
+                first = operator == TokenType.PLUS ? operand : negate(operand);
+            } else {
+                operators.add(operator);
+                operands.add(operand);
+            }
+        }
+
+        if ((int) constant != constant) {
+            Expression[] simplified = new Expression[chain.operands().length];
+            for (int i = 0; i < simplified.length; i++) {
+                simplified[i] = optimize(chain.operands()[i]);
+            }
+            return new Expression.Chain(optimize(chain.first()), chain.operators(), simplified);
+        }
+        if (first == null) {
+            return new Expression.Literal((int) constant);
+        }
+        if (constant != 0) {
+            operators.add(TokenType.PLUS);
+            operands.add(new Expression.Literal((int) constant));
+        }
+        return chain(first, operators, operands);
+    }
+
+    /**
+     * Folds a literal prefix and runs of literals that are only multiplied, and drops
+     * {@code * 1} and {@code / 1}. Literals are not moved across a division.
+     */
+    private static Expression optimizeProduct(Expression.Chain chain) {
+        List<TokenType> operators = new ArrayList<>();
+        List<Expression> operands = new ArrayList<>();
+
+        Expression first = optimize(chain.first());
+        for (int i = 0; i < chain.operands().length; i++) {
+            TokenType operator = chain.operators()[i];
+            Expression operand = optimize(chain.operands()[i]);
+            if (!(operand instanceof Expression.Literal literal)) {
+                if (operands.isEmpty() && operator == TokenType.MUL && isLiteral(first, 1)) {
+                    first = operand; // 1 * x is x
+                } else {
+                    operators.add(operator);
+                    operands.add(operand);
+                }
+                continue;
+            }
+
+            int value = literal.value();
+            if (operator == TokenType.DIV && value == 0) {
+                throw DivisionByZero.INSTANCE;
+            }
+            int last = operands.size() - 1;
+            if (value == 1) {
+                continue; // x * 1 and x / 1 are x
+            } else if (last < 0 && first instanceof Expression.Literal lhs
+                    && fitsInt(operator == TokenType.MUL ? (long) lhs.value() * value : (long) lhs.value() / value)) {
+                first = new Expression.Literal(operator == TokenType.MUL ? lhs.value() * value : lhs.value() / value);
+            } else if (operator == TokenType.MUL && last >= 0 && operators.get(last) == TokenType.MUL
+                    && operands.get(last) instanceof Expression.Literal previous
+                    && fitsInt((long) previous.value() * value)) {
+                operands.set(last, new Expression.Literal(previous.value() * value)); // x * 2 * 3 is x * 6
+            } else {
+                operators.add(operator);
+                operands.add(literal);
+            }
+        }
+        return chain(first, operators, operands);
+    }
+
+    private static boolean fitsInt(long value) {
+        return (int) value == value;
+    }
+
+    private static Expression literal(BigInteger value) {
+        return value.bitLength() < Integer.SIZE ? new Expression.Literal(value.intValue()) : new Expression.WideLiteral(value);
+    }
+
+    private static boolean isLiteral(Expression expression, int value) {
+        return expression instanceof Expression.Literal literal && literal.value() == value;
+    }
+
+    private static Expression chain(Expression first, List<TokenType> operators, List<Expression> operands) {
+        if (operands.isEmpty()) {
+            return first;
+        }
+        return new Expression.Chain(first, operators.toArray(new TokenType[0]), operands.toArray(new Expression[0]));
+    }
+}
@@ -0,0 +1,105 @@
+package com.taboola.calculator;
+
+import java.math.BigInteger;
+
+/**
+ * Runtime helpers shared by the expression interpreter and by generated bytecode.
+ * Keeping the error paths here guarantees both tiers report identical errors.
+ * <p>
+ * The {@code int} and {@code long} operations are exact: instead of wrapping around they throw
+ * {@link NumericOverflow}, and the statement is evaluated again in the next wider type.
+ */
+final class ExpressionSupport {
+
+    private ExpressionSupport() {
+    }
+
+    static int add(int lhs, int rhs) {
+        int result = lhs + rhs;
+        if (((lhs ^ result) & (rhs ^ result)) < 0) {
+            throw NumericOverflow.INSTANCE;
+        }
+        return result;
+    }
+
+    static int subtract(int lhs, int rhs) {
+        int result = lhs - rhs;
+        if (((lhs ^ rhs) & (lhs ^ result)) < 0) {
+            throw NumericOverflow.INSTANCE;
+        }
+        return result;
+    }
+
+    static int multiply(int lhs, int rhs) {
+        long result = (long) lhs * rhs;
+        if ((int) result != result) {
+            throw NumericOverflow.INSTANCE;
+        }
+        return (int) result;
+    }
+
+    static int negate(int value) {
+        if (value == Integer.MIN_VALUE) {
+            throw NumericOverflow.INSTANCE;
+        }
+        return -value;
+    }
+
+    static int divide(int lhs, int rhs) {
+        if (rhs == 0) {
+            throw DivisionByZero.INSTANCE;
+        }
+        if (lhs == Integer.MIN_VALUE && rhs == -1) {
+            throw NumericOverflow.INSTANCE;
+        }
+        return lhs / rhs;
+    }
+
+    static long add(long lhs, long rhs) {
+        long result = lhs + rhs;
+        if (((lhs ^ result) & (rhs ^ result)) < 0) {
+            throw NumericOverflow.INSTANCE;
+        }
+        return result;
+    }
+
+    static long subtract(long lhs, long rhs) {
+        long result = lhs - rhs;
+        if (((lhs ^ rhs) & (lhs ^ result)) < 0) {
+            throw NumericOverflow.INSTANCE;
+        }
+        return result;
+    }
+
+    static long multiply(long lhs, long rhs) {
+        long result = lhs * rhs;
+        if (Math.multiplyHigh(lhs, rhs) != (result >> 63)) {
+            throw NumericOverflow.INSTANCE;
+        }
+        return result;
+    }
+
+    static long negate(long value) {
+        if (value == Long.MIN_VALUE) {
+            throw NumericOverflow.INSTANCE;
+        }
+        return -value;
+    }
+
+    static long divide(long lhs, long rhs) {
+        if (rhs == 0) {
+            throw DivisionByZero.INSTANCE;
+        }
+        if (lhs == Long.MIN_VALUE && rhs == -1) {
+            throw NumericOverflow.INSTANCE;
+        }
+        return lhs / rhs;
+    }
+
+    static BigInteger divide(BigInteger lhs, BigInteger rhs) {
+        if (rhs.signum() == 0) {
+            throw DivisionByZero.INSTANCE;
+        }
+        return lhs.divide(rhs); // Truncates toward zero, like int division
+    }
+}
@@ -0,0 +1,281 @@
+package com.taboola.calculator;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * IdentifierTable is a {@link VariableTable} that interns identifiers straight from the input.
+ * {@link #intern(Tokenizer)} hashes and matches the current identifier's characters in place and
+ * returns a stable id, so {@link Parser} reads, checks and updates a variable with a single probe
+ * followed by array accesses. Only the first occurrence of a name creates its String.
+ * <p>
+ * Ids are given in order of first appearance, assigned or not: an id is known as soon as the name
+ * is seen, while the variable it stands for only exists once it is assigned. Iteration follows the
+ * order of first assignment, like the other tables. Not thread-safe.
+ */
+public final class IdentifierTable implements VariableTable {
+    private static final int MIN_BUCKETS = 16;
+
+    private int[] buckets;      // Id + 1 per bucket of the open-addressing index; 0 is empty
+    private String[] names;     // Id -> name
+    private int[] hashes;       // Id -> String.hashCode of the name
+    private int[] values;       // Id -> value
+    private boolean[] assigned; // Id -> whether the variable has been assigned
+    private int[] order;        // Ids in order of first assignment
+    private int identifiers;
+    private int size;
+
+    public IdentifierTable() {
+        this(64);
+    }
+
+    /**
+     * @param expectedIdentifiers number of names to size the table for; it grows beyond it as needed
+     */
+    public IdentifierTable(int expectedIdentifiers) {
+        if (expectedIdentifiers < 0) {
+            throw new IllegalArgumentException("Expected identifiers cannot be negative: " + expectedIdentifiers);
+        }
+        int capacity = Math.max(MIN_BUCKETS / 2, expectedIdentifiers);
+        buckets = new int[Integer.highestOneBit(2 * capacity - 1) << 1];
+        names = new String[capacity];
+        hashes = new int[capacity];
+        values = new int[capacity];
+        assigned = new boolean[capacity];
+        order = new int[capacity];
+    }
+
+    /**
+     * Returns the id of the tokenizer's current IDENTIFIER token, adding the name on first sight.
+     */
+    public int intern(Tokenizer tokenizer) {
+        return intern(tokenizer.input(), tokenizer.start(), tokenizer.end(), tokenizer.identifierHash());
+    }
+
+    /**
+     * Returns the id of the name in [start, end) of the input, adding it on first sight.
+     * The hash must be the {@link String#hashCode()} of the name.
+     */
+    public int intern(CharSequence input, int start, int end, int hash) {
+        int mask = buckets.length - 1;
+        int bucket = spread(hash) & mask;
+        for (int entry; (entry = buckets[bucket]) != 0; bucket = (bucket + 1) & mask) {
+            int id = entry - 1;
+            if (hashes[id] == hash && matches(names[id], input, start, end)) {
+                return id;
+            }
+        }
+        return add(input.subSequence(start, end).toString(), hash, bucket);
+    }
+
+    /**
+     * Returns the id of the name, or -1 if it has never been seen.
+     */
+    public int find(String name) {
+        int hash = name.hashCode();
+        int mask = buckets.length - 1;
+        for (int bucket = spread(hash) & mask, entry; (entry = buckets[bucket]) != 0; bucket = (bucket + 1) & mask) {
+            int id = entry - 1;
+            if (hashes[id] == hash && name.equals(names[id])) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    public String name(int id) {
+        checkId(id);
+        return names[id];
+    }
+
+    public boolean isAssigned(int id) {
+        checkId(id);
+        return assigned[id];
+    }
+
+    /**
+     * Returns the value of the variable, throwing IllegalArgumentException if it has not been assigned.
+     */
+    public int get(int id) {
+        checkId(id);
+        if (!assigned[id]) {
+            throw new IllegalArgumentException("Variable '" + names[id] + "' is not defined");
+        }
+        return values[id];
+    }
+
+    /**
+     * Assigns the variable, adding it after the assigned ones if it is new.
+     */
+    public void set(int id, int value) {
+        checkId(id);
+        if (!assigned[id]) {
+            assigned[id] = true;
+            order[size++] = id;
+        }
+        values[id] = value;
+    }
+
+    /**
+     * Number of names interned, assigned or not.
+     */
+    public int identifierCount() {
+        return identifiers;
+    }
+
+    @Override
+    public boolean contains(String name) {
+        int id = find(name);
+        return id >= 0 && assigned[id];
+    }
+
+    @Override
+    public int get(String name) {
+        int id = find(name);
+        if (id < 0) {
+            throw new IllegalArgumentException("Variable '" + name + "' is not defined");
+        }
+        return get(id);
+    }
+
+    @Override
+    public void put(String name, int value) {
+        set(intern(name, 0, name.length(), name.hashCode()), value);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Read-only, live view of the assigned variables in order of first assignment.
+     */
+    @Override
+    public Map<String, Integer> asMap() {
+        return new MapView();
+    }
+
+    private int add(String name, int hash, int bucket) {
+        int id = identifiers;
+        if (id == names.length) {
+            int capacity = 2 * id;
+            names = Arrays.copyOf(names, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            values = Arrays.copyOf(values, capacity);
+            assigned = Arrays.copyOf(assigned, capacity);
+            order = Arrays.copyOf(order, capacity);
+        }
+        names[id] = name;
+        hashes[id] = hash;
+        buckets[bucket] = id + 1;
+        identifiers = id + 1;
+        if (2 * identifiers > buckets.length) {
+            growIndex();
+        }
+        return id;
+    }
+
+    /**
+     * Doubles the index and reinserts every id, using the hashes kept per id.
+     */
+    private void growIndex() {
+        int[] grown = new int[2 * buckets.length];
+        int mask = grown.length - 1;
+        for (int id = 0; id < identifiers; id++) {
+            int bucket = spread(hashes[id]) & mask;
+            while (grown[bucket] != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+            grown[bucket] = id + 1;
+        }
+        buckets = grown;
+    }
+
+    private void checkId(int id) {
+        if (id < 0 || id >= identifiers) {
+            throw new IndexOutOfBoundsException("Id " + id + " out of bounds for " + identifiers + " identifiers");
+        }
+    }
+
+    private static boolean matches(String name, CharSequence input, int start, int end) {
+        int length = end - start;
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != input.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Spreads String.hashCode over all bits, as the low bits pick the bucket.
+     */
+    private static int spread(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+
+    private final class MapView extends AbstractMap<String, Integer> {
+        @Override
+        public Integer get(Object key) {
+            if (!(key instanceof String name)) {
+                return null;
+            }
+            int id = find(name);
+            return id >= 0 && assigned[id] ? values[id] : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String name && contains(name);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<String, Integer>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Integer>> iterator() {
+                    return new Iterator<>() {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < size;
+                        }
+
+                        @Override
+                        public Entry<String, Integer> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int id = order[index++];
+                            return new SimpleImmutableEntry<>(names[id], values[id]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.taboola.calculator;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of ints, used for adjacency lists without boxing.
+ */
+final class IntList {
+    int[] values = new int[4];
+    int size;
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+}
@@ -0,0 +1,139 @@
+package com.taboola.calculator;
+
+import javax.management.openmbean.CompositeData;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in nanoseconds.
+ * Values are counted in log-linear buckets (8 per power of two), so recording is a couple
+ * of arithmetic operations and one atomic increment, and percentiles are accurate to about 12%.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKETS = 8;   // Linear buckets per power of two
+    private static final int BUCKETS = 62 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketOf(value));
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        max.reset();
+    }
+
+    public Snapshot snapshot() {
+        long[] buckets = new long[BUCKETS];
+        long samples = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = counts.get(i);
+            samples += buckets[i];
+        }
+        long mean = samples == 0 ? 0 : total.sum() / samples;
+        return new Snapshot(samples, mean, percentile(buckets, samples, 0.50),
+                percentile(buckets, samples, 0.90), percentile(buckets, samples, 0.99), max.get());
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);  // >= 3
+        int subBucket = (int) (value >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+        return (exponent - 2) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + 2;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 3);
+        return lower + (1L << (exponent - 3)) - 1;
+    }
+
+    private static long percentile(long[] buckets, long samples, double quantile) {
+        if (samples == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * samples);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(buckets.length - 1);
+    }
+
+    /**
+     * Point-in-time view of a histogram, exposed over JMX as composite data.
+     */
+    public static final class Snapshot {
+        private final long count;
+        private final long meanNanos;
+        private final long p50Nanos;
+        private final long p90Nanos;
+        private final long p99Nanos;
+        private final long maxNanos;
+
+        public Snapshot(long count, long meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos) {
+            this.count = count;
+            this.meanNanos = meanNanos;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+        }
+
+        /**
+         * Rebuilds a snapshot from its JMX form, so MXBean proxies can return it.
+         */
+        public static Snapshot from(CompositeData data) {
+            return new Snapshot((Long) data.get("count"), (Long) data.get("meanNanos"), (Long) data.get("p50Nanos"),
+                    (Long) data.get("p90Nanos"), (Long) data.get("p99Nanos"), (Long) data.get("maxNanos"));
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMeanNanos() {
+            return meanNanos;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP90Nanos() {
+            return p90Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + meanNanos + "ns, p50=" + p50Nanos + "ns, p90=" + p90Nanos
+                    + "ns, p99=" + p99Nanos + "ns, max=" + maxNanos + "ns";
+        }
+    }
+}
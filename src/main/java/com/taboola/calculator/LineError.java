@@ -0,0 +1,7 @@
+package com.taboola.calculator;
+
+/**
+ * A line that failed in a batch evaluator, with its 1-based line number in the input.
+ */
+public record LineError(long lineNumber, String line, RuntimeException error) {
+}
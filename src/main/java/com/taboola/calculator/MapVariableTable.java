@@ -0,0 +1,44 @@
+package com.taboola.calculator;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * {@link VariableTable} backed by a caller's map, see {@link VariableTable#of(Map)}.
+ */
+final class MapVariableTable implements VariableTable {
+    private final Map<String, Integer> map;
+
+    MapVariableTable(Map<String, Integer> map) {
+        this.map = map;
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return map.containsKey(name);
+    }
+
+    @Override
+    public int get(String name) {
+        Integer value = map.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Variable '" + name + "' is not defined");
+        }
+        return value;
+    }
+
+    @Override
+    public void put(String name, int value) {
+        map.put(name, value);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public Map<String, Integer> asMap() {
+        return Collections.unmodifiableMap(map);
+    }
+}
@@ -0,0 +1,22 @@
+package com.taboola.calculator;
+
+/**
+ * Signals that a value does not fit in the width being evaluated: {@code int} on the fast path,
+ * then {@code long}. {@link CompiledStatement} catches it and evaluates the statement again,
+ * one width up, so it never reaches callers of the calculator.
+ * <p>
+ * Overflow is expected control flow rather than an error, so a single instance without
+ * a stack trace is thrown and nothing is allocated.
+ */
+final class NumericOverflow extends ArithmeticException {
+    static final NumericOverflow INSTANCE = new NumericOverflow();
+
+    private NumericOverflow() {
+        super("integer overflow");
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this; // Thrown as a constant, the stack trace would be wrong anyway
+    }
+}
@@ -0,0 +1,14 @@
+package com.taboola.calculator;
+
+/**
+ * Storage width of a variable's value. A value is always kept in the narrowest width that holds it,
+ * so a variable goes back to {@link #INT} as soon as its value fits in an {@code int} again.
+ */
+public enum NumericWidth {
+    /** Fits in an {@code int}; evaluated on the allocation-free fast path. */
+    INT,
+    /** Needs a {@code long}. */
+    LONG,
+    /** Needs a {@link java.math.BigInteger}. */
+    BIG
+}
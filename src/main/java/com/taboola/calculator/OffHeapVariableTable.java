@@ -0,0 +1,305 @@
+package com.taboola.calculator;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * OffHeapVariableTable is a {@link VariableTable} whose names and values live in native memory,
+ * allocated through the Foreign Function &amp; Memory API. However many variables it holds, the heap
+ * only sees this object, so there are no boxed values or map entries for the garbage collector to trace.
+ * <p>
+ * Variables are appended to an entry log, which gives the insertion order: each entry is
+ * [hash, value, name length, UTF-8 name], padded to 4 bytes. An open-addressing index with linear
+ * probing maps names to entries. Each 8-byte bucket holds 24 bits of the name's hash next to the
+ * entry's offset, so most probes that do not match are rejected without reading the log.
+ * The index doubles at half load and the log doubles when full.
+ * <p>
+ * Looking up an ASCII name compares the String's characters with the stored bytes in place and
+ * allocates nothing; only new or non-ASCII names are encoded. Not thread-safe. The native memory
+ * is released by {@link #close()}, after which the table cannot be used.
+ */
+public final class OffHeapVariableTable implements VariableTable, AutoCloseable {
+    private static final int HEADER_SIZE = 12;           // Hash, value and name length of an entry
+    private static final int VALUE_OFFSET = 4;
+    private static final int LENGTH_OFFSET = 8;
+    private static final int OFFSET_BITS = 40;           // Entry offset / 4 + 1 in a bucket; 0 is empty
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    private static final int MIN_BUCKETS = 16;
+    private static final long MIN_LOG_SIZE = 256;
+
+    private Arena logArena;
+    private MemorySegment log;   // Entries in insertion order
+    private long logSize;        // Bytes of the log in use
+    private Arena indexArena;
+    private MemorySegment index; // Buckets of the open-addressing table
+    private long mask;           // Number of buckets - 1
+    private int size;
+
+    public OffHeapVariableTable() {
+        this(1024);
+    }
+
+    /**
+     * @param expectedVariables number of variables to size the table for; it grows beyond it as needed
+     */
+    public OffHeapVariableTable(int expectedVariables) {
+        if (expectedVariables < 0) {
+            throw new IllegalArgumentException("Expected variables cannot be negative: " + expectedVariables);
+        }
+        long buckets = Long.highestOneBit(Math.max(MIN_BUCKETS, 2L * expectedVariables) - 1) << 1;
+        indexArena = Arena.ofShared();
+        index = indexArena.allocate(buckets * Long.BYTES, Long.BYTES);
+        mask = buckets - 1;
+        logArena = Arena.ofShared();
+        log = logArena.allocate(Math.max(MIN_LOG_SIZE, 16L * expectedVariables), Long.BYTES);
+    }
+
+    @Override
+    public boolean contains(String name) {
+        return find(name, hash(name)) >= 0;
+    }
+
+    @Override
+    public int get(String name) {
+        long entry = find(name, hash(name));
+        if (entry < 0) {
+            throw new IllegalArgumentException("Variable '" + name + "' is not defined");
+        }
+        return log.get(ValueLayout.JAVA_INT, entry + VALUE_OFFSET);
+    }
+
+    @Override
+    public void put(String name, int value) {
+        int hash = hash(name);
+        long entry = find(name, hash);
+        if (entry >= 0) {
+            log.set(ValueLayout.JAVA_INT, entry + VALUE_OFFSET, value);
+            return;
+        }
+        long offset = append(name, hash, value);
+        index.setAtIndex(ValueLayout.JAVA_LONG, -entry - 1, bucket(hash, offset));
+        size++;
+        if (2L * size > mask + 1) {
+            growIndex();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Native memory held by the log and the index, in bytes.
+     */
+    public long allocatedBytes() {
+        return log.byteSize() + index.byteSize();
+    }
+
+    /**
+     * Read-only, live view of the variables in order of first assignment.
+     * Iterating decodes every name, so it allocates a String per variable.
+     */
+    @Override
+    public Map<String, Integer> asMap() {
+        return new MapView();
+    }
+
+    /**
+     * Releases the native memory.
+     */
+    @Override
+    public void close() {
+        logArena.close();
+        indexArena.close();
+    }
+
+    /**
+     * Returns the offset of the name's entry in the log or, if the name is not in the table,
+     * -1 minus the empty bucket where it would be inserted.
+     */
+    private long find(String name, int hash) {
+        long fragment = fragment(hash);
+        for (long bucket = Integer.toUnsignedLong(hash) & mask; ; bucket = (bucket + 1) & mask) {
+            long word = index.getAtIndex(ValueLayout.JAVA_LONG, bucket);
+            if (word == 0) {
+                return -1 - bucket;
+            }
+            if (word >>> OFFSET_BITS == fragment) {
+                long entry = entryOffset(word);
+                if (log.get(ValueLayout.JAVA_INT, entry) == hash && matches(entry, name)) {
+                    return entry;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the stored name with the String. UTF-8 takes one byte per ASCII character and more
+     * for any other, so an ASCII name can be compared byte by byte without encoding it.
+     */
+    private boolean matches(long entry, String name) {
+        int length = log.get(ValueLayout.JAVA_INT, entry + LENGTH_OFFSET);
+        int chars = name.length();
+        if (length == chars) {
+            for (int i = 0; i < chars; i++) {
+                char ch = name.charAt(i);
+                if (ch >= 0x80 || log.get(ValueLayout.JAVA_BYTE, entry + HEADER_SIZE + i) != (byte) ch) {
+                    return false; // A non-ASCII name would need more bytes than characters
+                }
+            }
+            return true;
+        }
+        if (length < chars) {
+            return false;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return bytes.length == length && MemorySegment.mismatch(log, entry + HEADER_SIZE, entry + HEADER_SIZE + length,
+                MemorySegment.ofArray(bytes), 0, length) == -1;
+    }
+
+    private long append(String name, int hash, int value) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        long offset = logSize;
+        long entrySize = (HEADER_SIZE + bytes.length + 3) & ~3L;
+        if (offset + entrySize > log.byteSize()) {
+            growLog(offset + entrySize);
+        }
+        log.set(ValueLayout.JAVA_INT, offset, hash);
+        log.set(ValueLayout.JAVA_INT, offset + VALUE_OFFSET, value);
+        log.set(ValueLayout.JAVA_INT, offset + LENGTH_OFFSET, bytes.length);
+        MemorySegment.copy(bytes, 0, log, ValueLayout.JAVA_BYTE, offset + HEADER_SIZE, bytes.length);
+        logSize = offset + entrySize;
+        return offset;
+    }
+
+    private void growLog(long minSize) {
+        Arena arena = Arena.ofShared();
+        MemorySegment grown = arena.allocate(Math.max(minSize, 2 * log.byteSize()), Long.BYTES);
+        MemorySegment.copy(log, 0, grown, 0, logSize);
+        logArena.close();
+        logArena = arena;
+        log = grown;
+    }
+
+    /**
+     * Doubles the index and reinserts every entry, using the full hash kept in the log.
+     */
+    private void growIndex() {
+        long buckets = 2 * (mask + 1);
+        Arena arena = Arena.ofShared();
+        MemorySegment grown = arena.allocate(buckets * Long.BYTES, Long.BYTES);
+        long grownMask = buckets - 1;
+        for (long i = 0; i <= mask; i++) {
+            long word = index.getAtIndex(ValueLayout.JAVA_LONG, i);
+            if (word != 0) {
+                int hash = log.get(ValueLayout.JAVA_INT, entryOffset(word));
+                long bucket = Integer.toUnsignedLong(hash) & grownMask;
+                while (grown.getAtIndex(ValueLayout.JAVA_LONG, bucket) != 0) {
+                    bucket = (bucket + 1) & grownMask;
+                }
+                grown.setAtIndex(ValueLayout.JAVA_LONG, bucket, word);
+            }
+        }
+        indexArena.close();
+        indexArena = arena;
+        index = grown;
+        mask = grownMask;
+    }
+
+    private String nameAt(long entry) {
+        int length = log.get(ValueLayout.JAVA_INT, entry + LENGTH_OFFSET);
+        byte[] bytes = log.asSlice(entry + HEADER_SIZE, length).toArray(ValueLayout.JAVA_BYTE);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long nextEntry(long entry) {
+        return entry + ((HEADER_SIZE + log.get(ValueLayout.JAVA_INT, entry + LENGTH_OFFSET) + 3) & ~3L);
+    }
+
+    /**
+     * Spreads String.hashCode (cached by the String) over all bits, as the low bits pick the bucket.
+     */
+    private static int hash(String name) {
+        int h = name.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    private static long fragment(int hash) {
+        return hash >>> 8;
+    }
+
+    private static long bucket(int hash, long offset) {
+        return fragment(hash) << OFFSET_BITS | ((offset >>> 2) + 1);
+    }
+
+    private static long entryOffset(long word) {
+        return ((word & OFFSET_MASK) - 1) << 2;
+    }
+
+    private final class MapView extends AbstractMap<String, Integer> {
+        @Override
+        public Integer get(Object key) {
+            if (!(key instanceof String name)) {
+                return null;
+            }
+            long entry = find(name, hash(name));
+            return entry >= 0 ? log.get(ValueLayout.JAVA_INT, entry + VALUE_OFFSET) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String name && contains(name);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<String, Integer>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Integer>> iterator() {
+                    return new Iterator<>() {
+                        private long entry;
+
+                        @Override
+                        public boolean hasNext() {
+                            return entry < logSize;
+                        }
+
+                        @Override
+                        public Entry<String, Integer> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, Integer> next = new SimpleImmutableEntry<>(nameAt(entry),
+                                    log.get(ValueLayout.JAVA_INT, entry + VALUE_OFFSET));
+                            entry = nextEntry(entry);
+                            return next;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.taboola.calculator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+/**
+ * ParallelBatchEvaluator runs a batch of lines on a {@link ForkJoinPool}.
+ * Every line is compiled first and its read and write sets are computed (see {@link SlotUsage}).
+ * A line depends on each earlier line it conflicts with (read after write, write after write,
+ * write after read), and lines whose dependencies are done run concurrently.
+ * <p>
+ * The outcome is exactly that of calling {@link Calculator#evaluate(CharSequence)} on every line in
+ * order and catching its exception: same final values, same assignment order, same errors.
+ * Input is processed in windows of lines, so memory use does not grow with the script size.
+ */
+public final class ParallelBatchEvaluator {
+    static final int DEFAULT_WINDOW_SIZE = 1 << 16;
+
+    private final Calculator calculator;
+    private final ForkJoinPool pool;
+    private final int windowSize;
+
+    public ParallelBatchEvaluator(Calculator calculator) {
+        this(calculator, ForkJoinPool.commonPool(), DEFAULT_WINDOW_SIZE);
+    }
+
+    public ParallelBatchEvaluator(Calculator calculator, ForkJoinPool pool, int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive: " + windowSize);
+        }
+        this.calculator = calculator;
+        this.pool = pool;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Evaluates the lines and returns the errors in line order. Blank lines are skipped.
+     */
+    public List<LineError> evaluateAll(List<String> lines) {
+        List<LineError> errors = new ArrayList<>();
+        Window window = new Window(windowSize);
+        for (int i = 0; i < lines.size(); i++) {
+            if (!CharSequences.isBlank(lines.get(i))) {
+                window.add(lines.get(i), i + 1);
+                if (window.isFull()) {
+                    run(window, errors::add);
+                }
+            }
+        }
+        run(window, errors::add);
+        return errors;
+    }
+
+    /**
+     * Evaluates every line of the script, reporting errors in line order as each window completes.
+     */
+    public void evaluateAll(ScriptReader reader, Consumer<LineError> onError) throws IOException {
+        Window window = new Window(windowSize);
+        CharSequence line;
+        while ((line = reader.nextLine()) != null) {
+            if (!CharSequences.isBlank(line)) {
+                window.add(line.toString(), reader.lineNumber());
+                if (window.isFull()) {
+                    run(window, onError);
+                }
+            }
+        }
+        run(window, onError);
+    }
+
+    private void run(Window window, Consumer<LineError> onError) {
+        if (window.count > 0) {
+            new WindowRun(window).execute(onError);
+            window.clear();
+        }
+    }
+
+    /**
+     * Lines buffered for the next parallel run.
+     */
+    private static final class Window {
+        final String[] lines;
+        final long[] lineNumbers;
+        int count;
+
+        Window(int size) {
+            lines = new String[size];
+            lineNumbers = new long[size];
+        }
+
+        void add(String line, long lineNumber) {
+            lines[count] = line;
+            lineNumbers[count] = lineNumber;
+            count++;
+        }
+
+        boolean isFull() {
+            return count == lines.length;
+        }
+
+        void clear() {
+            Arrays.fill(lines, 0, count, null);
+            count = 0;
+        }
+    }
+
+    /**
+     * Dependency graph and execution state of one window.
+     */
+    private final class WindowRun {
+        private final Window window;
+        private final int count;
+        private final CompiledStatement[] statements;
+        private final RuntimeException[] errors;
+        private final IntList[] firstAssignments; // Targets the line defined for the first time, or null
+        private final int[][] successors;
+        private final AtomicIntegerArray pending;  // Unfinished dependencies per line
+        private final CountDownLatch done;
+        private volatile Throwable failure;        // JVM error thrown by a line, rethrown after the run
+
+        WindowRun(Window window) {
+            this.window = window;
+            this.count = window.count;
+            this.statements = new CompiledStatement[count];
+            this.errors = new RuntimeException[count];
+            this.firstAssignments = new IntList[count];
+            this.successors = new int[count][];
+            this.pending = new AtomicIntegerArray(count);
+            this.done = new CountDownLatch(count);
+        }
+
+        void execute(Consumer<LineError> onError) {
+            for (int i = 0; i < count; i++) {
+                try {
+                    statements[i] = calculator.compile(window.lines[i]);
+                } catch (RuntimeException e) {
+                    errors[i] = e;
+                }
+            }
+            buildGraph();
+
+            VariableStore variables = calculator.variables();
+            variables.reserve(variables.symbols().size());
+            variables.deferOrder(true);
+            try {
+                // Collect the roots before starting any, as running lines make successors ready
+                int[] roots = new int[count];
+                int rootCount = 0;
+                for (int i = 0; i < count; i++) {
+                    if (pending.get(i) == 0) {
+                        roots[rootCount++] = i;
+                    }
+                }
+                for (int i = 0; i < rootCount; i++) {
+                    int line = roots[i];
+                    pool.execute(() -> runFrom(line));
+                }
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while evaluating batch", e);
+            } finally {
+                variables.deferOrder(false);
+            }
+
+            for (int i = 0; i < count; i++) {
+                IntList targets = firstAssignments[i];
+                for (int k = 0; targets != null && k < targets.size; k++) {
+                    variables.recordFirstAssignment(targets.values[k]);
+                }
+            }
+            if (failure instanceof Error error) {
+                throw error;
+            }
+            for (int i = 0; i < count; i++) {
+                if (errors[i] != null) {
+                    onError.accept(new LineError(window.lineNumbers[i], window.lines[i], errors[i]));
+                }
+            }
+        }
+
+        /**
+         * Adds an edge from every earlier conflicting line, tracking per slot
+         * the last line that wrote it and the lines that read it since.
+         */
+        private void buildGraph() {
+            int slots = calculator.variables().symbols().size();
+            int[] lastWriter = new int[slots];
+            Arrays.fill(lastWriter, -1);
+            IntList[] readersSinceWrite = new IntList[slots];
+            IntList[] edges = new IntList[count];
+
+            for (int line = 0; line < count; line++) {
+                if (statements[line] == null) {
+                    continue; // Compile error: nothing to run
+                }
+                SlotUsage usage = SlotUsage.ofLine(statements[line]);
+                for (int slot : usage.reads()) {
+                    addEdge(edges, lastWriter[slot], line);
+                }
+                for (int slot : usage.writes()) {
+                    addEdge(edges, lastWriter[slot], line);
+                    IntList readers = readersSinceWrite[slot];
+                    if (readers != null) {
+                        for (int i = 0; i < readers.size; i++) {
+                            addEdge(edges, readers.values[i], line);
+                        }
+                        readers.size = 0;
+                    }
+                    lastWriter[slot] = line;
+                }
+                for (int slot : usage.reads()) {
+                    if (lastWriter[slot] != line) {
+                        if (readersSinceWrite[slot] == null) {
+                            readersSinceWrite[slot] = new IntList();
+                        }
+                        readersSinceWrite[slot].add(line);
+                    }
+                }
+            }
+
+            for (int line = 0; line < count; line++) {
+                successors[line] = edges[line] == null ? new int[0] : Arrays.copyOf(edges[line].values, edges[line].size);
+            }
+        }
+
+        private void addEdge(IntList[] edges, int from, int to) {
+            if (from < 0 || from == to) {
+                return;
+            }
+            if (edges[from] == null) {
+                edges[from] = new IntList();
+            }
+            edges[from].add(to);
+            pending.incrementAndGet(to);
+        }
+
+        /**
+         * Runs a line, then its successors that became ready: one inline, the rest as new tasks.
+         */
+        private void runFrom(int line) {
+            while (line >= 0) {
+                try {
+                    runLine(line);
+                } catch (Throwable e) {
+                    failure = e;
+                }
+                int next = -1;
+                for (int successor : successors[line]) {
+                    if (pending.decrementAndGet(successor) == 0) {
+                        if (next < 0) {
+                            next = successor;
+                        } else {
+                            int ready = successor;
+                            pool.execute(() -> runFrom(ready));
+                        }
+                    }
+                }
+                done.countDown();
+                line = next;
+            }
+        }
+
+        private void runLine(int line) {
+            VariableStore variables = calculator.variables();
+            for (CompiledStatement statement = statements[line]; statement != null; statement = statement.next()) {
+                int target = statement.getTargetSlot();
+                boolean wasDefined = variables.isDefined(target);
+                try {
+                    calculator.execute(statement, window.lineNumbers[line]);
+                } catch (RuntimeException e) {
+                    errors[line] = e;
+                    return;
+                }
+                if (!wasDefined) {
+                    if (firstAssignments[line] == null) {
+                        firstAssignments[line] = new IntList();
+                    }
+                    firstAssignments[line].add(target);
+                }
+            }
+        }
+    }
+}
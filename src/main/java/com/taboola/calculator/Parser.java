@@ -6,14 +6,29 @@ import java.util.Map;
  * Parser evaluates expressions using recursive descent.
  * It relies on the Tokenizer to break the input into tokens.
  * Handles operator precedence, variables, and increments.
+ * Arithmetic is exact int arithmetic: a result that does not fit in an int throws
+ * ArithmeticException("integer overflow") instead of wrapping around.
  */
 public class Parser {
-    private final Tokenizer tokenizer;           // Supplies tokens from the input string
-    private final Map<String, Integer> variables; // Variables and their values
+    private final Tokenizer tokenizer;     // Supplies tokens from the input string
+    private final VariableTable variables; // Variables and their values
+    private final IdentifierTable identifiers; // Same table when it interns identifiers, else null
 
-    public Parser(Tokenizer tokenizer, Map<String, Integer> variables) {
+    /**
+     * With an {@link IdentifierTable}, variables are found by interned id, straight from the input's
+     * characters; other tables are accessed by name.
+     */
+    public Parser(Tokenizer tokenizer, VariableTable variables) {
         this.tokenizer = tokenizer;
         this.variables = variables;
+        this.identifiers = variables instanceof IdentifierTable table ? table : null;
+    }
+
+    /**
+     * Reads and writes the variables through the map (see {@link VariableTable#of(Map)}).
+     */
+    public Parser(Tokenizer tokenizer, Map<String, Integer> variables) {
+        this(tokenizer, VariableTable.of(variables));
     }
 
     /**
@@ -27,17 +42,17 @@ public class Parser {
         int value = parseTerm();  // Start with first term
 
         // Keep adding while we see a PLUS or MINUS token
-        while (tokenizer.peek().getType() == TokenType.PLUS || tokenizer.peek().getType() == TokenType.MINUS) {
-            TokenType type = tokenizer.peek().getType();
+        while (tokenizer.kind() == TokenType.PLUS || tokenizer.kind() == TokenType.MINUS) {
+            TokenType type = tokenizer.kind();
 
             if (type == TokenType.PLUS) {
-                tokenizer.next();       // Consume '+'
+                tokenizer.advance();    // Consume '+'
                 int rhs = parseTerm();  // Parse term after '+'
-                value += rhs;
+                value = Math.addExact(value, rhs);
             } else if (type == TokenType.MINUS) {
-                tokenizer.next();       // Consume '-'
+                tokenizer.advance();    // Consume '-'
                 int rhs = parseTerm();  // Parse term after '-'
-                value -= rhs;
+                value = Math.subtractExact(value, rhs);
             } else {
                 break; // No more '+' or '-'
             }
@@ -55,20 +70,20 @@ public class Parser {
     private int parseTerm() {
         int value = parseFactor();  // Start with first factor
 
-        while (tokenizer.peek().getType() == TokenType.MUL || tokenizer.peek().getType() == TokenType.DIV) {
-            if (tokenizer.peek().getType() == TokenType.MUL) {
-                tokenizer.next();                 // Consume '*'
+        while (tokenizer.kind() == TokenType.MUL || tokenizer.kind() == TokenType.DIV) {
+            if (tokenizer.kind() == TokenType.MUL) {
+                tokenizer.advance();              // Consume '*'
                 int rhs = parseFactor();          // Parse the next factor
-                value *= rhs;
+                value = Math.multiplyExact(value, rhs);
             } else {
-                tokenizer.next();                 // Consume '/'
+                tokenizer.advance();              // Consume '/'
                 int rhs = parseFactor();          // Parse the next factor
 
                 if (rhs == 0) {
-                    throw new ArithmeticException("Division by zero");
+                    throw DivisionByZero.INSTANCE;
                 }
 
-                value /= rhs;
+                value = Math.divideExact(value, rhs);
             }
         }
 
@@ -88,72 +103,94 @@ public class Parser {
      *           | PRE_INC IDENTIFIER
      */
     private int parseFactor() {
-        Token token = tokenizer.peek();
-
-        switch (token.getType()) {
+        switch (tokenizer.kind()) {
             case MINUS:
                 // Handle unary minus (negation)
-                tokenizer.next();  // Consume '-'
+                tokenizer.advance();  // Consume '-'
                 int negatedValue = parseFactor();  // Recursively parse the next factor
-                return -negatedValue;
+                return Math.negateExact(negatedValue);
 
             case NUMBER:
-                tokenizer.next();  // Consume the number token
-                return Integer.parseInt(token.getText());
+                int number = tokenizer.numberValue();
+                tokenizer.advance();  // Consume the number token
+                return number;
 
             case PRE_INC:
-                tokenizer.next();  // Consume '++'
-                if (tokenizer.peek().getType() != TokenType.IDENTIFIER) {
+                tokenizer.advance();  // Consume '++'
+                if (tokenizer.kind() != TokenType.IDENTIFIER) {
                     throw new IllegalArgumentException("Expected variable after ++");
                 }
-                String varName = tokenizer.peek().getText();
-                tokenizer.next(); // Consume variable
-
-                if (!variables.containsKey(varName)) {
-                    throw new IllegalArgumentException("Variable '" + varName + "' is not defined");
-                }
-                int newVal = variables.get(varName) + 1;
-                variables.put(varName, newVal);
-                return newVal; // Pre-increment returns *new* value
-
+                return preUpdate(1); // Pre-increment returns *new* value
 
             case PRE_DEC:
-                tokenizer.next();
-                if (tokenizer.peek().getType() != TokenType.IDENTIFIER) {
+                tokenizer.advance();
+                if (tokenizer.kind() != TokenType.IDENTIFIER) {
                     throw new IllegalArgumentException("Expected variable after --");
                 }
-                String varDec = tokenizer.peek().getText();
-                tokenizer.next();
-                if (!variables.containsKey(varDec)) {
-                    throw new IllegalArgumentException("Variable '" + varDec + "' is not defined");
-                }
-                int newDec = variables.get(varDec) - 1;
-                variables.put(varDec, newDec);
-                return newDec;
+                return preUpdate(-1);
 
             case IDENTIFIER:  // Could be plain variable or "i++"
-                tokenizer.next();  // Consume the variable
-                String name = token.getText();
-                if (!variables.containsKey(name)) {
-                    throw new IllegalArgumentException("Variable '" + name + "' is not defined");
-                }
-                int currentVal = variables.get(name);
-
-                // Handle post-increment and post-decrement
-                if (tokenizer.peek().getType() == TokenType.POST_INC) {
-                    tokenizer.next();
-                    variables.put(name, currentVal + 1);
-                    return currentVal;
-                } else if (tokenizer.peek().getType() == TokenType.POST_DEC) {
-                    tokenizer.next();
-                    variables.put(name, currentVal - 1);
-                    return currentVal;
-                }
-
-                return currentVal;
+                return variable();
 
             default:
-                throw new IllegalArgumentException("Unexpected token in expression: " + token.getText());
+                throw new IllegalArgumentException("Unexpected token in expression: " + tokenizer.text());
+        }
+    }
+
+    /**
+     * Adds delta (1 for ++i, -1 for --i) to the variable at the current token, consumes it and returns the new value.
+     */
+    private int preUpdate(int delta) {
+        if (identifiers != null) {
+            int id = identifiers.intern(tokenizer);  // One probe, no String for a known name
+            tokenizer.advance();
+            int newValue = Math.addExact(identifiers.get(id), delta);
+            identifiers.set(id, newValue);
+            return newValue;
+        }
+        String name = tokenizer.text();
+        tokenizer.advance();
+        int newValue = Math.addExact(variables.get(name), delta);
+        variables.put(name, newValue);
+        return newValue;
+    }
+
+    /**
+     * Reads the variable at the current token, applying a following i++ or i-- after the read.
+     */
+    private int variable() {
+        if (identifiers != null) {
+            int id = identifiers.intern(tokenizer);
+            tokenizer.advance();  // Consume the variable
+            int currentVal = identifiers.get(id);  // Throws if the variable is not defined
+            int delta = postfixDelta();
+            if (delta != 0) {
+                identifiers.set(id, Math.addExact(currentVal, delta));
+            }
+            return currentVal;
+        }
+        String name = tokenizer.text();
+        tokenizer.advance();
+        int currentVal = variables.get(name);
+        int delta = postfixDelta();
+        if (delta != 0) {
+            variables.put(name, Math.addExact(currentVal, delta));
+        }
+        return currentVal;
+    }
+
+    /**
+     * Consumes a post-increment (1) or post-decrement (-1); returns 0 if there is none.
+     */
+    private int postfixDelta() {
+        if (tokenizer.kind() == TokenType.POST_INC) {
+            tokenizer.advance();
+            return 1;
+        }
+        if (tokenizer.kind() == TokenType.POST_DEC) {
+            tokenizer.advance();
+            return -1;
         }
+        return 0;
     }
 }
@@ -0,0 +1,220 @@
+package com.taboola.calculator;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * PipelinedEvaluator runs a stream of lines through three stages. A reader thread groups the lines
+ * into chunks, worker threads lex and compile each chunk ahead of time (compiling needs no variable
+ * values), and the calling thread executes the compiled statements. Chunks reach the evaluator in
+ * line order through a bounded lock-free {@link SpscQueue}, which also limits how far reading and
+ * compiling run ahead.
+ * <p>
+ * The outcome is exactly that of calling {@link Calculator#evaluate(CharSequence)} on every line in
+ * order and catching its exception: all variable writes happen on one thread, in line order.
+ * Lines repeated within a run share one compiled statement, up to the calculator's plan cache size.
+ */
+final class PipelinedEvaluator {
+    static final int DEFAULT_CHUNK_SIZE = 256;
+    static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private final Calculator calculator;
+    private final Executor compilers;
+    private final int chunkSize;
+    private final SpscQueue<Chunk> queue;
+    private final ConcurrentHashMap<String, CompiledStatement> plans = new ConcurrentHashMap<>();
+    private final int planLimit;
+    private final CalculatorMetrics metrics;
+    private volatile boolean cancelled;  // The evaluator stopped; the reader must not wait for it
+    private volatile boolean readerDone; // The reader thread ended; nothing more will be queued
+
+    PipelinedEvaluator(Calculator calculator, Executor compilers, int chunkSize, int queueCapacity, int planLimit) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.calculator = calculator;
+        this.compilers = compilers;
+        this.chunkSize = chunkSize;
+        this.queue = new SpscQueue<>(queueCapacity);
+        this.planLimit = planLimit;
+        this.metrics = calculator.getMetrics();
+    }
+
+    /**
+     * Evaluates the lines on the calling thread, reporting errors in line order as they happen.
+     * Can be called once per instance. If the reader thread dies before queueing the last chunk,
+     * the lines before it are evaluated and an IllegalStateException is thrown instead of waiting.
+     */
+    void run(Stream<String> lines, Consumer<LineError> onError) {
+        Thread.ofPlatform().daemon().name("calculator-pipeline-reader").start(() -> {
+            try {
+                read(lines);
+            } finally {
+                readerDone = true;
+            }
+        });
+        try {
+            while (true) {
+                Chunk chunk = queue.take(() -> readerDone);
+                if (chunk == null) {
+                    throw new IllegalStateException("Pipeline reader stopped before the end of the input");
+                }
+                for (int spins = 0; !chunk.compiled; spins++) {
+                    SpscQueue.backOff(spins);
+                }
+                if (chunk.failure != null) {
+                    throw rethrow(chunk.failure);
+                }
+                for (int i = 0; i < chunk.count; i++) {
+                    RuntimeException error = chunk.errors[i];
+                    if (error == null) {
+                        try {
+                            calculator.run(chunk.statements[i], chunk.lineNumbers[i]);
+                        } catch (RuntimeException e) {
+                            error = e;
+                        }
+                    }
+                    if (error != null) {
+                        onError.accept(new LineError(chunk.lineNumbers[i], chunk.lines[i], error));
+                    }
+                }
+                if (chunk.last) {
+                    if (chunk.readFailure != null) {
+                        throw rethrow(chunk.readFailure);
+                    }
+                    return;
+                }
+            }
+        } finally {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Reader stage: groups non-blank lines into chunks, starts compiling each one and queues it.
+     * A failure of the stream ends the input; it is rethrown by the evaluator after the lines before it.
+     */
+    private void read(Stream<String> lines) {
+        Chunk chunk = new Chunk(chunkSize);
+        try {
+            Iterator<String> iterator = lines.iterator();
+            long lineNumber = 0;
+            while (iterator.hasNext() && !cancelled) {
+                String line = iterator.next();
+                lineNumber++;
+                if (CharSequences.isBlank(line)) {
+                    continue;
+                }
+                chunk.add(line, lineNumber);
+                if (chunk.count == chunkSize) {
+                    if (!submit(chunk)) {
+                        return;
+                    }
+                    chunk = new Chunk(chunkSize);
+                }
+            }
+        } catch (Throwable e) {
+            chunk.readFailure = e;
+        }
+        chunk.last = true;
+        submit(chunk);
+    }
+
+    /**
+     * Starts compiling the chunk and queues it. If the executor cannot take the task (it was shut
+     * down, or the JVM is out of memory), the chunk is queued as failed, so the evaluator does not
+     * wait for a compilation that never runs. Returns false if reading must stop: the evaluator
+     * is gone or the chunk failed.
+     */
+    private boolean submit(Chunk chunk) {
+        if (chunk.count == 0) {
+            chunk.compiled = true;
+        } else {
+            try {
+                compilers.execute(() -> compile(chunk));
+            } catch (Throwable e) {
+                chunk.failure = e;
+                chunk.last = true;
+                chunk.compiled = true;
+            }
+        }
+        return queue.put(chunk, () -> cancelled) && !chunk.last;
+    }
+
+    /**
+     * Compile stage, run on a worker thread.
+     */
+    private void compile(Chunk chunk) {
+        try {
+            for (int i = 0; i < chunk.count; i++) {
+                try {
+                    chunk.statements[i] = plan(chunk.lines[i]);
+                } catch (RuntimeException e) {
+                    chunk.errors[i] = e;
+                }
+            }
+        } catch (Throwable e) {
+            chunk.failure = e;  // A JVM error, rethrown by the evaluator
+        }
+        chunk.compiled = true;
+    }
+
+    private CompiledStatement plan(String line) {
+        CompiledStatement statement = plans.get(line);
+        if (statement != null) {
+            if (metrics != null) {
+                metrics.planCacheHit();
+            }
+            return statement;
+        }
+        statement = calculator.compileMiss(line, metrics);
+        if (plans.size() < planLimit) {
+            CompiledStatement existing = plans.putIfAbsent(line, statement);
+            if (existing != null) {
+                return existing; // Compiled concurrently by another worker
+            }
+        }
+        return statement;
+    }
+
+    private static RuntimeException rethrow(Throwable failure) {
+        if (failure instanceof Error error) {
+            throw error;
+        }
+        if (failure instanceof RuntimeException e) {
+            return e;
+        }
+        return new IllegalStateException("Pipeline stage failed", failure);
+    }
+
+    /**
+     * Consecutive non-blank lines and, once {@link #compiled} is set, their compiled form.
+     */
+    private static final class Chunk {
+        final String[] lines;
+        final long[] lineNumbers;
+        final CompiledStatement[] statements;
+        final RuntimeException[] errors;   // Compile error per line
+        int count;
+        boolean last;                      // No chunks follow
+        Throwable readFailure;             // Set on the last chunk if the stream failed
+        Throwable failure;                 // JVM error while compiling, or the compile task was rejected
+        volatile boolean compiled;         // Publishes statements, errors and failure to the evaluator
+
+        Chunk(int size) {
+            lines = new String[size];
+            lineNumbers = new long[size];
+            statements = new CompiledStatement[size];
+            errors = new RuntimeException[size];
+        }
+
+        void add(String line, long lineNumber) {
+            lines[count] = line;
+            lineNumbers[count] = lineNumber;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.taboola.calculator;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ReactiveScript keeps a script of assignment lines together with the dependencies between them,
+ * so that changing an input variable re-runs only the lines downstream of it.
+ * <p>
+ * Inputs are variables defined before the first line (see {@link #setInput(String, int)}).
+ * For every variable a line touches, the line records which earlier line last wrote it, or that
+ * it comes from the inputs, and keeps the values it left behind. When an input changes, the lines
+ * reading it are re-run in script order from those recorded values, and the lines after them only
+ * if an output actually changed. Increments, decrements and compound assignments count as both
+ * reads and writes, so lines like {@code j = i++} or {@code x += y} are replayed correctly.
+ * <p>
+ * The variables and errors are always those of evaluating the inputs and then every line in order,
+ * but the cost of an input change is proportional to the lines it affects, not to the script size.
+ */
+public final class ReactiveScript {
+    private static final int NO_WRITER = -1;
+
+    private final Calculator compiler = new Calculator();  // Compiles lines; its symbol table is shared
+    private final SymbolTable symbols;
+    private final VariableStore scratch;                    // Runs one line from its recorded inputs
+    private VariableStore variables;                        // State after the last line
+    private final List<Line> lines = new ArrayList<>();
+    private final BitSet dirty = new BitSet();              // Lines to re-run, in script order
+
+    // Per slot
+    private int[] lastWriter = new int[0];      // Last line writing the slot, or NO_WRITER
+    private int[] lastWriterPos = new int[0];   // Position of the slot in that line
+    private int[] inputValues = new int[0];
+    private boolean[] inputDefined = new boolean[0];
+    private IntList[] inputReaders = new IntList[0];  // Lines reading the slot before any line writes it
+
+    private final IntList inputOrder = new IntList();
+    private boolean orderDirty;  // Variables were defined or undefined out of order; rebuild the final state
+    private int lastUpdateCount;
+
+    public ReactiveScript() {
+        this.symbols = compiler.variables().symbols();
+        this.scratch = new VariableStore(symbols);
+        this.scratch.deferOrder(true);
+        this.variables = new VariableStore(symbols);
+    }
+
+    /**
+     * Appends a line to the script and runs it. Blank lines are ignored.
+     * Syntax errors are thrown and the line is not added; evaluation errors (undefined variables,
+     * division by zero) are kept with the line, see {@link #getErrors()}, as they may go away
+     * when an input changes.
+     */
+    public void add(CharSequence text) {
+        String line = text.toString();
+        if (line.isBlank()) {
+            return;
+        }
+        CompiledStatement statement = compiler.compile(line);
+        SlotUsage usage = SlotUsage.ofLine(statement);
+        ensureSlots(symbols.size());
+
+        int index = lines.size();
+        Line node = new Line(line, statement, usage);
+        for (int k = 0; k < node.slots.length; k++) {
+            int slot = node.slots[k];
+            int writer = lastWriter[slot];
+            node.from[k] = writer;
+            if (writer == NO_WRITER) {
+                if (inputReaders[slot] == null) {
+                    inputReaders[slot] = new IntList();
+                }
+                inputReaders[slot].add(index);
+            } else {
+                node.fromPos[k] = lastWriterPos[slot];
+                lines.get(writer).successors.add(index);
+            }
+        }
+        lines.add(node);
+        for (int k = 0; k < node.slots.length; k++) {
+            if (node.written[k]) {
+                lastWriter[node.slots[k]] = index;
+                lastWriterPos[node.slots[k]] = k;
+            }
+        }
+
+        boolean wasOrderDirty = orderDirty;
+        run(index);
+        orderDirty = wasOrderDirty;  // The new last line can only append to the assignment order
+        for (int k = 0; k < node.slots.length; k++) {
+            if (node.written[k] && node.defined[k]) {
+                node.load(k, variables, node.slots[k]);
+            }
+        }
+    }
+
+    /**
+     * Sets an input variable and re-runs the lines affected by the change.
+     */
+    public void setInput(String name, int value) {
+        int slot = symbols.resolve(name);
+        ensureSlots(symbols.size());
+        if (inputDefined[slot] && inputValues[slot] == value) {
+            lastUpdateCount = 0;
+            return;
+        }
+        if (!inputDefined[slot]) {
+            inputDefined[slot] = true;
+            inputOrder.add(slot);
+            orderDirty |= !lines.isEmpty();  // Inputs come before every variable defined by a line
+        }
+        inputValues[slot] = value;
+        if (lastWriter[slot] == NO_WRITER) {
+            variables.set(slot, value);
+        }
+
+        IntList readers = inputReaders[slot];
+        if (readers != null) {
+            for (int i = 0; i < readers.size; i++) {
+                dirty.set(readers.values[i]);
+            }
+        }
+        propagate();
+    }
+
+    /**
+     * Values after the last line, in order of first assignment (inputs first).
+     * The map is a view that is valid until the next change.
+     */
+    public Map<String, Number> getVariables() {
+        if (orderDirty) {
+            rebuildVariables();
+        }
+        return variables.asMap();
+    }
+
+    /**
+     * Lines that currently fail, in script order. Line numbers count the added lines from 1.
+     */
+    public List<LineError> getErrors() {
+        List<LineError> errors = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            Line line = lines.get(i);
+            if (line.error != null) {
+                errors.add(new LineError(i + 1, line.text, line.error));
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Number of lines in the script.
+     */
+    public int size() {
+        return lines.size();
+    }
+
+    /**
+     * Number of lines re-run by the last {@link #setInput(String, int)} call.
+     */
+    public int getLastUpdateCount() {
+        return lastUpdateCount;
+    }
+
+    /**
+     * Re-runs the dirty lines in order, marking the lines after each one whose outputs changed.
+     * Successors always come later in the script, so a single forward scan is enough.
+     */
+    private void propagate() {
+        int count = 0;
+        for (int index = dirty.nextSetBit(0); index >= 0; index = dirty.nextSetBit(index + 1)) {
+            dirty.clear(index);
+            count++;
+            if (run(index)) {
+                IntList successors = lines.get(index).successors;
+                for (int i = 0; i < successors.size; i++) {
+                    dirty.set(successors.values[i]);
+                }
+            }
+        }
+        lastUpdateCount = count;
+    }
+
+    /**
+     * Runs a line on the scratch store, loaded with the values the line sees in the script,
+     * and records the values it writes. Returns whether any of them changed.
+     */
+    private boolean run(int index) {
+        Line line = lines.get(index);
+        for (int k = 0; k < line.slots.length; k++) {
+            int slot = line.slots[k];
+            int writer = line.from[k];
+            boolean defined = writer == NO_WRITER ? inputDefined[slot] : lines.get(writer).defined[line.fromPos[k]];
+            if (!defined) {
+                scratch.forget(slot);
+            } else if (writer == NO_WRITER) {
+                scratch.set(slot, inputValues[slot]);
+            } else {
+                lines.get(writer).load(line.fromPos[k], scratch, slot);
+            }
+        }
+
+        try {
+            for (CompiledStatement statement = line.statement; statement != null; statement = statement.next()) {
+                statement.execute(scratch);
+            }
+            line.error = null;
+        } catch (RuntimeException e) {
+            line.error = e;  // Side effects before the failure still count, as in Calculator
+        }
+
+        boolean changed = false;
+        for (int k = 0; k < line.slots.length; k++) {
+            int slot = line.slots[k];
+            boolean defined = scratch.isDefined(slot);
+            if (line.written[k] && (defined != line.defined[k] || defined && !line.holds(k, scratch, slot))) {
+                changed = true;
+                orderDirty |= defined != line.defined[k];
+                line.defined[k] = defined;
+                if (defined) {
+                    line.store(k, scratch, slot);
+                    if (lastWriter[slot] == index) {
+                        line.load(k, variables, slot);
+                    }
+                }
+            }
+            scratch.forget(slot);
+        }
+        return changed;
+    }
+
+    /**
+     * Rebuilds the final state in order of first assignment: inputs, then each variable
+     * at the first line that leaves it defined.
+     */
+    private void rebuildVariables() {
+        VariableStore rebuilt = new VariableStore(symbols);
+        for (int i = 0; i < inputOrder.size; i++) {
+            int slot = inputOrder.values[i];
+            loadFinalValue(slot, rebuilt);
+        }
+        for (Line line : lines) {
+            for (int k = 0; k < line.slots.length; k++) {
+                int slot = line.slots[k];
+                if (line.written[k] && line.defined[k] && !rebuilt.isDefined(slot)) {
+                    loadFinalValue(slot, rebuilt);
+                }
+            }
+        }
+        variables = rebuilt;
+        orderDirty = false;
+    }
+
+    private void loadFinalValue(int slot, VariableStore store) {
+        int writer = lastWriter[slot];
+        if (writer == NO_WRITER) {
+            store.set(slot, inputValues[slot]);
+        } else {
+            lines.get(writer).load(lastWriterPos[slot], store, slot);
+        }
+    }
+
+    private void ensureSlots(int slots) {
+        if (slots <= lastWriter.length) {
+            return;
+        }
+        int capacity = Math.max(slots, lastWriter.length * 2);
+        int oldCapacity = lastWriter.length;
+        lastWriter = Arrays.copyOf(lastWriter, capacity);
+        Arrays.fill(lastWriter, oldCapacity, capacity, NO_WRITER);
+        lastWriterPos = Arrays.copyOf(lastWriterPos, capacity);
+        inputValues = Arrays.copyOf(inputValues, capacity);
+        inputDefined = Arrays.copyOf(inputDefined, capacity);
+        inputReaders = Arrays.copyOf(inputReaders, capacity);
+    }
+
+    /**
+     * One line of the script with its dependencies and the values it left behind.
+     * Slots are all the variables the line reads or writes: a line that fails keeps
+     * the previous value of its target, so it depends on the target's previous writer too.
+     */
+    private static final class Line {
+        final String text;
+        final CompiledStatement statement;
+        final int[] slots;        // Sorted
+        final boolean[] written;  // The line writes slots[k]
+        final int[] from;         // Line that last wrote slots[k] before this one, or NO_WRITER
+        final int[] fromPos;      // Position of slots[k] in that line
+        final long[] values;      // Value of slots[k] after this line, if written and not wider than a long
+        BigInteger[] bigValues;   // Wider values, null until the line leaves one
+        final boolean[] defined;
+        final IntList successors = new IntList();
+        RuntimeException error;
+
+        Line(String text, CompiledStatement statement, SlotUsage usage) {
+            this.text = text;
+            this.statement = statement;
+            this.slots = union(usage.reads(), usage.writes());
+            this.written = new boolean[slots.length];
+            for (int k = 0; k < slots.length; k++) {
+                written[k] = Arrays.binarySearch(usage.writes(), slots[k]) >= 0;
+            }
+            this.from = new int[slots.length];
+            this.fromPos = new int[slots.length];
+            this.values = new long[slots.length];
+            this.defined = new boolean[slots.length];
+        }
+
+        /**
+         * Records the value of slots[k] the store holds after the line.
+         */
+        void store(int k, VariableStore from, int slot) {
+            if (from.getWidth(slot) == NumericWidth.BIG) {
+                if (bigValues == null) {
+                    bigValues = new BigInteger[slots.length];
+                }
+                bigValues[k] = from.getBig(slot);
+            } else {
+                values[k] = from.getLong(slot);
+                if (bigValues != null) {
+                    bigValues[k] = null;
+                }
+            }
+        }
+
+        /**
+         * Returns whether the store holds the recorded value of slots[k].
+         */
+        boolean holds(int k, VariableStore store, int slot) {
+            if (store.getWidth(slot) == NumericWidth.BIG) {
+                return bigValues != null && store.getBig(slot).equals(bigValues[k]);
+            }
+            return (bigValues == null || bigValues[k] == null) && values[k] == store.getLong(slot);
+        }
+
+        void load(int k, VariableStore to, int slot) {
+            if (bigValues != null && bigValues[k] != null) {
+                to.setBig(slot, bigValues[k]);
+            } else {
+                to.setLong(slot, values[k]);
+            }
+        }
+
+        private static int[] union(int[] a, int[] b) {
+            int[] all = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, all, a.length, b.length);
+            return Arrays.stream(all).sorted().distinct().toArray();
+        }
+    }
+}
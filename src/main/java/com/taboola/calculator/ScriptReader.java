@@ -0,0 +1,177 @@
+package com.taboola.calculator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * ScriptReader streams the lines of a UTF-8 script file through fixed-size NIO buffers.
+ * Each line is returned as a {@link CharSequence} view over the internal character buffer,
+ * so no String is built per line and heap usage does not depend on the file size
+ * (only on the longest line). Lines end at '\n', '\r' or "\r\n", like Files.readAllLines.
+ */
+public final class ScriptReader implements Closeable {
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private final ByteBuffer bytes;
+    private final LineView line = new LineView();
+
+    private char[] chars;
+    private CharBuffer charBuffer;  // Wraps chars, used as the decoder output
+    private int lineStart;          // Start of the first unread character
+    private int scanPos;            // Where the search for the next line terminator resumes
+    private int limit;              // End of the decoded characters
+    private boolean endOfFile;
+    private boolean skipLineFeed;   // Previous line ended with '\r', so a leading '\n' belongs to it
+    private long lineNumber;
+
+    public ScriptReader(Path path) throws IOException {
+        this(path, DEFAULT_BUFFER_SIZE);
+    }
+
+    ScriptReader(Path path, int bufferSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.bytes = ByteBuffer.allocateDirect(bufferSize);
+        this.chars = new char[bufferSize];
+        this.charBuffer = CharBuffer.wrap(chars);
+    }
+
+    /**
+     * Returns the next line without its terminator, or null at the end of the file.
+     * The returned sequence is only valid until the next call; use toString() to keep it.
+     */
+    public CharSequence nextLine() throws IOException {
+        while (true) {
+            if (skipLineFeed && lineStart < limit) {
+                skipLineFeed = false;
+                if (chars[lineStart] == '\n') {
+                    lineStart++;
+                    scanPos = lineStart;
+                }
+            }
+
+            for (int i = scanPos; i < limit; i++) {
+                char ch = chars[i];
+                if (ch == '\n' || ch == '\r') {
+                    line.set(lineStart, i);
+                    skipLineFeed = ch == '\r';
+                    lineStart = i + 1;
+                    scanPos = lineStart;
+                    lineNumber++;
+                    return line;
+                }
+            }
+            scanPos = limit;
+
+            if (!fill()) {
+                if (lineStart < limit) {
+                    line.set(lineStart, limit); // Last line without a terminator
+                    lineStart = limit;
+                    scanPos = limit;
+                    lineNumber++;
+                    return line;
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * 1-based number of the line most recently returned by {@link #nextLine()}.
+     */
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Decodes more of the file into the character buffer, keeping the unread characters.
+     * Returns false once the whole file has been decoded.
+     */
+    private boolean fill() throws IOException {
+        if (endOfFile) {
+            return false;
+        }
+
+        // Move the unread part of the current line to the front, growing only for very long lines
+        int unread = limit - lineStart;
+        if (lineStart > 0) {
+            System.arraycopy(chars, lineStart, chars, 0, unread);
+            scanPos -= lineStart;
+            lineStart = 0;
+            limit = unread;
+        }
+        if (chars.length - limit < 2) { // Room for at least a surrogate pair
+            chars = Arrays.copyOf(chars, chars.length * 2);
+            charBuffer = CharBuffer.wrap(chars);
+        }
+        charBuffer.limit(chars.length).position(limit);
+
+        boolean endOfInput = channel.read(bytes) < 0;
+        bytes.flip();
+        CoderResult result = decoder.decode(bytes, charBuffer, endOfInput);
+        if (result.isError()) {
+            result.throwException();
+        }
+        bytes.compact();
+        if (endOfInput && result.isUnderflow()) {
+            decoder.flush(charBuffer);
+            endOfFile = true;
+        }
+        limit = charBuffer.position();
+        return true;
+    }
+
+    /**
+     * Reusable CharSequence over one line of the character buffer.
+     */
+    private final class LineView implements CharSequence {
+        private int start;
+        private int end;
+
+        void set(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return chars[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, start, end - start);
+        }
+    }
+}
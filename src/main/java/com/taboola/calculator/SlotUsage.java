@@ -0,0 +1,99 @@
+package com.taboola.calculator;
+
+import java.util.Arrays;
+
+/**
+ * Variables a compiled statement reads and writes, as {@link SymbolTable} slots.
+ * Increments and decrements count as both a read and a write, and a compound
+ * assignment (+=, -=) also reads its target. Each array is sorted and has no duplicates.
+ */
+public record SlotUsage(int[] reads, int[] writes) {
+
+    public static SlotUsage of(CompiledStatement statement) {
+        SlotSet reads = new SlotSet();
+        SlotSet writes = new SlotSet();
+        collect(statement, reads, writes);
+        return new SlotUsage(reads.toSortedArray(), writes.toSortedArray());
+    }
+
+    /**
+     * Usage of a whole line: the statement and the ones following it (see {@link CompiledStatement#next()}).
+     */
+    public static SlotUsage ofLine(CompiledStatement first) {
+        SlotSet reads = new SlotSet();
+        SlotSet writes = new SlotSet();
+        for (CompiledStatement statement = first; statement != null; statement = statement.next()) {
+            collect(statement, reads, writes);
+        }
+        return new SlotUsage(reads.toSortedArray(), writes.toSortedArray());
+    }
+
+    /**
+     * Variables the expression reads, sorted and without duplicates.
+     */
+    static int[] readsOf(Expression expression) {
+        SlotSet reads = new SlotSet();
+        collect(expression, reads, new SlotSet());
+        return reads.toSortedArray();
+    }
+
+    private static void collect(CompiledStatement statement, SlotSet reads, SlotSet writes) {
+        collect(statement.getExpression(), reads, writes);
+        if (statement.getOperator() != TokenType.ASSIGN) {
+            reads.add(statement.getTargetSlot());
+        }
+        writes.add(statement.getTargetSlot());
+    }
+
+    private static void collect(Expression expression, SlotSet reads, SlotSet writes) {
+        switch (expression) {
+            case Expression.Literal literal -> {
+            }
+            case Expression.WideLiteral literal -> {
+            }
+            case Expression.Variable variable -> reads.add(variable.slot());
+            case Expression.Negate negate -> collect(negate.operand(), reads, writes);
+            case Expression.Chain chain -> {
+                collect(chain.first(), reads, writes);
+                for (Expression operand : chain.operands()) {
+                    collect(operand, reads, writes);
+                }
+            }
+            case Expression.Update update -> {
+                reads.add(update.slot());
+                writes.add(update.slot());
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SlotUsage other && Arrays.equals(reads, other.reads) && Arrays.equals(writes, other.writes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(reads) + Arrays.hashCode(writes);
+    }
+
+    @Override
+    public String toString() {
+        return "SlotUsage[reads=" + Arrays.toString(reads) + ", writes=" + Arrays.toString(writes) + "]";
+    }
+
+    private static final class SlotSet {
+        private int[] slots = new int[4];
+        private int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        int[] toSortedArray() {
+            return Arrays.stream(slots, 0, size).sorted().distinct().toArray();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.taboola.calculator;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Snapshot saves and restores the variables of a {@link Calculator} as a compact binary file,
+ * written and read through a memory-mapped buffer. Together with the number of input lines
+ * consumed so far, a snapshot is a checkpoint a batch run can resume from.
+ * <p>
+ * Layout (little-endian): a header (magic, version, line number, variable count, name bytes,
+ * CRC32C of the body, wide bytes), then the int values, the end offset of every name and the UTF-8 names,
+ * all in order of first assignment, and last the values that do not fit in an int as
+ * [index, byte length, two's-complement big-endian bytes]. Version 1 files, which have no
+ * wide values and a header without the wide byte count, are still read. Loading is a few bulk copies plus one symbol lookup per variable.
+ * A snapshot is written to a temporary file and atomically renamed, so a crash while writing
+ * leaves the previous snapshot intact. As the file is mapped at once, a snapshot is at most 2 GB;
+ * writing a larger state fails with an IOException.
+ */
+public final class Snapshot {
+    private static final int MAGIC = 0x31534354;  // "TCS1"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int V1_HEADER_SIZE = 28;
+    private static final long MAX_SIZE = Integer.MAX_VALUE;  // Largest file a single mapping can cover
+
+    private Snapshot() {
+    }
+
+    /**
+     * Writes the calculator's variables and the number of input lines they reflect.
+     */
+    public static void write(Path file, Calculator calculator, long lineNumber) throws IOException {
+        VariableStore variables = calculator.variables();
+        SymbolTable symbols = variables.symbols();
+        int count = variables.size();
+
+        byte[][] names = new byte[count][];
+        byte[][] wide = new byte[count][];  // Only for values that do not fit in an int
+        long nameBytes = 0;
+        long wideBytes = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = variables.slotAt(i);
+            names[i] = symbols.name(slot).getBytes(StandardCharsets.UTF_8);
+            nameBytes += names[i].length;
+            if (variables.getWidth(slot) != NumericWidth.INT) {
+                wide[i] = variables.getBig(slot).toByteArray();
+                wideBytes += 8 + wide[i].length;
+            }
+        }
+        long bodySize = 8L * count + nameBytes + wideBytes;
+        if (HEADER_SIZE + bodySize > MAX_SIZE) {
+            throw new IOException("Variables too large for a snapshot: " + (HEADER_SIZE + bodySize)
+                    + " bytes, the limit is " + MAX_SIZE);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + bodySize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(HEADER_SIZE);
+            for (int i = 0; i < count; i++) {
+                buffer.putInt(wide[i] == null ? variables.get(variables.slotAt(i)) : 0);
+            }
+            int end = 0;
+            for (int i = 0; i < count; i++) {
+                end += names[i].length;
+                buffer.putInt(end);
+            }
+            for (int i = 0; i < count; i++) {
+                buffer.put(names[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                if (wide[i] != null) {
+                    buffer.putInt(i).putInt(wide[i].length).put(wide[i]);
+                }
+            }
+
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(HEADER_SIZE, (int) bodySize));
+            buffer.putInt(0, MAGIC)
+                    .putInt(4, VERSION)
+                    .putLong(8, lineNumber)
+                    .putInt(16, count)
+                    .putInt(20, (int) nameBytes)
+                    .putInt(24, (int) crc.getValue())
+                    .putInt(28, (int) wideBytes);
+            buffer.force();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a snapshot into a calculator that has no variables yet and returns the
+     * number of input lines it reflects. Throws IOException if the file is not a valid snapshot.
+     */
+    public static long restore(Path file, Calculator calculator) throws IOException {
+        VariableStore variables = calculator.variables();
+        if (variables.size() > 0) {
+            throw new IllegalStateException("Snapshots can only be restored into an empty calculator");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < V1_HEADER_SIZE || size > MAX_SIZE) {
+                throw new IOException("Not a calculator snapshot: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a calculator snapshot: " + file);
+            }
+            int version = buffer.getInt(4);
+            if (version != VERSION && version != 1) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+            }
+            int headerSize = version == 1 ? V1_HEADER_SIZE : HEADER_SIZE;
+            if (size < headerSize) {
+                throw new IOException("Truncated snapshot: " + file);
+            }
+            long lineNumber = buffer.getLong(8);
+            int count = buffer.getInt(16);
+            int nameBytes = buffer.getInt(20);
+            int wideBytes = version == 1 ? 0 : buffer.getInt(28);
+            long bodySize = 8L * count + nameBytes + wideBytes;
+            if (count < 0 || nameBytes < 0 || wideBytes < 0 || headerSize + bodySize != size) {
+                throw new IOException("Truncated snapshot: " + file);
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(headerSize, (int) bodySize));
+            if ((int) crc.getValue() != buffer.getInt(24)) {
+                throw new IOException("Corrupt snapshot (checksum mismatch): " + file);
+            }
+
+            int[] values = new int[count];
+            int[] nameEnds = new int[count];
+            byte[] names = new byte[nameBytes];
+            buffer.position(headerSize);
+            buffer.asIntBuffer().get(values).get(nameEnds);
+            buffer.position(headerSize + 8 * count);
+            buffer.get(names);
+
+            SymbolTable symbols = variables.symbols();
+            variables.reserve(symbols.size() + count);
+            int[] slots = new int[count];
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                String name = new String(names, start, nameEnds[i] - start, StandardCharsets.UTF_8);
+                slots[i] = symbols.resolve(name);
+                variables.set(slots[i], values[i]);
+                start = nameEnds[i];
+            }
+            int end = buffer.position() + wideBytes;
+            while (buffer.position() < end) {
+                int index = buffer.getInt();
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                variables.setBig(slots[index], new BigInteger(bytes));
+            }
+            return lineNumber;
+        }
+    }
+}
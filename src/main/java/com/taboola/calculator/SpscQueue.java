@@ -0,0 +1,102 @@
+package com.taboola.calculator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounded, lock-free queue for exactly one producer thread and one consumer thread.
+ * Elements live in a ring; the producer only writes the tail and the consumer only writes
+ * the head, so no compare-and-set is needed. A full or empty queue is waited out by
+ * spinning briefly and then parking for short intervals, without locks or signals.
+ */
+final class SpscQueue<T> {
+    private static final int SPINS = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    private final AtomicReferenceArray<T> ring;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();  // Next index to take, written by the consumer
+    private final AtomicLong tail = new AtomicLong();  // Next index to put, written by the producer
+
+    /**
+     * @param capacity maximum number of queued elements, rounded up to a power of two
+     */
+    SpscQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds the element if there is room. Producer thread only.
+     */
+    boolean offer(T element) {
+        long t = tail.getPlain();
+        if (t - head.getAcquire() > mask) {
+            return false;
+        }
+        ring.setPlain((int) t & mask, element);
+        tail.setRelease(t + 1);  // Publishes the element
+        return true;
+    }
+
+    /**
+     * Removes the oldest element, or returns null if there is none. Consumer thread only.
+     */
+    T poll() {
+        long h = head.getPlain();
+        if (h == tail.getAcquire()) {
+            return null;
+        }
+        int index = (int) h & mask;
+        T element = ring.getPlain(index);
+        ring.setPlain(index, null);
+        head.setRelease(h + 1);  // Frees the slot for the producer
+        return element;
+    }
+
+    /**
+     * Adds the element, waiting while the queue is full. Returns false without adding it
+     * if {@code cancelled} becomes true while waiting.
+     */
+    boolean put(T element, BooleanSupplier cancelled) {
+        for (int spins = 0; !offer(element); spins++) {
+            if (cancelled.getAsBoolean()) {
+                return false;
+            }
+            backOff(spins);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the oldest element, waiting while the queue is empty. Returns null if the queue is
+     * empty once {@code finished} is true: the producer is gone and no element can come anymore.
+     */
+    T take(BooleanSupplier finished) {
+        T element;
+        for (int spins = 0; (element = poll()) == null; spins++) {
+            if (finished.getAsBoolean()) {
+                return poll(); // Put just before the producer finished, or null
+            }
+            backOff(spins);
+        }
+        return element;
+    }
+
+    static void backOff(int spins) {
+        if (spins < SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
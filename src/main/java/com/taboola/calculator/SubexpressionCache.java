@@ -0,0 +1,312 @@
+package com.taboola.calculator;
+
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SubexpressionCache memoizes the values of side-effect-free subexpressions (see
+ * {@link Calculator#setSubexpressionCache(SubexpressionCache)}). When a statement runs, each largest
+ * subexpression without {@code ++}/{@code --} that applies an operator to variables, such as
+ * {@code a * b / c} in {@code x = i++ + a * b / c}, is looked up by its structure, so equal
+ * subexpressions on different lines share an entry. The entry is valid while the versions of the
+ * variables it reads (see {@link VariableStore#version(int)}) are the ones it was computed with;
+ * as versions only grow, an outdated entry is simply recomputed and replaced.
+ * <p>
+ * The cache is a bounded LRU. Only {@code int} values are cached: a subexpression that overflows
+ * or fails is evaluated as usual every time. Hits and misses are counted to show whether the cache
+ * pays for its lookups. Lookups are synchronized, so calculators and evaluators on several threads
+ * can share one instance.
+ */
+public final class SubexpressionCache {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final int capacity;
+    private final LinkedHashMap<Key, Entry> entries;
+    private long hits;
+    private long misses;
+
+    public SubexpressionCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity maximum number of subexpressions to keep
+     */
+    public SubexpressionCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > SubexpressionCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Number of lookups answered from the cache.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Number of lookups that had to evaluate the subexpression, including outdated entries.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Share of lookups answered from the cache, 0 before the first lookup.
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * One-line summary, e.g. {@code Subexpression cache: 950 hits, 50 misses (95.0% hit rate), 12 entries}.
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("Subexpression cache: %d hits, %d misses (%.1f%% hit rate), %d entries",
+                hits, misses, 100 * getHitRate(), entries.size());
+    }
+
+    /**
+     * Returns the int value of the subexpression, from the cache if the variables it reads have not changed.
+     */
+    int evaluate(Key key, VariableStore variables) {
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.isCurrent(key.slots, variables)) {
+                hits++;
+                return entry.value;
+            }
+            misses++;
+        }
+        int value = key.expression.evaluate(variables); // Nothing is cached if this throws
+        Entry entry = new Entry(variables, key.slots, value);
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+        return value;
+    }
+
+    /**
+     * Splits the expression into the parts that are looked up in a cache and those evaluated as usual.
+     */
+    static Plan plan(Expression expression) {
+        if (isCacheable(expression)) {
+            return new Cached(new Key(expression));
+        }
+        return switch (expression) {
+            case Expression.Negate negate when hasCacheable(negate.operand()) -> new NegatePlan(plan(negate.operand()));
+            case Expression.Chain chain when hasCacheable(chain) -> {
+                Plan[] operands = new Plan[chain.operands().length];
+                for (int i = 0; i < operands.length; i++) {
+                    operands[i] = plan(chain.operands()[i]);
+                }
+                yield new ChainPlan(plan(chain.first()), chain.operators(), operands);
+            }
+            default -> new Direct(expression);
+        };
+    }
+
+    /**
+     * A pure expression is worth a lookup once it applies an operator: a chain, or a negated chain.
+     */
+    private static boolean isCacheable(Expression expression) {
+        return switch (expression) {
+            case Expression.Chain chain -> isPure(chain);
+            case Expression.Negate negate -> negate.operand() instanceof Expression.Chain && isPure(negate);
+            default -> false;
+        };
+    }
+
+    private static boolean hasCacheable(Expression expression) {
+        if (isCacheable(expression)) {
+            return true;
+        }
+        return switch (expression) {
+            case Expression.Negate negate -> hasCacheable(negate.operand());
+            case Expression.Chain chain -> {
+                boolean found = hasCacheable(chain.first());
+                for (Expression operand : chain.operands()) {
+                    found |= hasCacheable(operand);
+                }
+                yield found;
+            }
+            default -> false;
+        };
+    }
+
+    private static boolean isPure(Expression expression) {
+        return switch (expression) {
+            case Expression.Literal literal -> true;
+            case Expression.WideLiteral literal -> true;
+            case Expression.Variable variable -> true;
+            case Expression.Update update -> false;
+            case Expression.Negate negate -> isPure(negate.operand());
+            case Expression.Chain chain -> {
+                boolean pure = isPure(chain.first());
+                for (Expression operand : chain.operands()) {
+                    pure &= isPure(operand);
+                }
+                yield pure;
+            }
+        };
+    }
+
+    /**
+     * How a statement's right-hand side is evaluated with a cache; built once per statement.
+     */
+    abstract static class Plan {
+        abstract int evaluate(SubexpressionCache cache, VariableStore variables);
+    }
+
+    private static final class Direct extends Plan {
+        private final Expression expression;
+
+        Direct(Expression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        int evaluate(SubexpressionCache cache, VariableStore variables) {
+            return expression.evaluate(variables);
+        }
+    }
+
+    private static final class Cached extends Plan {
+        private final Key key;
+
+        Cached(Key key) {
+            this.key = key;
+        }
+
+        @Override
+        int evaluate(SubexpressionCache cache, VariableStore variables) {
+            return cache.evaluate(key, variables);
+        }
+    }
+
+    private static final class NegatePlan extends Plan {
+        private final Plan operand;
+
+        NegatePlan(Plan operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        int evaluate(SubexpressionCache cache, VariableStore variables) {
+            return ExpressionSupport.negate(operand.evaluate(cache, variables));
+        }
+    }
+
+    /**
+     * A chain with increments, whose pure operands are cached: evaluated left to right like {@link Expression.Chain}.
+     */
+    private static final class ChainPlan extends Plan {
+        private final Plan first;
+        private final TokenType[] operators;
+        private final Plan[] operands;
+
+        ChainPlan(Plan first, TokenType[] operators, Plan[] operands) {
+            this.first = first;
+            this.operators = operators;
+            this.operands = operands;
+        }
+
+        @Override
+        int evaluate(SubexpressionCache cache, VariableStore variables) {
+            int value = first.evaluate(cache, variables);
+            for (int i = 0; i < operands.length; i++) {
+                int rhs = operands[i].evaluate(cache, variables);
+                value = switch (operators[i]) {
+                    case PLUS -> ExpressionSupport.add(value, rhs);
+                    case MINUS -> ExpressionSupport.subtract(value, rhs);
+                    case MUL -> ExpressionSupport.multiply(value, rhs);
+                    case DIV -> ExpressionSupport.divide(value, rhs);
+                    default -> throw new IllegalStateException("Unsupported operator: " + operators[i]);
+                };
+            }
+            return value;
+        }
+    }
+
+    /**
+     * A pure subexpression, compared by structure, with its hash and the variables it reads computed once.
+     */
+    static final class Key {
+        final Expression expression;
+        final int[] slots;
+        private final int hash;
+
+        Key(Expression expression) {
+            this.expression = expression;
+            this.slots = SlotUsage.readsOf(expression);
+            this.hash = expression.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && hash == other.hash && expression.equals(other.expression);
+        }
+    }
+
+    /**
+     * A value and the store and variable versions it was computed from. The store is only
+     * compared by identity, so it is held weakly: a cache shared for a long time must not keep
+     * the stores of discarded calculators alive.
+     */
+    private static final class Entry {
+        final WeakReference<VariableStore> variables;
+        final long[] versions;
+        final int value;
+
+        Entry(VariableStore variables, int[] slots, int value) {
+            this.variables = new WeakReference<>(variables);
+            this.versions = new long[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                versions[i] = variables.version(slots[i]);
+            }
+            this.value = value;
+        }
+
+        boolean isCurrent(int[] slots, VariableStore current) {
+            if (current != variables.get()) {
+                return false;
+            }
+            for (int i = 0; i < slots.length; i++) {
+                if (current.version(slots[i]) != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
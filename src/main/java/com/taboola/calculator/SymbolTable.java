@@ -0,0 +1,63 @@
+package com.taboola.calculator;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SymbolTable assigns every identifier a stable integer slot.
+ * Identifiers are resolved once, when a statement is compiled, so evaluation
+ * can address variables by slot instead of hashing their names.
+ * <p>
+ * The table is thread-safe, so lines can be compiled on several threads (see
+ * {@link Calculator#evaluateAll(java.util.stream.Stream, java.util.function.Consumer)}).
+ * Lookups of known identifiers take no lock; only new identifiers are added under one.
+ */
+public final class SymbolTable {
+    private final ConcurrentHashMap<String, Integer> slots = new ConcurrentHashMap<>(); // Name -> slot
+    private volatile String[] names = new String[16];                                 // Slot -> name
+    private volatile int size;
+
+    /**
+     * Returns the slot of the identifier, assigning the next free slot on first use.
+     */
+    public int resolve(String name) {
+        Integer slot = slots.get(name);
+        return slot != null ? slot : add(name);
+    }
+
+    private synchronized int add(String name) {
+        Integer existing = slots.get(name);
+        if (existing != null) {
+            return existing; // Added by another thread meanwhile
+        }
+        int slot = size;
+        String[] table = names;
+        if (slot == table.length) {
+            table = Arrays.copyOf(table, slot * 2);
+        }
+        table[slot] = name;
+        names = table;
+        size = slot + 1;
+        slots.put(name, slot); // Published last, so a slot found by lookup always has its name
+        return slot;
+    }
+
+    /**
+     * Returns the slot of the identifier, or -1 if it has never been resolved.
+     */
+    public int lookup(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    public String name(int slot) {
+        if (slot < 0 || slot >= size) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " out of bounds for " + size + " symbols");
+        }
+        return names[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+}
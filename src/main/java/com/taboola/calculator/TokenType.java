@@ -18,6 +18,9 @@ public enum TokenType {
     PRE_DEC,        // '--i' pre-decrement (decrement before using the variable)
     POST_DEC,       // 'i--' post-decrement (decrement after using the variable)
 
+    // Statement separator
+    SEMICOLON,      // ';' separates statements on one line (e.g., x = 1; y = x)
+
     // Literals and variables
     NUMBER,         // Numeric literal (e.g., 123)
     IDENTIFIER,     // Variable name (e.g., x, counter1)
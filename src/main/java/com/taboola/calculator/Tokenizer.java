@@ -1,125 +1,267 @@
 package com.taboola.calculator;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.math.BigInteger;
 
+/**
+ * Tokenizer is a cursor over the input: {@link #advance()} moves to the next token and
+ * {@link #kind()}, {@link #start()}, {@link #end()} and {@link #numberValue()} describe it.
+ * The cursor API allocates nothing per token; numbers are parsed straight from the characters.
+ * The {@link Token}-based {@link #peek()}/{@link #next()} API is kept as an adapter on top.
+ */
 public class Tokenizer {
 
-    private final String input;
-    private int pos = 0;
-    private final Queue<Token> bufferedTokens = new LinkedList<>();
-    private Token currentToken;
+    private final CharSequence input;
+    private final int limit;  // End of the range being tokenized
+    private int pos;
 
-    public Tokenizer(String input) {
-        this.input = input;
-        next(); // Initialize first token
+    // Current token
+    private TokenType kind;
+    private int start;
+    private int end;
+    private int numberValue;
+    private boolean numberOverflow;
+    private int identifierHash;
+    private Token token;  // Lazily created by peek()
+
+    // Post-increment/decrement seen right after an identifier (i++, i--), returned by the next advance() calls
+    private TokenType pendingPostfix;
+    private TokenType secondPendingPostfix;
+    private int pendingStart;
+
+    public Tokenizer(CharSequence input) {
+        this(input, 0, input.length());
     }
 
-    public Token peek() {
-        return currentToken;
+    /**
+     * Tokenizes only the characters in [start, end) of the input.
+     */
+    public Tokenizer(CharSequence input, int start, int end) {
+        this.input = input;
+        this.pos = start;
+        this.limit = end;
+        advance(); // Initialize first token
     }
 
-    public Token next() {
-        if (!bufferedTokens.isEmpty()) {
-            currentToken = bufferedTokens.poll();
-            return currentToken;
+    /**
+     * Moves to the next token and returns its type.
+     */
+    public TokenType advance() {
+        token = null;
+
+        if (pendingPostfix != null) {
+            setToken(pendingPostfix, pendingStart, pendingStart + 2);
+            pendingStart += 2;
+            pendingPostfix = secondPendingPostfix;
+            secondPendingPostfix = null;
+            return kind;
         }
 
         skipWhitespace();
 
-        if (pos >= input.length()) {
-            currentToken = new Token(TokenType.EOF, "");
-            return currentToken;
+        if (pos >= limit) {
+            return setToken(TokenType.EOF, pos, pos);
         }
 
+        int tokenStart = pos;
         char ch = input.charAt(pos);
 
         // Numbers
         if (Character.isDigit(ch)) {
-            StringBuilder sb = new StringBuilder();
-            while (pos < input.length() && Character.isDigit(input.charAt(pos))) {
-                sb.append(input.charAt(pos++));
+            int value = 0;
+            boolean overflow = false;
+            while (pos < limit && Character.isDigit(input.charAt(pos))) {
+                int digit = Character.digit(input.charAt(pos++), 10);
+                if (value > (Integer.MAX_VALUE - digit) / 10) {
+                    overflow = true;
+                } else {
+                    value = value * 10 + digit;
+                }
             }
-            currentToken = new Token(TokenType.NUMBER, sb.toString());
-            return currentToken;
+            numberValue = value;
+            numberOverflow = overflow;
+            return setToken(TokenType.NUMBER, tokenStart, pos);
         }
 
         // Identifiers (variables)
         if (Character.isLetter(ch)) {
-            StringBuilder sb = new StringBuilder();
-            while (pos < input.length() &&
-                    (Character.isLetterOrDigit(input.charAt(pos)) || input.charAt(pos) == '_')) {
-                sb.append(input.charAt(pos++));
+            int hash = 0;
+            while (pos < limit) {
+                char c = input.charAt(pos);
+                if (!Character.isLetterOrDigit(c) && c != '_') {
+                    break;
+                }
+                hash = 31 * hash + c;
+                pos++;
             }
+            identifierHash = hash;
 
             // Disallow identifiers ending with an underscore
-            if (sb.charAt(sb.length() - 1) == '_') {
-                throw new IllegalArgumentException("Invalid variable name: cannot end with underscore (" + sb + ")");
+            if (input.charAt(pos - 1) == '_') {
+                throw new EvaluationException(ErrorCode.INVALID_VARIABLE_NAME, tokenStart,
+                        "Invalid variable name: cannot end with underscore (", input, tokenStart, pos, ")");
             }
+            int tokenEnd = pos;
 
-            // Look ahead for post-increment (i++)
-            if (pos + 1 <= input.length() && pos < input.length()
-                    && input.charAt(pos) == '+' && pos + 1 < input.length()
-                    && input.charAt(pos + 1) == '+') {
+            // Look ahead for post-increment (i++) and post-decrement (i--)
+            pendingStart = pos;
+            if (isPair('+')) {
                 pos += 2;
-                bufferedTokens.add(new Token(TokenType.POST_INC, "++"));
+                pendingPostfix = TokenType.POST_INC;
             }
-
-            // Look ahead for post-decrement (i--)
-            if (pos + 1 <= input.length() && pos < input.length()
-                    && input.charAt(pos) == '-' && pos + 1 < input.length()
-                    && input.charAt(pos + 1) == '-') {
+            if (isPair('-')) {
                 pos += 2;
-                bufferedTokens.add(new Token(TokenType.POST_DEC, "--"));
+                if (pendingPostfix == null) {
+                    pendingPostfix = TokenType.POST_DEC;
+                } else {
+                    secondPendingPostfix = TokenType.POST_DEC;
+                }
             }
 
-            currentToken = new Token(TokenType.IDENTIFIER, sb.toString());
-            return currentToken;
+            return setToken(TokenType.IDENTIFIER, tokenStart, tokenEnd);
         }
 
         // Operators
         switch (ch) {
             case '+':
-                if (pos + 1 < input.length() && input.charAt(pos + 1) == '+') {
+                if (isPair('+')) {
                     pos += 2;
-                    currentToken = new Token(TokenType.PRE_INC, "++");
-                } else {
-                    pos++;
-                    currentToken = new Token(TokenType.PLUS, "+");
+                    return setToken(TokenType.PRE_INC, tokenStart, pos);
                 }
-                return currentToken;
+                if (isFollowedBy('=')) {
+                    pos += 2;
+                    return setToken(TokenType.PLUS_ASSIGN, tokenStart, pos);
+                }
+                pos++;
+                return setToken(TokenType.PLUS, tokenStart, pos);
 
             case '-':
-                if (pos + 1 < input.length() && input.charAt(pos + 1) == '-') {
+                if (isPair('-')) {
                     pos += 2;
-                    currentToken = new Token(TokenType.PRE_DEC, "--");
-                } else {
-                    pos++;
-                    currentToken = new Token(TokenType.MINUS, "-");
+                    return setToken(TokenType.PRE_DEC, tokenStart, pos);
                 }
-                return currentToken;
+                if (isFollowedBy('=')) {
+                    pos += 2;
+                    return setToken(TokenType.MINUS_ASSIGN, tokenStart, pos);
+                }
+                pos++;
+                return setToken(TokenType.MINUS, tokenStart, pos);
 
             case '*':
                 pos++;
-                currentToken = new Token(TokenType.MUL, "*");
-                return currentToken;
+                return setToken(TokenType.MUL, tokenStart, pos);
 
             case '/':
                 pos++;
-                currentToken = new Token(TokenType.DIV, "/");
-                return currentToken;
+                return setToken(TokenType.DIV, tokenStart, pos);
 
             case '=':
                 pos++;
-                currentToken = new Token(TokenType.ASSIGN, "=");
-                return currentToken;
+                return setToken(TokenType.ASSIGN, tokenStart, pos);
+
+            case ';':
+                pos++;
+                return setToken(TokenType.SEMICOLON, tokenStart, pos);
 
             default:
-                throw new IllegalArgumentException("Unexpected character: " + ch);        }
+                throw new EvaluationException(ErrorCode.UNEXPECTED_CHARACTER, pos, "Unexpected character: ",
+                        input, pos, pos + 1, "");
+        }
+    }
+
+    /**
+     * Type of the current token.
+     */
+    public TokenType kind() {
+        return kind;
+    }
+
+    /**
+     * Offset of the first character of the current token in the input.
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * Offset just past the last character of the current token in the input.
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * Value of the current NUMBER token.
+     * Throws an EvaluationException with {@link ErrorCode#NUMBER_TOO_LARGE} if the literal does not fit in an int.
+     */
+    public int numberValue() {
+        if (numberOverflow) {
+            throw EvaluationException.atToken(ErrorCode.NUMBER_TOO_LARGE, "Number too large: ", this);
+        }
+        return numberValue;
+    }
+
+    /**
+     * Returns true if the current NUMBER token fits in an int, so {@link #numberValue()} can return it.
+     */
+    public boolean numberFitsInt() {
+        return !numberOverflow;
+    }
+
+    /**
+     * Exact value of the current NUMBER token, however large.
+     */
+    public BigInteger bigNumberValue() {
+        return numberOverflow ? new BigInteger(text()) : BigInteger.valueOf(numberValue);
+    }
+
+    /**
+     * Hash of the current IDENTIFIER token, computed while scanning it. Equals the
+     * {@link String#hashCode()} of its text, so an {@link IdentifierTable} can find the name without a String.
+     */
+    public int identifierHash() {
+        return identifierHash;
+    }
+
+    /**
+     * Text of the current token. Allocates a String, so it is meant for errors and the Token adapter.
+     */
+    public String text() {
+        return input.subSequence(start, end).toString();
+    }
+
+    public CharSequence input() {
+        return input;
+    }
+
+    public Token peek() {
+        if (token == null) {
+            token = new Token(kind, text());
+        }
+        return token;
+    }
+
+    public Token next() {
+        advance();
+        return peek();
+    }
+
+    private TokenType setToken(TokenType type, int tokenStart, int tokenEnd) {
+        kind = type;
+        start = tokenStart;
+        end = tokenEnd;
+        return type;
+    }
+
+    private boolean isPair(char ch) {
+        return pos + 1 < limit && input.charAt(pos) == ch && input.charAt(pos + 1) == ch;
+    }
+
+    private boolean isFollowedBy(char ch) {
+        return pos + 1 < limit && input.charAt(pos + 1) == ch;
     }
 
     private void skipWhitespace() {
-        while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+        while (pos < limit && Character.isWhitespace(input.charAt(pos))) {
             pos++;
         }
     }
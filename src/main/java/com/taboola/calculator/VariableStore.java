@@ -0,0 +1,364 @@
+package com.taboola.calculator;
+
+import java.math.BigInteger;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * VariableStore keeps variable values in a growable {@code int[]} indexed by the
+ * slots of its {@link SymbolTable}. Reads and writes do no hashing and no boxing.
+ * The order in which variables are first assigned is kept for output,
+ * and {@link #asMap()} offers a read-only {@code Map} view in that order.
+ * <p>
+ * Every slot also records the {@link NumericWidth} of its value. Values that do not fit in an
+ * {@code int} live in a {@code long[]} or {@code BigInteger[]} side array, allocated the first
+ * time one is needed, and a value always goes back to the narrowest width that holds it.
+ * The {@code int} accessors are the fast path: they throw {@link NumericOverflow} for a wider value.
+ * <p>
+ * Each slot has a version counter that every write bumps, so a value computed from some variables
+ * is still valid as long as their versions have not changed (see {@link SubexpressionCache}).
+ */
+public final class VariableStore {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final byte UNDEFINED = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte BIG = 3;
+
+    private final SymbolTable symbols;
+    private int[] values = new int[INITIAL_CAPACITY];
+    private byte[] widths = new byte[INITIAL_CAPACITY];  // UNDEFINED, INT, LONG or BIG
+    private long[] versions = new long[INITIAL_CAPACITY]; // Writes per slot
+    private long[] longValues;                          // Values of LONG slots, null until needed
+    private BigInteger[] bigValues;                     // Values of BIG slots, null until needed
+    private int[] order = new int[INITIAL_CAPACITY];  // Slots in order of first assignment
+    private int size;                                // Number of defined variables
+    private boolean orderDeferred;                   // First assignments are recorded by the caller
+
+    public VariableStore() {
+        this(new SymbolTable());
+    }
+
+    public VariableStore(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public SymbolTable symbols() {
+        return symbols;
+    }
+
+    /**
+     * Returns the value in the slot, throwing if the variable has not been assigned yet,
+     * or an ArithmeticException if its value does not fit in an int (see {@link #getNumber(int)}).
+     */
+    public int get(int slot) {
+        if (slot < widths.length && widths[slot] == INT) {
+            return values[slot];
+        }
+        throw notInt(slot);
+    }
+
+    /**
+     * Returns the value in the slot as a long, throwing like {@link #get(int)} if it does not fit.
+     */
+    public long getLong(int slot) {
+        if (slot < widths.length) {
+            if (widths[slot] == INT) {
+                return values[slot];
+            }
+            if (widths[slot] == LONG) {
+                return longValues[slot];
+            }
+        }
+        throw notInt(slot);
+    }
+
+    /**
+     * Returns the value in the slot as a BigInteger, throwing if the variable has not been assigned yet.
+     */
+    public BigInteger getBig(int slot) {
+        return switch (slot < widths.length ? widths[slot] : UNDEFINED) {
+            case INT -> BigInteger.valueOf(values[slot]);
+            case LONG -> BigInteger.valueOf(longValues[slot]);
+            case BIG -> bigValues[slot];
+            default -> throw undefined(slot);
+        };
+    }
+
+    /**
+     * Returns the value in the slot as an Integer, Long or BigInteger, whichever is the narrowest that holds it.
+     */
+    public Number getNumber(int slot) {
+        return switch (slot < widths.length ? widths[slot] : UNDEFINED) {
+            case INT -> Integer.valueOf(values[slot]);
+            case LONG -> Long.valueOf(longValues[slot]);
+            case BIG -> bigValues[slot];
+            default -> throw undefined(slot);
+        };
+    }
+
+    /**
+     * Width of the value in the slot, or null if the variable is not defined.
+     */
+    public NumericWidth getWidth(int slot) {
+        return switch (slot >= 0 && slot < widths.length ? widths[slot] : UNDEFINED) {
+            case INT -> NumericWidth.INT;
+            case LONG -> NumericWidth.LONG;
+            case BIG -> NumericWidth.BIG;
+            default -> null;
+        };
+    }
+
+    /**
+     * Number of times the slot has been written, 0 for a variable never assigned.
+     */
+    public long version(int slot) {
+        return slot >= 0 && slot < versions.length ? versions[slot] : 0;
+    }
+
+    public boolean isDefined(int slot) {
+        return slot >= 0 && slot < widths.length && widths[slot] != UNDEFINED;
+    }
+
+    public void set(int slot, int value) {
+        define(slot, INT);
+        values[slot] = value;
+    }
+
+    /**
+     * Stores the value, as an int if it fits.
+     */
+    public void setLong(int slot, long value) {
+        if ((int) value == value) {
+            set(slot, (int) value);
+            return;
+        }
+        define(slot, LONG);
+        if (longValues == null) {
+            longValues = new long[widths.length];
+        }
+        longValues[slot] = value;
+    }
+
+    /**
+     * Stores the value, as an int or a long if it fits.
+     */
+    public void setBig(int slot, BigInteger value) {
+        if (value.bitLength() < Long.SIZE) {
+            setLong(slot, value.longValue());
+            return;
+        }
+        define(slot, BIG);
+        if (bigValues == null) {
+            bigValues = new BigInteger[widths.length];
+        }
+        bigValues[slot] = value;
+    }
+
+    /**
+     * Stores an Integer, Long or BigInteger value.
+     */
+    public void setNumber(int slot, Number value) {
+        switch (value) {
+            case Integer i -> set(slot, i);
+            case Long l -> setLong(slot, l);
+            case BigInteger big -> setBig(slot, big);
+            default -> throw new IllegalArgumentException("Unsupported number type: " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Adds delta to a defined int variable and returns the new value.
+     * Throws {@link NumericOverflow}, leaving the variable unchanged, if the result or the current value
+     * does not fit in an int.
+     */
+    public int increment(int slot, int delta) {
+        int newValue = ExpressionSupport.add(get(slot), delta);
+        values[slot] = newValue;
+        versions[slot]++;
+        return newValue;
+    }
+
+    /**
+     * Adds delta to a defined variable that fits in a long and returns the new value,
+     * throwing {@link NumericOverflow} like {@link #increment(int, int)} if it does not fit.
+     */
+    long incrementLong(int slot, int delta) {
+        long newValue = ExpressionSupport.add(getLong(slot), delta);
+        setLong(slot, newValue);
+        return newValue;
+    }
+
+    /**
+     * Adds delta to a defined variable and returns the new value.
+     */
+    BigInteger incrementBig(int slot, int delta) {
+        BigInteger newValue = getBig(slot).add(BigInteger.valueOf(delta));
+        setBig(slot, newValue);
+        return newValue;
+    }
+
+    /**
+     * Number of defined variables.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Slot of the index-th variable in order of first assignment.
+     */
+    public int slotAt(int index) {
+        return order[index];
+    }
+
+    /**
+     * Read-only, live view of the defined variables in order of first assignment.
+     */
+    public Map<String, Number> asMap() {
+        return new MapView();
+    }
+
+    /**
+     * Makes room for the given number of slots, so that writes below it never reallocate.
+     * The wide side arrays are allocated too. Together with {@link #deferOrder(boolean)} this lets
+     * statements that touch disjoint slots run on different threads.
+     */
+    void reserve(int slots) {
+        if (slots > widths.length) {
+            grow(slots);
+        }
+        if (longValues == null) {
+            longValues = new long[widths.length];
+        }
+        if (bigValues == null) {
+            bigValues = new BigInteger[widths.length];
+        }
+    }
+
+    /**
+     * While deferred, first assignments only mark the slot as defined, and the caller
+     * restores the assignment order with {@link #recordFirstAssignment(int)}.
+     */
+    void deferOrder(boolean deferred) {
+        this.orderDeferred = deferred;
+    }
+
+    /**
+     * Marks the slot as unassigned again. Only meant for stores with deferred order,
+     * as the assignment order is not updated.
+     */
+    void forget(int slot) {
+        if (slot < widths.length) {
+            widths[slot] = UNDEFINED;
+            versions[slot]++;
+            if (bigValues != null) {
+                bigValues[slot] = null;
+            }
+        }
+    }
+
+    void recordFirstAssignment(int slot) {
+        if (size == order.length) {
+            order = Arrays.copyOf(order, size * 2);
+        }
+        order[size++] = slot;
+    }
+
+    private void define(int slot, byte width) {
+        if (slot >= widths.length) {
+            grow(slot + 1);
+        }
+        byte previous = widths[slot];
+        if (previous == UNDEFINED) {
+            if (!orderDeferred) {
+                recordFirstAssignment(slot);
+            }
+        } else if (previous == BIG && width != BIG) {
+            bigValues[slot] = null;
+        }
+        widths[slot] = width;
+        versions[slot]++;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, widths.length * 2);
+        values = Arrays.copyOf(values, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        if (longValues != null) {
+            longValues = Arrays.copyOf(longValues, capacity);
+        }
+        if (bigValues != null) {
+            bigValues = Arrays.copyOf(bigValues, capacity);
+        }
+    }
+
+    private RuntimeException notInt(int slot) {
+        return isDefined(slot) ? NumericOverflow.INSTANCE : undefined(slot);
+    }
+
+    private IllegalArgumentException undefined(int slot) {
+        String name = symbols.name(slot);
+        return new EvaluationException(ErrorCode.UNDEFINED_VARIABLE, -1, "Variable '", name, 0, name.length(),
+                "' is not defined");
+    }
+
+    private final class MapView extends AbstractMap<String, Number> {
+        @Override
+        public Number get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            int slot = symbols.lookup((String) key);
+            return slot >= 0 && isDefined(slot) ? getNumber(slot) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && isDefined(symbols.lookup((String) key));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<String, Number>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Number>> iterator() {
+                    return new Iterator<>() {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < size;
+                        }
+
+                        @Override
+                        public Entry<String, Number> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int slot = order[index++];
+                            return new SimpleImmutableEntry<>(symbols.name(slot), getNumber(slot));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
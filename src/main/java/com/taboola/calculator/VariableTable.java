@@ -0,0 +1,46 @@
+package com.taboola.calculator;
+
+import java.util.Map;
+
+/**
+ * VariableTable holds variables by name for {@link Parser}, which evaluates a line without compiling it
+ * and so has no {@link SymbolTable} slots. Iteration follows the order in which variables were first assigned.
+ * <p>
+ * {@link #of(Map)} adapts any {@code Map<String, Integer>}; {@link OffHeapVariableTable} keeps names and
+ * values outside the Java heap, for variable counts where boxed map entries would dominate the heap;
+ * {@link IdentifierTable} lets {@link Parser} find variables from the input's characters, without Strings.
+ */
+public interface VariableTable {
+
+    /**
+     * Returns whether the variable has been assigned.
+     */
+    boolean contains(String name);
+
+    /**
+     * Returns the value of the variable, throwing IllegalArgumentException if it has not been assigned.
+     */
+    int get(String name);
+
+    /**
+     * Assigns the variable, adding it after the existing ones if it is new.
+     */
+    void put(String name, int value);
+
+    /**
+     * Number of variables.
+     */
+    int size();
+
+    /**
+     * Read-only view of the variables in order of first assignment.
+     */
+    Map<String, Integer> asMap();
+
+    /**
+     * Returns a table reading and writing through to the map. Its order is the map's iteration order.
+     */
+    static VariableTable of(Map<String, Integer> map) {
+        return new MapVariableTable(map);
+    }
+}
@@ -0,0 +1,226 @@
+package com.taboola.calculator;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * VariableWriter prints variables in the single-line format {@code (a=1,b=2)}, straight from
+ * a calculator's slots: no map, no boxing and no String per variable or per line
+ * (only values too wide for a {@code long} are formatted through a String).
+ * Characters are collected in a buffer and encoded to UTF-8 in large blocks, so nothing reaches
+ * the underlying stream until the buffer fills or {@link #flush()} is called.
+ * <p>
+ * Like {@link java.io.PrintStream}, it is meant for program output: I/O errors are thrown
+ * as {@link UncheckedIOException}.
+ */
+public final class VariableWriter implements Closeable, Flushable {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Writer encoder;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+
+    /**
+     * Writes to the stream. Closing the writer closes the stream, so console output should only be flushed.
+     */
+    public VariableWriter(OutputStream out) {
+        this.encoder = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes to the file, replacing its contents.
+     */
+    public VariableWriter(Path file) throws IOException {
+        this(Files.newOutputStream(file));
+    }
+
+    /**
+     * Writes all variables in order of first assignment, followed by a line break.
+     */
+    public void writeVariables(Calculator calculator) {
+        VariableStore variables = calculator.variables();
+        SymbolTable symbols = variables.symbols();
+        append('(');
+        for (int i = 0; i < variables.size(); i++) {
+            int slot = variables.slotAt(i);
+            writeVariable(i, symbols.name(slot), variables, slot);
+        }
+        append(')');
+        append('\n');
+    }
+
+    /**
+     * Writes only the variables written by the calculator's last line (see {@link Calculator#getLastChanges()}),
+     * followed by a line break. Change tracking must be enabled.
+     */
+    public void writeChanges(Calculator calculator) {
+        ChangeTracker changes = calculator.changes();
+        if (changes == null) {
+            throw new IllegalStateException("Change tracking is not enabled");
+        }
+        VariableStore variables = calculator.variables();
+        SymbolTable symbols = variables.symbols();
+        append('(');
+        for (int i = 0; i < changes.size(); i++) {
+            int slot = changes.slotAt(i);
+            writeVariable(i, symbols.name(slot), variables, slot);
+        }
+        append(')');
+        append('\n');
+    }
+
+    /**
+     * Writes the text.
+     */
+    public void write(CharSequence text) {
+        append(text);
+    }
+
+    /**
+     * Writes the text followed by a line break.
+     */
+    public void writeLine(CharSequence text) {
+        append(text);
+        append('\n');
+    }
+
+    @Override
+    public void flush() {
+        try {
+            drain();
+            encoder.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            drain();
+            encoder.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeVariable(int index, String name, VariableStore variables, int slot) {
+        if (index > 0) {
+            append(',');
+        }
+        append(name);
+        append('=');
+        switch (variables.getWidth(slot)) {
+            case INT -> append(variables.get(slot));
+            case LONG -> append(variables.getLong(slot));
+            case BIG -> append(variables.getBig(slot).toString());
+        }
+    }
+
+    private void append(char ch) {
+        if (position == buffer.length) {
+            drainUnchecked();
+        }
+        buffer[position++] = ch;
+    }
+
+    private void append(CharSequence text) {
+        int length = text.length();
+        if (length > buffer.length - position) {
+            drainUnchecked();
+            if (length > buffer.length) {
+                try {
+                    encoder.append(text);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+        }
+        if (text instanceof String string) {
+            string.getChars(0, length, buffer, position);
+        } else {
+            for (int i = 0; i < length; i++) {
+                buffer[position + i] = text.charAt(i);
+            }
+        }
+        position += length;
+    }
+
+    /**
+     * Formats the int into the buffer without creating a String.
+     */
+    private void append(int value) {
+        if (buffer.length - position < 11) {
+            drainUnchecked();
+        }
+        if (value == Integer.MIN_VALUE) {
+            append("-2147483648");
+            return;
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int end = position + digits;
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        position = end;
+    }
+
+    /**
+     * Formats the long into the buffer without creating a String, like {@link #append(int)}.
+     */
+    private void append(long value) {
+        if (buffer.length - position < 20) {
+            drainUnchecked();
+        }
+        if (value == Long.MIN_VALUE) {
+            append("-9223372036854775808");
+            return;
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int end = position + digits;
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        position = end;
+    }
+
+    private void drainUnchecked() {
+        try {
+            drain();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void drain() throws IOException {
+        if (position > 0) {
+            encoder.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.taboola.calculator;
+
+import java.math.BigInteger;
+
+/**
+ * WideEvaluator evaluates an {@link Expression} in {@code long} or {@link BigInteger} arithmetic,
+ * for the statements whose {@code int} evaluation overflowed. Order of evaluation, side effects
+ * and errors are those of {@link Expression#evaluate(VariableStore)}; only the width differs.
+ * <p>
+ * The {@code long} path is exact too and throws {@link NumericOverflow} when a value needs more
+ * than 64 bits; the {@code BigInteger} path cannot overflow.
+ */
+final class WideEvaluator {
+
+    private WideEvaluator() {
+    }
+
+    static long evaluateLong(Expression expression, VariableStore variables) {
+        return switch (expression) {
+            case Expression.Literal literal -> literal.value();
+            case Expression.WideLiteral literal -> {
+                if (literal.value().bitLength() >= Long.SIZE) {
+                    throw NumericOverflow.INSTANCE;
+                }
+                yield literal.value().longValue();
+            }
+            case Expression.Variable variable -> variables.getLong(variable.slot());
+            case Expression.Negate negate -> ExpressionSupport.negate(evaluateLong(negate.operand(), variables));
+            case Expression.Chain chain -> {
+                long value = evaluateLong(chain.first(), variables);
+                for (int i = 0; i < chain.operands().length; i++) {
+                    long rhs = evaluateLong(chain.operands()[i], variables);
+                    value = switch (chain.operators()[i]) {
+                        case PLUS -> ExpressionSupport.add(value, rhs);
+                        case MINUS -> ExpressionSupport.subtract(value, rhs);
+                        case MUL -> ExpressionSupport.multiply(value, rhs);
+                        case DIV -> ExpressionSupport.divide(value, rhs);
+                        default -> throw new IllegalStateException("Unsupported operator: " + chain.operators()[i]);
+                    };
+                }
+                yield value;
+            }
+            case Expression.Update update -> {
+                long newValue = variables.incrementLong(update.slot(), update.delta());
+                yield update.isPrefix() ? newValue : newValue - update.delta();
+            }
+        };
+    }
+
+    static BigInteger evaluateBig(Expression expression, VariableStore variables) {
+        return switch (expression) {
+            case Expression.Literal literal -> BigInteger.valueOf(literal.value());
+            case Expression.WideLiteral literal -> literal.value();
+            case Expression.Variable variable -> variables.getBig(variable.slot());
+            case Expression.Negate negate -> evaluateBig(negate.operand(), variables).negate();
+            case Expression.Chain chain -> {
+                BigInteger value = evaluateBig(chain.first(), variables);
+                for (int i = 0; i < chain.operands().length; i++) {
+                    BigInteger rhs = evaluateBig(chain.operands()[i], variables);
+                    value = switch (chain.operators()[i]) {
+                        case PLUS -> value.add(rhs);
+                        case MINUS -> value.subtract(rhs);
+                        case MUL -> value.multiply(rhs);
+                        case DIV -> ExpressionSupport.divide(value, rhs);
+                        default -> throw new IllegalStateException("Unsupported operator: " + chain.operators()[i]);
+                    };
+                }
+                yield value;
+            }
+            case Expression.Update update -> {
+                BigInteger newValue = variables.incrementBig(update.slot(), update.delta());
+                yield update.isPrefix() ? newValue : newValue.subtract(BigInteger.valueOf(update.delta()));
+            }
+        };
+    }
+}
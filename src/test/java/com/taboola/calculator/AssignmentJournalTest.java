@@ -0,0 +1,251 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AssignmentJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private void evaluateAll(Calculator calculator, List<String> lines) {
+        for (String line : lines) {
+            try {
+                calculator.evaluate(line);
+            } catch (RuntimeException e) {
+                // Failed lines still journal their increments
+            }
+        }
+    }
+
+    private Calculator replay(Path file) throws IOException {
+        Calculator calculator = new Calculator();
+        AssignmentJournal.replay(file, calculator);
+        return calculator;
+    }
+
+    @Test
+    void testReplayRebuildsVariables() throws IOException {
+        Path file = tempDir.resolve("calc.journal");
+        Calculator calculator = new Calculator();
+        try (AssignmentJournal journal = new AssignmentJournal(file)) {
+            calculator.setJournal(journal);
+            evaluateAll(calculator, List.of("i = 0", "j = ++i", "x = i++ + 5", "y = i-- / z", "q += i++", "i += 10"));
+        }
+
+        Calculator replayed = replay(file);
+        assertEquals(calculator.getVariables().toString(), replayed.getVariables().toString());
+        assertEquals("{i=12, j=1, x=6}", replayed.getVariables().toString());
+    }
+
+    @Test
+    void testCommitsBySizeAndByTime() throws Exception {
+        Path file = tempDir.resolve("calc.journal");
+        Calculator calculator = new Calculator();
+        try (AssignmentJournal journal = new AssignmentJournal(file, 1024, 50)) {
+            calculator.setJournal(journal);
+            for (int i = 0; i < 500; i++) {
+                calculator.evaluate("v" + (i % 10) + " = " + i);
+            }
+            assertTrue(Files.size(file) > 1024, "Full groups are committed right away");
+
+            long committed = Files.size(file);
+            calculator.evaluate("last = 1");
+            long deadline = System.currentTimeMillis() + 5000;
+            while (Files.size(file) == committed && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(Files.size(file) > committed, "A partial group is committed after the delay");
+            assertEquals(1, replay(file).getVariables().get("last"));
+        }
+    }
+
+    @Test
+    void testTornTailIsIgnoredAndDroppedOnReopen() throws IOException {
+        Path file = tempDir.resolve("calc.journal");
+        Calculator calculator = new Calculator();
+        try (AssignmentJournal journal = new AssignmentJournal(file)) {
+            calculator.setJournal(journal);
+            evaluateAll(calculator, List.of("a = 1", "b = 2"));
+        }
+        // A crash in the middle of writing a group
+        Files.write(file, new byte[]{40, 0, 0, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+        assertEquals("{a=1, b=2}", replay(file).getVariables().toString());
+
+        // A new run appends after the last committed group, with its own symbol table
+        Calculator next = new Calculator();
+        try (AssignmentJournal journal = new AssignmentJournal(file)) {
+            next.setJournal(journal);
+            evaluateAll(next, List.of("c = 5", "a = c + 1"));
+        }
+        assertEquals("{a=6, b=2, c=5}", replay(file).getVariables().toString());
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws IOException {
+        Path file = tempDir.resolve("other.txt");
+        Files.writeString(file, "a = 1\n");
+        assertThrows(IOException.class, () -> new AssignmentJournal(file));
+        assertThrows(IOException.class, () -> replay(file));
+    }
+
+    @Test
+    void testReplayKeepsWideValues() throws IOException {
+        Path file = tempDir.resolve("calc.journal");
+        Calculator calculator = new Calculator();
+        try (AssignmentJournal journal = new AssignmentJournal(file)) {
+            calculator.setJournal(journal);
+            evaluateAll(calculator, List.of("a = 2147483647", "a = a * a", "b = a * a * a", "a = 1"));
+        }
+
+        Calculator replayed = replay(file);
+        assertEquals(calculator.getVariables(), replayed.getVariables());
+        assertEquals(NumericWidth.BIG, replayed.getWidth("b"));
+    }
+
+    @Test
+    void testFailedCommitStopsTheJournal() throws IOException {
+        Path file = tempDir.resolve("calc.journal");
+        FailingChannel channel = new FailingChannel(FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE));
+        Calculator calculator = new Calculator();
+        AssignmentJournal journal = new AssignmentJournal(file, channel, 1024, 60_000);
+        calculator.setJournal(journal);
+        calculator.evaluate("a = 1");
+        journal.flush();
+
+        channel.failing = true;
+        calculator.evaluate("b = 2");
+        assertThrows(IOException.class, journal::flush); // Leaves a torn group in the file
+        channel.failing = false;
+
+        assertThrows(UncheckedIOException.class, () -> calculator.evaluate("c = 3"));
+        assertThrows(IOException.class, journal::flush);
+        assertThrows(IOException.class, journal::close);
+
+        try (AssignmentJournal reopened = new AssignmentJournal(file)) { // Drops the torn group
+            Calculator next = new Calculator();
+            next.setJournal(reopened);
+            next.evaluate("d = 4");
+        }
+        assertEquals("{a=1, d=4}", replay(file).getVariables().toString());
+    }
+
+    /**
+     * A file channel whose writes fail after writing a few bytes while {@link #failing} is set, like a full disk.
+     */
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel channel;
+        volatile boolean failing;
+
+        FailingChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (failing) {
+                channel.write(src.slice(src.position(), Math.min(src.remaining(), 4)));
+                throw new IOException("No space left on device");
+            }
+            return channel.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return channel.write(src, position);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            channel.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return channel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+}
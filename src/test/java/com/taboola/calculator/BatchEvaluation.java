@@ -0,0 +1,181 @@
+package com.taboola.calculator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Shared fixture of the batch evaluator tests. Every evaluator must match evaluating the lines
+ * one by one, as Main's batch mode does; errors are compared as "line number: line: message".
+ * {@link RandomLines} generates the random scripts the engines are compared on.
+ */
+final class BatchEvaluation {
+
+    private BatchEvaluation() {
+    }
+
+    /**
+     * Evaluates the lines sequentially, skipping blank ones, and describes the errors.
+     */
+    static List<String> evaluateSequentially(Calculator calculator, List<String> lines) {
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            evaluate(calculator, lines.get(i), i + 1, errors);
+        }
+        return errors;
+    }
+
+    /**
+     * Evaluates the file sequentially through a {@link ScriptReader}, like {@link #evaluateSequentially(Calculator, List)}.
+     */
+    static List<String> evaluateSequentially(Calculator calculator, Path file) throws IOException {
+        List<String> errors = new ArrayList<>();
+        try (ScriptReader reader = new ScriptReader(file)) {
+            CharSequence line;
+            while ((line = reader.nextLine()) != null) {
+                evaluate(calculator, line, reader.lineNumber(), errors);
+            }
+        }
+        return errors;
+    }
+
+    static String describe(LineError error) {
+        return error.lineNumber() + ": " + error.line() + ": " + error.error().getMessage();
+    }
+
+    static void assertSameVariables(Calculator expected, Calculator actual) {
+        // Compare as strings to also check the assignment order
+        assertEquals(expected.getVariables().toString(), actual.getVariables().toString());
+    }
+
+    private static void evaluate(Calculator calculator, CharSequence line, long lineNumber, List<String> errors) {
+        if (line.toString().isBlank()) {
+            return;
+        }
+        try {
+            calculator.evaluate(line);
+        } catch (RuntimeException e) {
+            errors.add(describe(new LineError(lineNumber, line.toString(), e)));
+        }
+    }
+
+    /**
+     * Random statements for comparing an engine with plain evaluation. A right-hand side chains
+     * operands with + - * /, each a variable, its increment or decrement, or a small literal.
+     * By default only literals are multiplied: values are exact, and chained products of variables
+     * would grow without bound over a long script.
+     */
+    static final class RandomLines {
+        private static final String[] OPERATORS = {" + ", " - ", " * ", " / "};
+
+        private final Random random;
+        private String[] targets = {"a", "b", "c", "d", "e", "f", "g", "h"};
+        private String[] operands = targets;
+        private int maxTerms = 3;
+        private int maxStatements = 1;
+        private int minLiteral;
+        private boolean negations;
+        private boolean subtractAssignments;
+        private boolean variableFactors;
+
+        RandomLines(Random random) {
+            this.random = random;
+        }
+
+        /** Variables assigned, and read unless {@link #operands} says otherwise. */
+        RandomLines targets(String... names) {
+            targets = names;
+            operands = names;
+            return this;
+        }
+
+        RandomLines operands(String... names) {
+            operands = names;
+            return this;
+        }
+
+        RandomLines terms(int max) {
+            maxTerms = max;
+            return this;
+        }
+
+        /** Lines hold up to this many ;-separated statements. */
+        RandomLines statements(int max) {
+            maxStatements = max;
+            return this;
+        }
+
+        /** Literals are at least 1, for engines that reject a division by a literal zero up front. */
+        RandomLines nonZeroLiterals() {
+            minLiteral = 1;
+            return this;
+        }
+
+        /** Operands are sometimes negated. */
+        RandomLines negations() {
+            negations = true;
+            return this;
+        }
+
+        RandomLines subtractAssignments() {
+            subtractAssignments = true;
+            return this;
+        }
+
+        /** Variables may be multiplied too, for short scripts whose values cannot grow far. */
+        RandomLines variableFactors() {
+            variableFactors = true;
+            return this;
+        }
+
+        List<String> lines(int count) {
+            List<String> lines = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                lines.add(line());
+            }
+            return lines;
+        }
+
+        String line() {
+            StringBuilder line = new StringBuilder();
+            int statements = 1 + random.nextInt(maxStatements);
+            for (int s = 0; s < statements; s++) {
+                if (s > 0) {
+                    line.append("; ");
+                }
+                line.append(targets[random.nextInt(targets.length)]);
+                line.append(switch (random.nextInt(subtractAssignments ? 6 : 4)) {
+                    case 0 -> " += ";
+                    case 4 -> " -= ";
+                    default -> " = ";
+                });
+                line.append(expression());
+            }
+            return line.toString();
+        }
+
+        String expression() {
+            StringBuilder expression = new StringBuilder();
+            int terms = 1 + random.nextInt(maxTerms);
+            for (int t = 0; t < terms; t++) {
+                String operator = t > 0 ? OPERATORS[random.nextInt(OPERATORS.length)] : "";
+                expression.append(operator);
+                if (negations && random.nextInt(5) == 0) {
+                    expression.append("- ");
+                }
+                String name = operands[random.nextInt(operands.length)];
+                switch (operator.equals(" * ") && !variableFactors ? 0 : random.nextInt(5)) {
+                    case 0 -> expression.append(minLiteral + random.nextInt(5 - minLiteral));
+                    case 1 -> expression.append(name).append("++");
+                    case 2 -> expression.append("--").append(name);
+                    default -> expression.append(name);
+                }
+            }
+            return expression.toString();
+        }
+    }
+}
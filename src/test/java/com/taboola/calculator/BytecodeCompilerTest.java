@@ -0,0 +1,105 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BytecodeCompilerTest {
+
+    private final SymbolTable symbols = new SymbolTable();
+
+    /**
+     * Helper: evaluates the expression with the interpreter and with generated bytecode
+     * on separate copies of the variables, and checks both tiers agree.
+     */
+    private int evaluateBothTiers(String expr, Map<String, Integer> vars) {
+        Expression tree = compile(expr);
+        ExpressionCode code = BytecodeCompiler.compile(tree);
+        assertNotNull(code);
+
+        VariableStore interpreted = store(vars);
+        VariableStore compiled = store(vars);
+        int expected = tree.evaluate(interpreted);
+        assertEquals(expected, code.evaluate(compiled));
+        assertEquals(interpreted.asMap(), compiled.asMap());
+        return expected;
+    }
+
+    private Expression compile(String expr) {
+        return new ExpressionCompiler(new Tokenizer(expr), symbols).compileExpression();
+    }
+
+    private VariableStore store(Map<String, Integer> vars) {
+        VariableStore store = new VariableStore(symbols);
+        vars.forEach((name, value) -> store.set(symbols.resolve(name), value));
+        return store;
+    }
+
+    @Test
+    void testArithmeticMatchesInterpreter() {
+        assertEquals(23, evaluateBothTiers("3 + 4 * 5", Map.of()));
+        assertEquals(10, evaluateBothTiers("20 / 4 * 2", Map.of()));
+        assertEquals(-12, evaluateBothTiers("2 * -3 + j - 1", Map.of("j", -5)));
+        assertEquals(2, evaluateBothTiers("-x * 2 + 10", Map.of("x", 4)));
+    }
+
+    @Test
+    void testIncrementsMatchInterpreter() {
+        assertEquals(4, evaluateBothTiers("++i + i++", Map.of("i", 1)));
+        assertEquals(4, evaluateBothTiers("--x + x--", Map.of("x", 3)));
+    }
+
+    @Test
+    void testErrorsMatchInterpreter() {
+        Expression division = compile("i++ + 10 / 0");
+        VariableStore vars = store(Map.of("i", 1));
+        ArithmeticException ex = assertThrows(ArithmeticException.class,
+                () -> BytecodeCompiler.compile(division).evaluate(vars));
+        assertEquals("Division by zero", ex.getMessage());
+        assertEquals(2, vars.asMap().get("i")); // increment before the failure is kept, as in Parser
+
+        Expression undefined = compile("x + 5");
+        IllegalArgumentException undefinedEx = assertThrows(IllegalArgumentException.class,
+                () -> BytecodeCompiler.compile(undefined).evaluate(store(Map.of())));
+        assertEquals("Variable 'x' is not defined", undefinedEx.getMessage());
+    }
+
+    @Test
+    void testStatementTiersUpAfterThreshold() {
+        Calculator calc = new Calculator(16, 3);
+        calc.evaluate("i = 0");
+        CompiledStatement statement = calc.compile("i += 2 * 3");
+        for (int run = 0; run < 3; run++) {
+            assertFalse(statement.isCompiledToBytecode());
+            calc.evaluate("i += 2 * 3");
+        }
+        assertTrue(statement.isCompiledToBytecode());
+        calc.evaluate("i += 2 * 3");
+        assertEquals(24, calc.getVariables().get("i"));
+    }
+
+    @Test
+    void testTieringCanBeDisabled() {
+        Calculator calc = new Calculator(16, 0);
+        calc.evaluate("i = 0");
+        for (int run = 0; run < 10; run++) {
+            calc.evaluate("i += 1");
+        }
+        assertFalse(calc.compile("i += 1").isCompiledToBytecode());
+        assertEquals(10, calc.getVariables().get("i"));
+    }
+
+    @Test
+    void testOverflowWidensInBothTiers() {
+        Calculator calc = new Calculator(16, 5);
+        calc.evaluate("x = 1");
+        for (int run = 0; run < 40; run++) {
+            calc.evaluate("x = x * 3");
+        }
+        assertTrue(calc.compile("x = x * 3").isCompiledToBytecode());
+        assertEquals(BigInteger.valueOf(3).pow(40), calc.getVariables().get("x"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CalculatorMetricsTest {
+
+    private Calculator calculator;
+    private CalculatorMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        calculator = new Calculator();
+        metrics = new CalculatorMetrics();
+        calculator.setMetrics(metrics);
+        calculator.setLineLogging(false);
+    }
+
+    private void evaluateIgnoringErrors(String line) {
+        try {
+            calculator.evaluate(line);
+        } catch (RuntimeException e) {
+            // Counted by the metrics
+        }
+    }
+
+    @Test
+    void testCountsLinesAndFailuresByKind() {
+        evaluateIgnoringErrors("i = 0");
+        evaluateIgnoringErrors("i += 1");
+        evaluateIgnoringErrors("i += 1");
+        evaluateIgnoringErrors("x = y + 1");
+        evaluateIgnoringErrors("x = 1 / 0");
+        evaluateIgnoringErrors("x = 5 @ 3");
+
+        assertEquals(6, metrics.getLinesEvaluated());
+        assertEquals(3, metrics.getLinesFailed());
+        assertEquals(1, metrics.getFailures(ErrorCode.UNEXPECTED_CHARACTER));
+        assertEquals(1, metrics.getFailures(ErrorCode.UNDEFINED_VARIABLE));
+        assertEquals(1, metrics.getFailures(ErrorCode.DIVISION_BY_ZERO));  // Found when compiling
+        assertEquals(1, metrics.getFailuresByKind().get("UNEXPECTED_CHARACTER")); // Keyed like EvaluationResult codes
+        assertEquals(1, metrics.getPlanCacheHits());   // Second "i += 1"
+        assertEquals(5, metrics.getPlanCacheMisses());
+        assertEquals(1, metrics.getVariableCount());   // Only i was ever assigned
+        assertEquals(3, metrics.getExecuteLatency().getCount());
+        assertEquals(3, metrics.getCompileLatency().getCount());
+    }
+
+    @Test
+    void testCountsLinesNotStatements() {
+        evaluateIgnoringErrors("a = 1; b = 2; c = 3");
+        evaluateIgnoringErrors("a = 4; b = y; c = 5");
+        assertEquals(2, metrics.getLinesEvaluated());
+        assertEquals(1, metrics.getLinesFailed());
+        assertEquals(4, metrics.getExecuteLatency().getCount()); // Per statement that ran to the end
+    }
+
+    @Test
+    void testResetKeepsVariableGauge() {
+        calculator.evaluate("a = 1");
+        calculator.evaluate("b = 2");
+        metrics.reset();
+        assertEquals(0, metrics.getLinesEvaluated());
+        assertEquals(0, metrics.getExecuteLatency().getCount());
+        assertEquals(2, metrics.getVariableCount());
+    }
+
+    @Test
+    void testVariableCountFollowsLiveState() throws Exception {
+        Calculator restored = new Calculator();
+        restored.evaluate("a = 1; b = 2");
+        Path snapshot = Files.createTempFile("metrics", ".snap");
+        try {
+            Snapshot.write(snapshot, restored, 1);
+            restored = new Calculator();
+            Snapshot.restore(snapshot, restored);
+        } finally {
+            Files.delete(snapshot);
+        }
+        restored.setMetrics(metrics); // Attached after its variables were defined
+        calculator.evaluate("c = 3");
+        assertEquals(3, metrics.getVariableCount());
+
+        restored.setMetrics(null);
+        assertEquals(1, metrics.getVariableCount());
+    }
+
+    @Test
+    void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1_000_000, snapshot.getMaxNanos());
+        assertTrue(Math.abs(snapshot.getP50Nanos() - 500_000) < 500_000 / 8, "p50 " + snapshot.getP50Nanos());
+        assertTrue(Math.abs(snapshot.getP99Nanos() - 990_000) < 990_000 / 8, "p99 " + snapshot.getP99Nanos());
+    }
+
+    @Test
+    void testExposedThroughJmx() throws Exception {
+        calculator.evaluate("a = 1");
+        ObjectName name = metrics.registerMBean("metrics-test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(1L, server.getAttribute(name, "LinesEvaluated"));
+            CompositeData latency = (CompositeData) server.getAttribute(name, "ExecuteLatency");
+            assertEquals(1L, latency.get("count"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CalculatorServerTest {
+
+    private CalculatorServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new CalculatorServer(0);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    /**
+     * Minimal line-based client for the server protocol.
+     */
+    private final class Client implements AutoCloseable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+
+        Client() throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+        }
+
+        String send(String line) throws IOException {
+            out.println(line);
+            return in.readLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Test
+    void testEvaluatesLinesAndReportsErrors() throws IOException {
+        try (Client client = new Client()) {
+            assertEquals("(i=0)", client.send("i = 0"));
+            assertEquals("(i=1,j=1)", client.send("j = ++i"));
+            assertEquals("Error: Division by zero", client.send("x = 1 / 0"));
+            assertEquals("Error: Variable 'y' is not defined", client.send("x = y"));
+            assertEquals("(i=2,j=1)", client.send("i = i + 1"));
+        }
+    }
+
+    @Test
+    void testSessionsAreIsolated() throws IOException {
+        try (Client first = new Client(); Client second = new Client()) {
+            assertEquals("(a=1)", first.send("a = 1"));
+            assertEquals("(b=2)", second.send("b = 2"));
+            assertEquals("Error: Variable 'a' is not defined", second.send("c = a"));
+            assertEquals("(a=1,c=1)", first.send("c = a"));
+        }
+    }
+
+    @Test
+    void testUnexpectedErrorKeepsSessionOpen() throws IOException {
+        server.close();
+        server = new CalculatorServer(0, () -> new Calculator() {
+            @Override
+            public void evaluate(CharSequence line) {
+                if (line.toString().contains("boom")) {
+                    throw new IllegalStateException("boom");
+                }
+                super.evaluate(line);
+            }
+        });
+        server.start();
+        try (Client client = new Client()) {
+            assertEquals("Unexpected error: boom", client.send("boom = 1"));
+            assertEquals("(a=1)", client.send("a = 1"));
+        }
+    }
+
+    @Test
+    void testRejectsOverlongLines() throws IOException {
+        try (Client client = new Client()) {
+            String line = "a = " + "1".repeat(CalculatorServer.MAX_LINE_LENGTH);
+            assertEquals("Error: Line too long (more than " + CalculatorServer.MAX_LINE_LENGTH + " characters)",
+                    client.send(line));
+            assertEquals("(a=1)", client.send("a = 1")); // The session goes on
+        }
+    }
+
+    @Test
+    void testExitEndsSession() throws IOException {
+        try (Client client = new Client()) {
+            client.send("a = 1");
+            assertNull(client.send("exit"));
+        }
+    }
+
+    @Test
+    void testServesManyConcurrentSessions() throws Exception {
+        int sessions = 200;
+        List<Future<String>> results = new ArrayList<>();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int s = 0; s < sessions; s++) {
+                int id = s;
+                results.add(clients.submit(() -> {
+                    try (Client client = new Client()) {
+                        client.send("x = " + id);
+                        String last = null;
+                        for (int i = 0; i < 50; i++) {
+                            last = client.send("x += 1");
+                        }
+                        return last;
+                    }
+                }));
+            }
+            for (int s = 0; s < sessions; s++) {
+                assertEquals("(x=" + (s + 50) + ")", results.get(s).get());
+            }
+        }
+    }
+}
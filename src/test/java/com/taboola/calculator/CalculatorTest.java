@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.Map;
+import java.math.BigInteger;
 
 class CalculatorTest {
 
@@ -181,4 +182,180 @@ class CalculatorTest {
         );
         assertTrue(ex.getMessage().contains("Unexpected character"));
     }
+
+    @Test
+    void testSeveralStatementsPerLine() {
+        calculator.evaluate("i = 0; j = ++i;x = i++ + 5;");
+        assertThrows(IllegalArgumentException.class, () -> calculator.evaluate("i += j; y = x / k; z = 1"));
+        assertEquals(Map.of("i", 3, "j", 1, "x", 6), calculator.getVariables()); // z is not reached
+
+        CompiledStatement first = calculator.compile("a = 1; b -= a");
+        assertEquals("a", first.getTarget());
+        assertEquals(TokenType.MINUS_ASSIGN, first.next().getOperator());
+        assertNull(first.next().next());
+    }
+
+    @Test
+    void testRejectsMalformedStatements() {
+        assertThrows(IllegalArgumentException.class, () -> calculator.evaluate("x = 1 2"));
+        assertThrows(IllegalArgumentException.class, () -> calculator.evaluate("x = 1 = 2"));
+        assertThrows(IllegalArgumentException.class, () -> calculator.evaluate("x + 1"));
+        assertThrows(IllegalArgumentException.class, () -> calculator.evaluate("x = 1;; y = 2"));
+        assertThrows(IllegalArgumentException.class, () -> calculator.evaluate("x = "));
+        assertTrue(calculator.getVariables().isEmpty());
+    }
+
+    @Test
+    void testLineCompilesAsAWhole() {
+        assertThrows(IllegalArgumentException.class, () -> calculator.evaluate("a = 1; b = 2 +"));
+        assertThrows(ArithmeticException.class, () -> calculator.evaluate("a = 1; b = 2 / 0")); // Folded when compiling
+        assertTrue(calculator.getVariables().isEmpty());
+
+        calculator.evaluate("d = 0");
+        assertThrows(ArithmeticException.class, () -> calculator.evaluate("a = 1; b = 2 / d")); // Fails when run
+        assertEquals(Map.of("d", 0, "a", 1), calculator.getVariables());
+    }
+
+    @Test
+    void testTracksChangesOfLastLine() {
+        assertTrue(calculator.getLastChanges().isEmpty()); // Tracking is off by default
+        calculator.setChangeTracking(true);
+        calculator.evaluate("a = 1; b = 2");
+        calculator.evaluate("c = a++; b += c");
+        assertEquals("{a=2, c=1, b=3}", calculator.getLastChanges().toString());
+        assertThrows(IllegalArgumentException.class, () -> calculator.evaluate("c = = 1"));
+        assertTrue(calculator.getLastChanges().isEmpty());
+
+        assertThrows(IllegalArgumentException.class, () -> calculator.evaluate("c = a++ + undefinedVar"));
+        assertEquals("{a=3}", calculator.getLastChanges().toString()); // c was defined but not written
+        assertFalse(calculator.tryEvaluate("c = ++a + undefinedVar").isOk());
+        assertEquals("{a=4}", calculator.getLastChanges().toString());
+    }
+
+    @Test
+    void testCompiledStatementIsReusable() {
+        calculator.evaluate("i = 0");
+        CompiledStatement statement = calculator.compile("x = i++ * 2");
+        assertEquals("x", statement.getTarget());
+        assertEquals(TokenType.ASSIGN, statement.getOperator());
+        calculator.evaluate("x = i++ * 2");
+        calculator.evaluate("x = i++ * 2");
+        assertEquals(2, calculator.getVariables().get("i"));
+        assertEquals(2, calculator.getVariables().get("x"));
+    }
+
+    @Test
+    void testRepeatedLinesHitPlanCache() {
+        CompiledStatement first = calculator.compile("x = 1 + 2");
+        assertSame(first, calculator.compile("x = 1 + 2"));
+        assertNotSame(first, calculator.compile("y = 1 + 2"));
+    }
+
+    @Test
+    void testPlanCacheEvictsLeastRecentlyUsed() {
+        Calculator calc = new Calculator(2);
+        CompiledStatement a = calc.compile("a = 1");
+        CompiledStatement b = calc.compile("b = 2");
+        calc.compile("a = 1");                  // a becomes most recently used
+        calc.compile("c = 3");                  // evicts b
+        assertSame(a, calc.compile("a = 1"));
+        assertNotSame(b, calc.compile("b = 2"));
+    }
+
+    @Test
+    void testPlanCacheCanBeDisabled() {
+        Calculator calc = new Calculator(0);
+        assertNotSame(calc.compile("x = 1"), calc.compile("x = 1"));
+    }
+
+    @Test
+    void testOverflowWidensToLongAndBigInteger() {
+        calculator.evaluate("a = 2147483647");
+        calculator.evaluate("b = a + 1");
+        calculator.evaluate("c = b * b * b");
+        calculator.evaluate("d = c / b / b - a");
+
+        Map<String, Number> vars = calculator.getVariables();
+        assertEquals(2147483648L, vars.get("b"));
+        assertEquals(BigInteger.valueOf(2147483648L).pow(3), vars.get("c"));
+        assertEquals(1, vars.get("d"));
+        assertEquals(NumericWidth.LONG, calculator.getWidth("b"));
+        assertEquals(NumericWidth.BIG, calculator.getWidth("c"));
+        assertEquals(NumericWidth.INT, calculator.getWidth("d"));
+        assertNull(calculator.getWidth("e"));
+    }
+
+    @Test
+    void testWideLiterals() {
+        calculator.evaluate("i = 0; x = 3000000000; y = -9223372036854775808; z = 99999999999999999999 - i++");
+        calculator.evaluate("n = -2147483648; d = 6000000000 / 3");
+        Map<String, Number> vars = calculator.getVariables();
+        assertEquals(3000000000L, vars.get("x"));
+        assertEquals(Long.MIN_VALUE, vars.get("y"));
+        assertEquals(new BigInteger("99999999999999999999"), vars.get("z"));
+        assertEquals(1, vars.get("i")); // Incremented once
+        assertEquals(Integer.MIN_VALUE, vars.get("n"));
+        assertEquals(NumericWidth.INT, calculator.getWidth("n"));
+        assertEquals(2000000000, vars.get("d"));
+    }
+
+    @Test
+    void testOverflowRetryAppliesIncrementsOnce() {
+        calculator.evaluate("i = 1; m = 2147483647");
+        calculator.evaluate("x = i++ * m * m"); // Overflows in int after i++
+        assertEquals(2, calculator.getVariables().get("i"));
+        assertEquals(4611686014132420609L, calculator.getVariables().get("x"));
+
+        calculator.evaluate("big = x * 4; k = 0");
+        calculator.evaluate("w = k++ + big - big"); // Overflows in long after k++
+        assertEquals(1, calculator.getVariables().get("k"));
+        assertEquals(0, calculator.getVariables().get("w"));
+
+        calculator.evaluate("y = m++");
+        assertEquals(2147483648L, calculator.getVariables().get("m"));
+        calculator.evaluate("y = --m");
+        assertEquals(Integer.MAX_VALUE, calculator.getVariables().get("m"));
+        assertEquals(NumericWidth.INT, calculator.getWidth("m")); // Narrowed again
+    }
+
+    @Test
+    void testTryEvaluateReportsErrorsWithoutThrowing() {
+        assertTrue(calculator.tryEvaluate("a = 1; z = 0").isOk());
+        assertTrue(calculator.tryEvaluate("   ").isOk());
+
+        EvaluationResult result = calculator.tryEvaluate("a = 3; c = a / (0)");
+        assertEquals(ErrorCode.UNEXPECTED_CHARACTER, result.getCode());
+        assertEquals(15, result.getOffset());
+        assertEquals("Unexpected character: (", result.getMessage());
+
+        result = calculator.tryEvaluate("a = 3; c = a / z");
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, result.getCode());
+        assertEquals(7, result.getOffset()); // The failing statement
+        assertEquals(3, calculator.getVariables().get("a")); // The statement before it ran
+
+        result = calculator.tryEvaluate("b = 1; a += zz");
+        assertEquals(ErrorCode.UNDEFINED_VARIABLE, result.getCode());
+        assertEquals(7, result.getOffset());
+        assertEquals("Variable 'zz' is not defined", result.getMessage());
+
+        result = calculator.tryEvaluate("y = 1; z = 5 / 0");
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, result.getCode());
+        assertEquals(7, result.getOffset()); // Found when compiling, reported at its statement
+
+        assertEquals(ErrorCode.EXPECTED_ASSIGNMENT, calculator.tryEvaluate("a * 2").getCode());
+        assertEquals(ErrorCode.INVALID_VARIABLE_NAME, calculator.tryEvaluate("5 = a").getCode());
+        assertEquals(ErrorCode.EXPECTED_VARIABLE, calculator.tryEvaluate("a = ++5").getCode());
+        assertEquals(ErrorCode.UNEXPECTED_TOKEN, calculator.tryEvaluate("a = b b").getCode());
+        assertTrue(calculator.tryEvaluate("a = 99999999999").isOk()); // Literals widen like computed values
+    }
+
+    @Test
+    void testThrownErrorsKeepTheirMessages() {
+        Exception ex = assertThrows(IllegalArgumentException.class, () -> calculator.evaluate("a * 2"));
+        assertEquals("Expected '=', '+=' or '-=' after a", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class, () -> calculator.evaluate("ab_ = 1"));
+        assertEquals("Invalid variable name: cannot end with underscore (ab_)", ex.getMessage());
+        ex = assertThrows(ArithmeticException.class, () -> calculator.evaluate("a = 1 / 0"));
+        assertEquals("Division by zero", ex.getMessage());
+    }
 }
@@ -0,0 +1,122 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkedBatchEvaluatorTest {
+
+    @TempDir
+    Path dir;
+
+    private List<String> evaluateChunked(Calculator calculator, Path file, int chunkBytes) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<String> errors = new ArrayList<>();
+            new ChunkedBatchEvaluator(calculator, pool, chunkBytes).evaluateAll(file,
+                    error -> errors.add(BatchEvaluation.describe(error)));
+            return errors;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void assertSameAsSequential(String script, int chunkBytes) throws IOException {
+        Path file = dir.resolve("script.txt");
+        Files.writeString(file, script);
+        Calculator sequential = new Calculator();
+        Calculator chunked = new Calculator();
+        assertEquals(BatchEvaluation.evaluateSequentially(sequential, file), evaluateChunked(chunked, file, chunkBytes));
+        BatchEvaluation.assertSameVariables(sequential, chunked);
+    }
+
+    @Test
+    void testCompileErrorsKeepTheirLineNumbers() throws IOException {
+        Path file = dir.resolve("errors.txt");
+        Files.writeString(file, "i = 0\n\nj = ++i\nz = 1 @ 2\r\nk = j / 0\né = i++\ni += 1");
+        Calculator calculator = new Calculator();
+        List<String> errors = evaluateChunked(calculator, file, 8);
+        assertEquals(List.of("4: z = 1 @ 2: Unexpected character: @", "5: k = j / 0: Division by zero"), errors);
+        assertEquals("{i=3, j=1, é=1}", calculator.getVariables().toString());
+    }
+
+    @Test
+    void testLineEndingsAndChunkBoundaries() throws IOException {
+        String script = "a = 1\r\nb = a + 1\rc = b * 3\n\n  \nd = x\r\n\r\ne = c--\n";
+        for (int chunkBytes = 1; chunkBytes <= script.length(); chunkBytes++) {
+            assertSameAsSequential(script, chunkBytes);
+        }
+    }
+
+    @Test
+    void testCarriageReturnOnlyInputIsSplit() throws IOException {
+        String script = "a = 1\rb = a + 1\rc = b * 3\r\rd = x\re = c--\r";
+        for (int chunkBytes = 1; chunkBytes <= script.length(); chunkBytes++) {
+            assertSameAsSequential(script, chunkBytes);
+        }
+
+        Path file = dir.resolve("cr.txt");
+        Files.writeString(file, "a = 1\rb = 2\r\nc = 3");
+        ChunkedBatchEvaluator evaluator = new ChunkedBatchEvaluator(new Calculator(), ForkJoinPool.commonPool(), 2);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertEquals(6, evaluator.chunkEnd(channel, 0, channel.size()));   // After the lone '\r'
+            assertEquals(13, evaluator.chunkEnd(channel, 6, channel.size()));  // After "\r\n", not between
+            assertEquals(18, evaluator.chunkEnd(channel, 13, channel.size())); // No break left: end of file
+        }
+    }
+
+    @Test
+    void testRandomScriptsMatchSequential() throws IOException {
+        Random random = new Random(23);
+        BatchEvaluation.RandomLines generator = new BatchEvaluation.RandomLines(random)
+                .targets("a", "b", "c", "d", "e").statements(2);
+        for (int round = 0; round < 5; round++) {
+            StringBuilder script = new StringBuilder();
+            for (int i = 0; i < 2000; i++) {
+                switch (random.nextInt(6)) {
+                    case 0 -> script.append(generator.line()).append(" $");
+                    case 1 -> script.append("  ");
+                    default -> script.append(generator.line());
+                }
+                script.append(random.nextBoolean() ? "\n" : "\r\n");
+            }
+            assertSameAsSequential(script.toString(), 512);
+        }
+    }
+
+    @Test
+    void testMalformedInputFailsAfterEarlierLines() throws IOException {
+        Path file = dir.resolve("malformed.txt");
+        byte[] good = "a = 1\nb = a + 1\n".getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[good.length + 6];
+        System.arraycopy(good, 0, bytes, 0, good.length);
+        System.arraycopy(new byte[]{'c', ' ', '=', ' ', (byte) 0xff, '\n'}, 0, bytes, good.length, 6);
+        Files.write(file, bytes);
+
+        Calculator calculator = new Calculator();
+        assertThrows(MalformedInputException.class, () -> evaluateChunked(calculator, file, 4));
+        assertEquals("{a=1, b=2}", calculator.getVariables().toString());
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+        Path file = dir.resolve("empty.txt");
+        Files.writeString(file, "");
+        Calculator calculator = new Calculator();
+        assertEquals(List.of(), evaluateChunked(calculator, file, 16));
+        assertEquals("{}", calculator.getVariables().toString());
+    }
+}
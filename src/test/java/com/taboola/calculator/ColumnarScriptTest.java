@@ -0,0 +1,140 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarScriptTest {
+
+    /**
+     * Helper: checks every row against a Calculator running the script from that row's inputs.
+     */
+    private void assertSameAsCalculator(List<String> lines, Map<String, int[]> inputs) {
+        ColumnarScript.Result result = new ColumnarScript(lines).evaluate(inputs);
+        int rows = inputs.values().iterator().next().length;
+        assertEquals(rows, result.getRowCount());
+
+        List<String> actualErrors = new ArrayList<>();
+        for (ColumnarScript.RowError error : result.getErrors()) {
+            actualErrors.add(error.row() + ":" + error.lineNumber() + ": " + error.message());
+        }
+        List<String> expectedErrors = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            Calculator calculator = new Calculator();
+            for (Map.Entry<String, int[]> input : inputs.entrySet()) {
+                calculator.evaluate(input.getKey() + " = " + input.getValue()[row]);
+            }
+            for (int i = 0; i < lines.size(); i++) {
+                try {
+                    calculator.evaluate(lines.get(i));
+                } catch (RuntimeException e) {
+                    expectedErrors.add(row + ":" + (i + 1) + ": " + e.getMessage());
+                }
+            }
+
+            Map<String, Number> expected = calculator.getVariables();
+            for (Map.Entry<String, int[]> column : result.getColumns().entrySet()) {
+                String name = column.getKey();
+                assertEquals(expected.containsKey(name), result.isDefined(name, row), name + " in row " + row);
+                if (expected.containsKey(name)) {
+                    assertEquals(expected.get(name).intValue(), column.getValue()[row], name + " in row " + row);
+                }
+            }
+            for (String name : expected.keySet()) {
+                assertTrue(result.isDefined(name, row), name + " in row " + row);
+            }
+        }
+        assertEquals(expectedErrors, actualErrors);
+    }
+
+    @Test
+    void testEvaluatesEveryRow() {
+        Map<String, int[]> inputs = new LinkedHashMap<>();
+        inputs.put("x", new int[]{1, 2, 3, -4, 0});
+        inputs.put("y", new int[]{5, 0, 7, 2, 1});
+        ColumnarScript script = new ColumnarScript(List.of("a = x * y + 1", "b = a / y", "c = -x++ - --y"));
+        ColumnarScript.Result result = script.evaluate(inputs);
+
+        assertArrayEquals(new int[]{6, 1, 22, -7, 1}, result.getColumn("a"));
+        assertArrayEquals(new int[]{2, 3, 4, -3, 1}, result.getColumn("x"));
+        assertArrayEquals(new int[]{1, 2, 3, -4, 0}, inputs.get("x")); // Inputs are not modified
+        assertFalse(result.isDefined("b", 1));
+        assertEquals(List.of(new ColumnarScript.RowError(1, 2, "Division by zero")), result.getErrors());
+        assertNull(result.getColumn("z"));
+    }
+
+    @Test
+    void testFailedRowsKeepEarlierSideEffectsOnly() {
+        Map<String, int[]> inputs = new LinkedHashMap<>();
+        inputs.put("i", new int[]{1, 1, 1});
+        inputs.put("d", new int[]{1, 0, 2});
+        assertSameAsCalculator(List.of("r = i++ / d + i++", "s += 1", "t = r + i", "s = q", "t -= s"), inputs);
+        assertSameAsCalculator(List.of("r = i++; s = r / d; t = s + i", "u = t; t = 1"), inputs);
+    }
+
+    @Test
+    void testRejectsLinesThatCannotCompile() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> new ColumnarScript(List.of("a = 1", "b = 5 @ 3")));
+        assertTrue(ex.getMessage().startsWith("Error in line 2: "));
+        ArithmeticException division = assertThrows(ArithmeticException.class,
+                () -> new ColumnarScript(List.of("a = x / 0")));
+        assertEquals("Error in line 1: Division by zero", division.getMessage());
+        assertTrue(division.getCause() instanceof DivisionByZero);
+    }
+
+    @Test
+    void testRandomScriptsMatchCalculator() {
+        Random random = new Random(5);
+        BatchEvaluation.RandomLines generator = new BatchEvaluation.RandomLines(random)
+                .targets("a", "b", "c").operands("a", "b", "c", "x", "y")
+                .terms(4).negations().nonZeroLiterals().variableFactors();
+        for (int round = 0; round < 10; round++) {
+            List<String> lines = generator.lines(20);
+
+            int rows = 1 + random.nextInt(3 * ColumnarScript.BLOCK_SIZE / 2); // Partial and vector-tail blocks
+            Map<String, int[]> inputs = new LinkedHashMap<>();
+            inputs.put("x", random.ints(rows, -3, 4).toArray());
+            inputs.put("y", random.ints(rows, -3, 4).toArray());
+            assertSameAsCalculator(lines, inputs);
+        }
+    }
+
+    @Test
+    void testRowsLeavingTheIntRangeFail() {
+        Map<String, int[]> inputs = new LinkedHashMap<>();
+        inputs.put("x", new int[]{1, Integer.MAX_VALUE, 65536, Integer.MIN_VALUE, 2});
+        ColumnarScript script = new ColumnarScript(List.of("a = x * x", "b = x + 1", "c = -x", "d = x++"));
+        ColumnarScript.Result result = script.evaluate(inputs);
+
+        assertEquals(List.of(
+                new ColumnarScript.RowError(1, 1, "Integer overflow"),
+                new ColumnarScript.RowError(1, 2, "Integer overflow"),
+                new ColumnarScript.RowError(1, 4, "Integer overflow"),
+                new ColumnarScript.RowError(2, 1, "Integer overflow"),
+                new ColumnarScript.RowError(3, 1, "Integer overflow"),
+                new ColumnarScript.RowError(3, 3, "Integer overflow")), result.getErrors());
+        assertArrayEquals(new int[]{2, Integer.MAX_VALUE, 65537, Integer.MIN_VALUE + 1, 3}, result.getColumn("x"));
+        assertArrayEquals(new int[]{2, 0, 65537, Integer.MIN_VALUE + 1, 3}, result.getColumn("b"));
+        assertFalse(result.isDefined("d", 1));
+    }
+
+    @Test
+    void testWideLiteralFailsEveryRow() {
+        Map<String, int[]> inputs = new LinkedHashMap<>();
+        inputs.put("x", new int[]{1, 2});
+        ColumnarScript script = new ColumnarScript(List.of("a = x + 3000000000", "b = -2147483648 + x"));
+        ColumnarScript.Result result = script.evaluate(inputs);
+
+        assertEquals(List.of(
+                new ColumnarScript.RowError(0, 1, "Integer overflow"),
+                new ColumnarScript.RowError(1, 1, "Integer overflow")), result.getErrors());
+        assertArrayEquals(new int[]{Integer.MIN_VALUE + 1, Integer.MIN_VALUE + 2}, result.getColumn("b"));
+    }
+}
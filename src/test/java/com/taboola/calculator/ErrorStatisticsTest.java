@@ -0,0 +1,43 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ErrorStatisticsTest {
+
+    @Test
+    void testCountsByCodeWithFirstLine() {
+        ErrorStatistics errors = new ErrorStatistics();
+        assertEquals("Errors: 0", errors.summary());
+
+        errors.record(ErrorCode.DIVISION_BY_ZERO, 7);
+        errors.record(ErrorCode.UNDEFINED_VARIABLE, 4);
+        errors.record(ErrorCode.UNDEFINED_VARIABLE, 9);
+
+        assertEquals(3, errors.getTotal());
+        assertEquals(2, errors.getCount(ErrorCode.UNDEFINED_VARIABLE));
+        assertEquals(4, errors.getFirstLine(ErrorCode.UNDEFINED_VARIABLE));
+        assertEquals(0, errors.getFirstLine(ErrorCode.UNEXPECTED_TOKEN));
+        assertEquals("Errors: 3 (UNDEFINED_VARIABLE: 2, first in line 4; DIVISION_BY_ZERO: 1, first in line 7)",
+                errors.summary());
+    }
+
+    @Test
+    void testClassifiesThrownErrors() {
+        Calculator calculator = new Calculator();
+        ErrorStatistics errors = new ErrorStatistics();
+        for (String line : new String[]{"x = y", "x = 1 / 0", "x = 1 $ 2"}) {
+            try {
+                calculator.evaluate(line);
+            } catch (RuntimeException e) {
+                errors.record(e, 1);
+            }
+        }
+        assertEquals(1, errors.getCount(ErrorCode.UNDEFINED_VARIABLE));
+        assertEquals(1, errors.getCount(ErrorCode.DIVISION_BY_ZERO));
+        assertEquals(1, errors.getCount(ErrorCode.UNEXPECTED_CHARACTER));
+        errors.record(new IllegalStateException(), 2);
+        assertEquals(1, errors.getCount(ErrorCode.OTHER));
+    }
+}
@@ -0,0 +1,86 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutionTraceTest {
+
+    @Test
+    void testRecordsOldAndNewValuesPerStatement() {
+        Calculator calculator = new Calculator();
+        ExecutionTrace trace = new ExecutionTrace(8);
+        calculator.setTrace(trace);
+
+        calculator.evaluate("x = 5");
+        calculator.tryEvaluate("x += 2; y = z", 10);
+        calculator.evaluate("m = 2147483647; m += 1");
+
+        List<ExecutionTrace.Entry> entries = trace.entries();
+        assertEquals(5, entries.size());
+
+        ExecutionTrace.Entry first = entries.get(0);
+        assertEquals(1, first.lineNumber());
+        assertEquals("x", first.target());
+        assertNull(first.oldWidth());
+        assertEquals(NumericWidth.INT, first.newWidth());
+        assertEquals(5, first.newValue());
+        assertTrue(first.durationNanos() >= 0);
+
+        ExecutionTrace.Entry increment = entries.get(1);
+        assertEquals(10, increment.lineNumber());
+        assertEquals(5, increment.oldValue());
+        assertEquals(7, increment.newValue());
+        assertFalse(increment.failed());
+
+        ExecutionTrace.Entry failure = entries.get(2);
+        assertEquals("y", failure.target());
+        assertTrue(failure.failed());
+        assertNull(failure.newWidth());
+
+        ExecutionTrace.Entry widened = entries.get(4);
+        assertEquals(11, widened.lineNumber()); // Counts on from the last numbered line
+        assertEquals(NumericWidth.LONG, widened.newWidth());
+        assertEquals(2147483648L, widened.newValue());
+    }
+
+    @Test
+    void testKeepsOnlyTheLastStatements() {
+        Calculator calculator = new Calculator();
+        ExecutionTrace trace = new ExecutionTrace(3); // Rounded up to 4
+        calculator.setTrace(trace);
+        assertEquals(4, trace.capacity());
+        calculator.evaluate("i = 0");
+        for (int i = 0; i < 10; i++) {
+            calculator.evaluate("i += 1; j = i");
+        }
+        assertEquals(21, trace.recorded());
+        assertEquals(4, trace.size());
+        List<ExecutionTrace.Entry> entries = trace.entries();
+        assertEquals(10, entries.get(3).newValue());
+        assertEquals("j", entries.get(3).target());
+        assertEquals(11, entries.get(3).lineNumber());
+        assertEquals(10, entries.get(0).lineNumber());
+    }
+
+    @Test
+    void testDumpListsStatementsAndSlowestLines() {
+        Calculator calculator = new Calculator();
+        ExecutionTrace trace = new ExecutionTrace();
+        calculator.setTrace(trace);
+        calculator.evaluate("a = 1");
+        calculator.tryEvaluate("b = a; c = b / d");
+
+        StringBuilder dump = new StringBuilder();
+        trace.dump(dump);
+        String[] lines = dump.toString().split("\n");
+        assertEquals("Trace: last 3 of 3 statements", lines[0]);
+        assertTrue(lines[1].matches("line 1 \\+0 ns: a undefined -> 1 \\(\\d+ ns\\)"), lines[1]);
+        assertTrue(lines[3].matches("line 2 \\+\\d+ ns: c undefined -> undefined FAILED \\(\\d+ ns\\)"), lines[3]);
+        assertEquals("Slowest lines:", lines[4]);
+        assertEquals(7, lines.length);
+        assertTrue(dump.toString().contains("ns in 2 statements"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpressionOptimizerTest {
+
+    private final SymbolTable symbols = new SymbolTable();
+
+    private Expression compile(String expr) {
+        return new ExpressionCompiler(new Tokenizer(expr), symbols).compileExpression();
+    }
+
+    private Expression optimize(String expr) {
+        return ExpressionOptimizer.optimize(compile(expr));
+    }
+
+    @Test
+    void testFoldsLiterals() {
+        assertEquals(new Expression.Literal(10), optimize("2 * 3 + 4"));
+        assertEquals(new Expression.Literal(-7), optimize("1 - 2 * 4"));
+        assertEquals(new Expression.Literal(3), optimize("- -3"));
+        assertEquals(compile("4 * y"), optimize("2 * 3 + 4 * y * 1 - 0 - 6"));
+        assertEquals(compile("y * 6 / x"), optimize("y * 2 * 3 / x"));
+    }
+
+    @Test
+    void testRemovesIdentities() {
+        assertEquals(compile("y"), optimize("y * 1"));
+        assertEquals(compile("y"), optimize("1 * y / 1"));
+        assertEquals(compile("y"), optimize("0 + y - 0"));
+        assertEquals(compile("y"), optimize("- - y"));
+        assertEquals(compile("-y + x"), optimize("0 - y + x"));
+    }
+
+    @Test
+    void testKeepsSideEffectsInOrder() {
+        assertEquals(compile("i++ + i++ + 3"), optimize("i++ + 1 + i++ + 2"));
+        assertEquals(compile("i++ * 0"), optimize("i++ * 0")); // The increment must still happen
+    }
+
+    @Test
+    void testDoesNotMoveLiteralsAcrossDivision() {
+        assertEquals(compile("y / 2 * 3"), optimize("y / 2 * 3"));
+    }
+
+    @Test
+    void testReportsDivisionByLiteralZero() {
+        ArithmeticException ex = assertThrows(ArithmeticException.class, () -> optimize("x + y / 0"));
+        assertEquals("Division by zero", ex.getMessage());
+
+        // Reported before anything runs, so the increment does not happen
+        Calculator calculator = new Calculator();
+        calculator.evaluate("i = 1");
+        assertThrows(ArithmeticException.class, () -> calculator.evaluate("x = i++ / 0"));
+        assertEquals(1, calculator.getVariables().get("i"));
+    }
+
+    @Test
+    void testRandomExpressionsMatchUnoptimized() {
+        Random random = new Random(11);
+        String[] names = {"a", "b", "c"};
+        BatchEvaluation.RandomLines generator = new BatchEvaluation.RandomLines(random)
+                .targets(names).terms(6).negations().variableFactors();
+        for (int round = 0; round < 2000; round++) {
+            String expr = generator.expression();
+
+            Expression tree = compile(expr);
+            Expression optimized;
+            try {
+                optimized = ExpressionOptimizer.optimize(tree);
+            } catch (ArithmeticException e) {
+                continue; // Divides by a literal zero
+            }
+            VariableStore expected = new VariableStore(symbols);
+            VariableStore actual = new VariableStore(symbols);
+            for (String name : names) {
+                int value = random.nextInt(5) - 2;
+                expected.set(symbols.resolve(name), value);
+                actual.set(symbols.resolve(name), value);
+            }
+            String expectedResult;
+            String actualResult;
+            try {
+                expectedResult = String.valueOf(tree.evaluate(expected));
+            } catch (ArithmeticException e) {
+                expectedResult = e.getMessage();
+            }
+            try {
+                actualResult = String.valueOf(optimized.evaluate(actual));
+            } catch (ArithmeticException e) {
+                actualResult = e.getMessage();
+            }
+            assertEquals(expectedResult, actualResult, expr);
+            assertEquals(expected.asMap(), actual.asMap(), expr);
+        }
+    }
+}
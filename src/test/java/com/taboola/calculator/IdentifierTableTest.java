@@ -0,0 +1,78 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdentifierTableTest {
+
+    @Test
+    void testInternsFromCharactersWithStableIds() {
+        IdentifierTable table = new IdentifierTable();
+        String line = "total = total + count";
+        int first = table.intern(line, 0, 5, "total".hashCode());
+        int second = table.intern(line, 8, 13, "total".hashCode());
+        int count = table.intern(line, 16, 21, "count".hashCode());
+
+        assertEquals(first, second);
+        assertNotEquals(first, count);
+        assertSame(table.name(first), table.name(second));
+        assertEquals("count", table.name(count));
+        assertEquals(2, table.identifierCount());
+        assertEquals(0, table.size()); // Seen, not assigned
+        assertFalse(table.isAssigned(first));
+
+        Exception ex = assertThrows(IllegalArgumentException.class, () -> table.get(count));
+        assertEquals("Variable 'count' is not defined", ex.getMessage());
+    }
+
+    @Test
+    void testCollidingHashesAreMatchedByName() {
+        IdentifierTable table = new IdentifierTable();
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        table.put("Aa", 1);
+        table.put("BB", 2);
+        assertEquals(1, table.get("Aa"));
+        assertEquals(2, table.get("BB"));
+        assertEquals(-1, table.find("Ab"));
+    }
+
+    @Test
+    void testGrowsAndKeepsAssignmentOrder() {
+        IdentifierTable table = new IdentifierTable(0);
+        for (int i = 0; i < 10_000; i++) {
+            table.put("v" + i, i);
+        }
+        table.put("v0", -1);
+        assertEquals(10_000, table.size());
+        assertEquals(9_999, table.get("v9999"));
+        assertEquals(-1, table.get("v0"));
+        assertEquals("v0", table.asMap().keySet().iterator().next());
+
+        IdentifierTable ordered = new IdentifierTable();
+        int b = ordered.intern("b", 0, 1, "b".hashCode()); // Seen first, assigned last
+        ordered.put("a", 1);
+        ordered.set(b, 2);
+        assertEquals(List.of("a", "b"), List.copyOf(ordered.asMap().keySet()));
+        assertEquals(Map.of("a", 1, "b", 2), ordered.asMap());
+        assertNull(ordered.asMap().get("c"));
+    }
+
+    @Test
+    void testParserRunsOnIdentifierTable() {
+        IdentifierTable table = new IdentifierTable();
+        table.put("i", 1);
+        assertEquals(4, new Parser(new Tokenizer("++i + i++"), table).parseExpression());
+        assertEquals(3, table.get("i"));
+        assertEquals(2, new Parser(new Tokenizer("i-- - --i"), table).parseExpression());
+        assertEquals(1, table.get("i"));
+        assertEquals(1, table.identifierCount());
+
+        assertThrows(IllegalArgumentException.class, () -> new Parser(new Tokenizer("j + 1"), table).parseExpression());
+        assertFalse(table.contains("j"));
+        assertEquals(1, table.size());
+    }
+}
@@ -0,0 +1,73 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapVariableTableTest {
+
+    @Test
+    void testPutGetAndInsertionOrder() {
+        try (OffHeapVariableTable table = new OffHeapVariableTable()) {
+            table.put("b", 2);
+            table.put("a", 1);
+            table.put("b", -5);
+            table.put("é", 7);
+            table.put("e", 8); // Same length in chars as "é", one byte shorter in UTF-8
+
+            assertEquals(-5, table.get("b"));
+            assertEquals(7, table.get("é"));
+            assertEquals(8, table.get("e"));
+            assertEquals(4, table.size());
+            assertFalse(table.contains("c"));
+            assertEquals(List.of("b", "a", "é", "e"), List.copyOf(table.asMap().keySet()));
+            assertEquals(Map.of("a", 1, "b", -5, "é", 7, "e", 8), table.asMap());
+            assertNull(table.asMap().get("c"));
+
+            Exception ex = assertThrows(IllegalArgumentException.class, () -> table.get("c"));
+            assertEquals("Variable 'c' is not defined", ex.getMessage());
+        }
+    }
+
+    @Test
+    void testGrowsBeyondExpectedSize() {
+        Map<String, Integer> expected = new HashMap<>();
+        try (OffHeapVariableTable table = new OffHeapVariableTable(0)) {
+            long initialBytes = table.allocatedBytes();
+            for (int i = 0; i < 100_000; i++) {
+                String name = "var_" + Integer.toHexString(i * 31);
+                table.put(name, i);
+                expected.put(name, i);
+            }
+            assertEquals(expected.size(), table.size());
+            for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+                assertEquals(entry.getValue(), table.get(entry.getKey()));
+            }
+            assertEquals(expected, table.asMap());
+            assertEquals("var_0", table.asMap().keySet().iterator().next());
+            assertTrue(table.allocatedBytes() > initialBytes);
+        }
+    }
+
+    @Test
+    void testParserRunsOnOffHeapTable() {
+        try (OffHeapVariableTable table = new OffHeapVariableTable()) {
+            table.put("i", 1);
+            assertEquals(4, new Parser(new Tokenizer("++i + i++"), table).parseExpression());
+            assertEquals(3, table.get("i"));
+            assertThrows(IllegalArgumentException.class, () -> new Parser(new Tokenizer("j + 1"), table).parseExpression());
+        }
+    }
+
+    @Test
+    void testClosedTableCannotBeUsed() {
+        OffHeapVariableTable table = new OffHeapVariableTable();
+        table.put("x", 1);
+        table.close();
+        assertThrows(IllegalStateException.class, () -> table.get("x"));
+    }
+}
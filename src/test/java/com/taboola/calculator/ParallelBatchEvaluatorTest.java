@@ -0,0 +1,61 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelBatchEvaluatorTest {
+
+    private List<String> evaluateInParallel(Calculator calculator, List<String> lines, int windowSize) {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<String> errors = new ArrayList<>();
+            for (LineError error : new ParallelBatchEvaluator(calculator, pool, windowSize).evaluateAll(lines)) {
+                errors.add(BatchEvaluation.describe(error));
+            }
+            return errors;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void assertSameAsSequential(List<String> lines, int windowSize) {
+        Calculator sequential = new Calculator();
+        Calculator parallel = new Calculator();
+        List<String> expectedErrors = BatchEvaluation.evaluateSequentially(sequential, lines);
+        assertEquals(expectedErrors, evaluateInParallel(parallel, lines, windowSize));
+        BatchEvaluation.assertSameVariables(sequential, parallel);
+    }
+
+    @Test
+    void testIntegrationExample() {
+        assertSameAsSequential(List.of("i = 0", "j = ++i", "x = i++ + 5", "y = 5 + 3 * 10", "i += y"), 16);
+    }
+
+    @Test
+    void testErrorsAndSideEffectsInOrder() {
+        assertSameAsSequential(List.of(
+                "a = 1", "b = c + 1", "c = a++ / 0", "", "c = a", "d += 1", "bad line", "b = c-- + a", "d = b"), 16);
+    }
+
+    @Test
+    void testSeveralStatementsPerLine() {
+        assertSameAsSequential(List.of(
+                "a = 1; b = 2", "c = a++; d = b / 0; e = 1", "e = c; f = d", "f = a + b; a += f", "g = 1; b = g"), 2);
+    }
+
+    @Test
+    void testRandomScriptsMatchSequential() {
+        Random random = new Random(42);
+        BatchEvaluation.RandomLines generator = new BatchEvaluation.RandomLines(random);
+        for (int round = 0; round < 20; round++) {
+            List<String> lines = generator.lines(300);
+            assertSameAsSequential(lines, 1 + random.nextInt(64));
+        }
+    }
+}
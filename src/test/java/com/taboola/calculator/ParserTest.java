@@ -190,4 +190,13 @@ public class ParserTest {
         vars.put("y", 3);
         assertEquals(11, parse("x * y + 5")); // 2*3 +5 = 11
     }
+
+    @Test
+    void testOverflowThrowsInsteadOfWrapping() {
+        HashMap<String, Integer> vars = new HashMap<>();
+        vars.put("m", Integer.MAX_VALUE);
+        assertThrows(ArithmeticException.class, () -> new Parser(new Tokenizer("m * 2"), vars).parseExpression());
+        assertThrows(ArithmeticException.class, () -> new Parser(new Tokenizer("m++"), vars).parseExpression());
+        assertEquals(Integer.MAX_VALUE, vars.get("m"));
+    }
 }
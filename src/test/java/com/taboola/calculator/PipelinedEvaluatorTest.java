@@ -0,0 +1,104 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelinedEvaluatorTest {
+
+    private List<String> evaluatePipelined(Calculator calculator, List<String> lines, int chunkSize, int queueCapacity) {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<String> errors = new ArrayList<>();
+            new PipelinedEvaluator(calculator, pool, chunkSize, queueCapacity, 64).run(lines.stream(),
+                    error -> errors.add(BatchEvaluation.describe(error)));
+            return errors;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void assertSameAsSequential(List<String> lines, int chunkSize, int queueCapacity) {
+        Calculator sequential = new Calculator();
+        Calculator pipelined = new Calculator();
+        List<String> expectedErrors = BatchEvaluation.evaluateSequentially(sequential, lines);
+        assertEquals(expectedErrors, evaluatePipelined(pipelined, lines, chunkSize, queueCapacity));
+        BatchEvaluation.assertSameVariables(sequential, pipelined);
+    }
+
+    @Test
+    void testIntegrationExample() {
+        Calculator calculator = new Calculator();
+        List<LineError> errors = calculator.evaluateAll(
+                Stream.of("i = 0", "j = ++i", "", "x = i++ + 5", "y = 5 + 3 * 10", "z = 1 @ 2", "i += y"));
+        assertEquals("{i=37, j=1, x=6, y=35}", calculator.getVariables().toString());
+        assertEquals(1, errors.size());
+        assertEquals(6, errors.get(0).lineNumber());
+        assertEquals("z = 1 @ 2", errors.get(0).line());
+    }
+
+    @Test
+    void testErrorsAndSideEffectsInOrder() {
+        assertSameAsSequential(List.of(
+                "a = 1", "b = c + 1", "c = a++ / 0", "", "c = a", "d += 1", "bad line", "b = c-- + a; d = b", "d = b"), 2, 2);
+    }
+
+    @Test
+    void testStreamFailureIsRethrownAfterEarlierLines() {
+        Calculator calculator = new Calculator();
+        Stream<String> lines = Stream.concat(Stream.of("a = 1", "b = a + 1"), Stream.generate(() -> {
+            throw new UncheckedIOException(new IOException("Disk gone"));
+        }));
+        UncheckedIOException ex = assertThrows(UncheckedIOException.class, () -> calculator.evaluateAll(lines));
+        assertEquals("Disk gone", ex.getCause().getMessage());
+        assertEquals("{a=1, b=2}", calculator.getVariables().toString());
+    }
+
+    @Test
+    void testFailingErrorHandlerStopsThePipeline() {
+        Calculator calculator = new Calculator();
+        Stream<String> lines = Stream.iterate(0, i -> i + 1).map(i -> i == 10 ? "x = y" : "x = " + i);
+        assertThrows(IllegalStateException.class, () -> calculator.evaluateAll(lines, error -> {
+            throw new IllegalStateException("Stop");
+        }));
+        assertEquals(9, calculator.getVariables().get("x"));
+    }
+
+    @Test
+    void testRejectedCompileTaskFailsInsteadOfHanging() {
+        Calculator calculator = new Calculator();
+        AtomicInteger accepted = new AtomicInteger();
+        Executor shutDownAfterTwoChunks = task -> {
+            if (accepted.incrementAndGet() > 2) {
+                throw new RejectedExecutionException("Executor shut down");
+            }
+            task.run();
+        };
+        List<String> lines = List.of("a = 1", "b = 2", "c = 3", "d = 4", "e = 5");
+        PipelinedEvaluator evaluator = new PipelinedEvaluator(calculator, shutDownAfterTwoChunks, 2, 4, 64);
+
+        assertThrows(RejectedExecutionException.class, () -> evaluator.run(lines.stream(), error -> fail("No line fails")));
+        assertEquals("{a=1, b=2, c=3, d=4}", calculator.getVariables().toString());
+    }
+
+    @Test
+    void testRandomScriptsMatchSequential() {
+        Random random = new Random(16);
+        BatchEvaluation.RandomLines generator = new BatchEvaluation.RandomLines(random).statements(2);
+        for (int round = 0; round < 20; round++) {
+            List<String> lines = generator.lines(2000);
+            assertSameAsSequential(lines, 1 + random.nextInt(64), 1 + random.nextInt(8));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReactiveScriptTest {
+
+    /**
+     * Helper: evaluates the inputs and then the whole script from scratch, returning the
+     * variables and error messages as one string to compare (including the assignment order).
+     */
+    private String evaluateFromScratch(Map<String, Integer> inputs, List<String> lines) {
+        Calculator calculator = new Calculator();
+        inputs.forEach((name, value) -> calculator.evaluate(name + " = " + value));
+        List<String> errors = BatchEvaluation.evaluateSequentially(calculator, lines);
+        return calculator.getVariables() + " " + errors;
+    }
+
+    private String state(ReactiveScript script) {
+        List<String> errors = new ArrayList<>();
+        for (LineError error : script.getErrors()) {
+            errors.add(BatchEvaluation.describe(error));
+        }
+        return script.getVariables() + " " + errors;
+    }
+
+    @Test
+    void testRecomputesDownstreamOfInput() {
+        ReactiveScript script = new ReactiveScript();
+        script.setInput("x", 1);
+        script.add("a = x * 2");
+        script.add("b = a + 1");
+        script.add("c = 7");
+        script.add("d = c * c");
+        assertEquals("{x=1, a=2, b=3, c=7, d=49}", script.getVariables().toString());
+
+        script.setInput("x", 5);
+        assertEquals("{x=5, a=10, b=11, c=7, d=49}", script.getVariables().toString());
+        assertEquals(2, script.getLastUpdateCount()); // Only a and b
+    }
+
+    @Test
+    void testUnchangedOutputStopsPropagation() {
+        ReactiveScript script = new ReactiveScript();
+        script.setInput("x", 3);
+        script.add("a = x / 10");
+        script.add("b = a + 1");
+        script.setInput("x", 4);  // a stays 0
+        assertEquals(1, script.getLastUpdateCount());
+        assertEquals("{x=4, a=0, b=1}", script.getVariables().toString());
+    }
+
+    @Test
+    void testReplaysIncrementsAndCompoundAssignments() {
+        ReactiveScript script = new ReactiveScript();
+        script.setInput("i", 0);
+        List<String> lines = List.of("j = ++i", "x = i++ + 5", "y = 5 + 3 * 10", "i += y", "j -= i--");
+        lines.forEach(script::add);
+
+        Map<String, Integer> inputs = new LinkedHashMap<>();
+        inputs.put("i", 10);
+        script.setInput("i", 10);
+        assertEquals(evaluateFromScratch(inputs, lines), state(script));
+    }
+
+    @Test
+    void testErrorsComeAndGoWithInputs() {
+        ReactiveScript script = new ReactiveScript();
+        script.setInput("d", 0);
+        script.add("q = 10 / d");
+        script.add("r = q + 1");
+        assertEquals("{d=0} [1: q = 10 / d: Division by zero, 2: r = q + 1: Variable 'q' is not defined]", state(script));
+
+        script.setInput("d", 2);
+        assertEquals("{d=2, q=5, r=6} []", state(script));
+
+        script.setInput("d", 0);
+        assertEquals("{d=0} [1: q = 10 / d: Division by zero, 2: r = q + 1: Variable 'q' is not defined]", state(script));
+    }
+
+    @Test
+    void testLinesWithSeveralStatements() {
+        ReactiveScript script = new ReactiveScript();
+        script.setInput("x", 1);
+        script.add("a = x + 1; b = a * 2");
+        script.add("c = b - a; a = 0");
+        assertEquals("{x=1, a=0, b=4, c=2} []", state(script));
+
+        script.setInput("x", 3);
+        assertEquals("{x=3, a=0, b=8, c=4} []", state(script));
+    }
+
+    @Test
+    void testRandomUpdatesMatchFullEvaluation() {
+        Random random = new Random(7);
+        String[] names = {"a", "b", "c", "d", "e", "f"};
+        String[] inputNames = {"a", "b", "g", "h"};
+        BatchEvaluation.RandomLines generator = new BatchEvaluation.RandomLines(random)
+                .targets(names).operands("a", "b", "c", "d", "e", "f", "g", "h") // g and h are only inputs
+                .subtractAssignments().nonZeroLiterals().variableFactors();
+        for (int round = 0; round < 20; round++) {
+            Map<String, Integer> inputs = new LinkedHashMap<>();
+            ReactiveScript script = new ReactiveScript();
+            for (String name : inputNames) {
+                if (random.nextBoolean()) {
+                    inputs.put(name, random.nextInt(5));
+                    script.setInput(name, inputs.get(name));
+                }
+            }
+
+            List<String> lines = generator.lines(100);
+            for (String line : lines) {
+                script.add(line);
+            }
+            assertEquals(evaluateFromScratch(inputs, lines), state(script), "round " + round);
+
+            for (int update = 0; update < 10; update++) {
+                String name = inputNames[random.nextInt(inputNames.length)];
+                int value = random.nextInt(7) - 1;
+                inputs.put(name, value);
+                script.setInput(name, value);
+                assertEquals(evaluateFromScratch(inputs, lines), state(script), "round " + round + " update " + update);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScriptReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Helper: writes the content to a file and reads all its lines back with the given buffer size.
+     */
+    private List<String> readLines(String content, int bufferSize) throws IOException {
+        Path file = tempDir.resolve("script.txt");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        List<String> lines = new ArrayList<>();
+        try (ScriptReader reader = new ScriptReader(file, bufferSize)) {
+            CharSequence line;
+            while ((line = reader.nextLine()) != null) {
+                lines.add(line.toString());
+                assertEquals(lines.size(), reader.lineNumber());
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    void testSplitsLikeReadAllLines() throws IOException {
+        assertEquals(List.of("a = 1", "b = 2"), readLines("a = 1\nb = 2\n", 64));
+        assertEquals(List.of("a = 1", "", "b = 2"), readLines("a = 1\r\n\rb = 2", 64));
+        assertEquals(List.of(), readLines("", 64));
+    }
+
+    @Test
+    void testLinesSpanningBuffers() throws IOException {
+        StringBuilder content = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String line = "x" + i + " = " + "1 + ".repeat(i % 7) + i;
+            expected.add(line);
+            content.append(line).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        assertEquals(expected, readLines(content.toString(), 8));
+    }
+
+    @Test
+    void testLineLongerThanBufferAndNonAscii() throws IOException {
+        String longLine = "v = " + "1 + ".repeat(1000) + "1";
+        assertEquals(List.of(longLine, "ĳ = 5"), readLines(longLine + "\nĳ = 5", 16));
+    }
+
+    @Test
+    void testEvaluatesStreamedLines() throws IOException {
+        Path file = tempDir.resolve("batch.txt");
+        Files.writeString(file, "i = 0\nj = ++i\nx = i++ + 5\ny = 5 + 3 * 10\ni += y\n");
+        Calculator calculator = new Calculator();
+        try (ScriptReader reader = new ScriptReader(file)) {
+            CharSequence line;
+            while ((line = reader.nextLine()) != null) {
+                calculator.evaluate(line);
+            }
+        }
+        assertEquals("{i=37, j=1, x=6, y=35}", calculator.getVariables().toString());
+    }
+}
@@ -0,0 +1,94 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRoundTripKeepsValuesAndOrder() throws IOException {
+        Calculator calculator = new Calculator();
+        calculator.evaluate("zeta = 1");
+        calculator.evaluate("alpha = -7");
+        calculator.evaluate("m_1 = 2147483647");
+        calculator.evaluate("zeta += alpha");
+        Path file = tempDir.resolve("state.snap");
+        Snapshot.write(file, calculator, 42);
+
+        Calculator restored = new Calculator();
+        assertEquals(42, Snapshot.restore(file, restored));
+        assertEquals(calculator.getVariables().toString(), restored.getVariables().toString());
+
+        // The restored calculator carries on like the original
+        restored.evaluate("alpha = alpha * 2");
+        assertEquals(-14, restored.getVariables().get("alpha"));
+    }
+
+    @Test
+    void testEmptyAndLargeSnapshots() throws IOException {
+        Path file = tempDir.resolve("state.snap");
+        Snapshot.write(file, new Calculator(), 0);
+        Calculator empty = new Calculator();
+        assertEquals(0, Snapshot.restore(file, empty));
+        assertTrue(empty.getVariables().isEmpty());
+
+        Calculator large = new Calculator(0);
+        for (int i = 0; i < 100_000; i++) {
+            large.evaluate("v" + i + " = " + i);
+        }
+        Snapshot.write(file, large, 100_000);
+        Calculator restored = new Calculator();
+        assertEquals(100_000, Snapshot.restore(file, restored));
+        assertEquals(large.getVariables(), restored.getVariables());
+    }
+
+    @Test
+    void testRejectsCorruptFiles() throws IOException {
+        Calculator calculator = new Calculator();
+        calculator.evaluate("a = 1");
+        Path file = tempDir.resolve("state.snap");
+        Snapshot.write(file, calculator, 1);
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1; // Flip a bit in the names
+        Files.write(file, bytes);
+        IOException ex = assertThrows(IOException.class, () -> Snapshot.restore(file, new Calculator()));
+        assertTrue(ex.getMessage().contains("checksum"));
+
+        Files.write(file, new byte[]{1, 2, 3}, StandardOpenOption.TRUNCATE_EXISTING);
+        assertThrows(IOException.class, () -> Snapshot.restore(file, new Calculator()));
+    }
+
+    @Test
+    void testRestoreRequiresEmptyCalculator() throws IOException {
+        Calculator calculator = new Calculator();
+        calculator.evaluate("a = 1");
+        Path file = tempDir.resolve("state.snap");
+        Snapshot.write(file, calculator, 1);
+        assertThrows(IllegalStateException.class, () -> Snapshot.restore(file, calculator));
+    }
+
+    @Test
+    void testRoundTripKeepsWideValues() throws IOException {
+        Calculator calculator = new Calculator();
+        calculator.evaluate("a = 2147483647; l = a * a; b = l * l * -1; i = 3");
+        Path file = tempDir.resolve("state.snap");
+        Snapshot.write(file, calculator, 7);
+
+        Calculator restored = new Calculator();
+        assertEquals(7, Snapshot.restore(file, restored));
+        assertEquals(calculator.getVariables(), restored.getVariables());
+        assertEquals(NumericWidth.LONG, restored.getWidth("l"));
+        assertEquals(NumericWidth.BIG, restored.getWidth("b"));
+    }
+}
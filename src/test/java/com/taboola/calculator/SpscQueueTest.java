@@ -0,0 +1,54 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpscQueueTest {
+
+    @Test
+    void testBoundedFifo() {
+        SpscQueue<Integer> queue = new SpscQueue<>(3); // Rounded up to 4
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void testHandsOffInOrderBetweenThreads() throws InterruptedException {
+        SpscQueue<Integer> queue = new SpscQueue<>(8);
+        int count = 200_000;
+        Thread producer = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < count; i++) {
+                queue.put(i, () -> false);
+            }
+        });
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, queue.take(() -> false));
+        }
+        producer.join();
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void testPutGivesUpWhenCancelled() {
+        SpscQueue<String> queue = new SpscQueue<>(1);
+        assertTrue(queue.put("a", () -> true)); // Room: added without checking
+        assertFalse(queue.put("b", () -> true));
+    }
+
+    @Test
+    void testTakeGivesUpWhenTheProducerFinished() {
+        SpscQueue<String> queue = new SpscQueue<>(2);
+        queue.offer("a");
+        assertEquals("a", queue.take(() -> true)); // Queued before finishing
+        assertNull(queue.take(() -> true));
+    }
+}
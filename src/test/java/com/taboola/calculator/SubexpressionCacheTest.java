@@ -0,0 +1,104 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubexpressionCacheTest {
+
+    @Test
+    void testReusesPureSubexpressionUntilAVariableChanges() {
+        Calculator calculator = new Calculator();
+        SubexpressionCache cache = new SubexpressionCache();
+        calculator.setSubexpressionCache(cache);
+
+        calculator.evaluate("a = 6; b = 4; c = 3; i = 0");
+        calculator.evaluate("x = a * b / c");
+        calculator.evaluate("y = i++ + a * b / c"); // Same subexpression next to an increment
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        calculator.evaluate("a = 9");
+        calculator.evaluate("z = a * b / c");
+        calculator.evaluate("w = i + a * b / c"); // Pure as a whole: a different subexpression
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(2, cache.size());
+
+        assertEquals(Map.of("a", 9, "b", 4, "c", 3, "i", 1, "x", 8, "y", 8, "z", 12, "w", 13),
+                calculator.getVariables());
+    }
+
+    @Test
+    void testMatchesUncachedResults() {
+        String[] lines = {
+                "a = 2147483647; b = 2; c = -3; d = 0; i = 5",
+                "x = a * b / 4",         // Overflows int, evaluated in long
+                "y = c * i++ - c * i",
+                "y += -c * i + --i",
+                "z = a * b / d",         // Division by zero
+                "z = c * i / 2",
+                "z = c * i / 2",
+                "q = undefined * 2",
+        };
+        Calculator plain = new Calculator();
+        Calculator cached = new Calculator();
+        SubexpressionCache cache = new SubexpressionCache();
+        cached.setSubexpressionCache(cache);
+        for (String line : lines) {
+            assertEquals(plain.tryEvaluate(line).getCode(), cached.tryEvaluate(line).getCode(), line);
+        }
+
+        assertEquals(plain.getVariables(), cached.getVariables());
+        assertEquals(1, cache.getHits()); // Only the repeated c * i / 2
+    }
+
+    @Test
+    void testFailuresAreNotCached() {
+        Calculator calculator = new Calculator();
+        SubexpressionCache cache = new SubexpressionCache();
+        calculator.setSubexpressionCache(cache);
+
+        calculator.evaluate("a = 1; d = 0");
+        assertThrows(ArithmeticException.class, () -> calculator.evaluate("x = a / d"));
+        assertThrows(ArithmeticException.class, () -> calculator.evaluate("x = a / d"));
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        Calculator calculator = new Calculator();
+        SubexpressionCache cache = new SubexpressionCache(2);
+        calculator.setSubexpressionCache(cache);
+
+        calculator.evaluate("a = 2; b = 3; c = 5");
+        calculator.evaluate("p = a * b");
+        calculator.evaluate("q = a * c");
+        calculator.evaluate("p = a * b");  // Hit; a * c is now the eldest
+        calculator.evaluate("r = b * c");  // Evicts a * c
+        calculator.evaluate("q = a * c");
+        assertEquals(1, cache.getHits());
+        assertEquals(4, cache.getMisses());
+        assertEquals(2, cache.size());
+        assertEquals(0.2, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void testSharedCacheDoesNotMixCalculators() {
+        SubexpressionCache cache = new SubexpressionCache();
+        Calculator first = new Calculator();
+        Calculator second = new Calculator();
+        first.setSubexpressionCache(cache);
+        second.setSubexpressionCache(cache);
+
+        first.evaluate("a = 2; b = 3; x = a * b");
+        second.evaluate("a = 4; b = 5; x = a * b");
+        assertEquals(6, first.getVariables().get("x"));
+        assertEquals(20, second.getVariables().get("x"));
+        assertEquals(0, cache.getHits());
+    }
+}
@@ -1,6 +1,9 @@
 package com.taboola.calculator;
 
 import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TokenizerTest {
@@ -125,4 +128,88 @@ public class TokenizerTest {
         tokenizer.next();
         assertEquals(TokenType.NUMBER, tokenizer.peek().getType()); // 2
     }
+
+    @Test
+    void testCursorReportsKindsAndOffsets() {
+        Tokenizer tokenizer = new Tokenizer("x = 42 + y1");
+        assertEquals(TokenType.IDENTIFIER, tokenizer.kind());
+        assertEquals(0, tokenizer.start());
+        assertEquals(1, tokenizer.end());
+
+        assertEquals(TokenType.ASSIGN, tokenizer.advance());
+        assertEquals(TokenType.NUMBER, tokenizer.advance());
+        assertEquals(4, tokenizer.start());
+        assertEquals(6, tokenizer.end());
+        assertEquals(42, tokenizer.numberValue());
+
+        assertEquals(TokenType.PLUS, tokenizer.advance());
+        assertEquals(TokenType.IDENTIFIER, tokenizer.advance());
+        assertEquals("y1", tokenizer.text());
+        assertEquals(TokenType.EOF, tokenizer.advance());
+    }
+
+    @Test
+    void testCursorPostfixOffsets() {
+        Tokenizer tokenizer = new Tokenizer("i++ + j--");
+        assertEquals(TokenType.IDENTIFIER, tokenizer.kind());
+        assertEquals(TokenType.POST_INC, tokenizer.advance());
+        assertEquals(1, tokenizer.start());
+        assertEquals(3, tokenizer.end());
+        assertEquals(TokenType.PLUS, tokenizer.advance());
+        assertEquals(TokenType.IDENTIFIER, tokenizer.advance());
+        assertEquals(TokenType.POST_DEC, tokenizer.advance());
+        assertEquals(7, tokenizer.start());
+        assertEquals(TokenType.EOF, tokenizer.advance());
+    }
+
+    @Test
+    void testCompoundAssignmentsAndSeparators() {
+        Tokenizer tokenizer = new Tokenizer("x += 1; y -= -i++;z=2");
+        assertEquals(TokenType.IDENTIFIER, tokenizer.kind());
+        assertEquals(TokenType.PLUS_ASSIGN, tokenizer.advance());
+        assertEquals(TokenType.NUMBER, tokenizer.advance());
+        assertEquals(TokenType.SEMICOLON, tokenizer.advance());
+        assertEquals(TokenType.IDENTIFIER, tokenizer.advance());
+        assertEquals(TokenType.MINUS_ASSIGN, tokenizer.advance());
+        assertEquals(TokenType.MINUS, tokenizer.advance());
+        assertEquals(TokenType.IDENTIFIER, tokenizer.advance());
+        assertEquals(TokenType.POST_INC, tokenizer.advance());
+        assertEquals(TokenType.SEMICOLON, tokenizer.advance());
+        assertEquals(TokenType.IDENTIFIER, tokenizer.advance());
+        assertEquals(TokenType.ASSIGN, tokenizer.advance());
+        assertEquals(TokenType.NUMBER, tokenizer.advance());
+        assertEquals(TokenType.EOF, tokenizer.advance());
+    }
+
+    @Test
+    void testNumberOverflowReportsNumberTooLarge() {
+        Tokenizer tokenizer = new Tokenizer("2147483647 2147483648");
+        assertEquals(Integer.MAX_VALUE, tokenizer.numberValue());
+        tokenizer.advance();
+        assertEquals("2147483648", tokenizer.peek().getText());
+        EvaluationException e = assertThrows(EvaluationException.class, tokenizer::numberValue);
+        assertEquals(ErrorCode.NUMBER_TOO_LARGE, e.getCode());
+        assertEquals(11, e.getOffset());
+        assertEquals("Number too large: 2147483648", e.getMessage());
+        assertFalse(tokenizer.numberFitsInt());
+        assertEquals(BigInteger.valueOf(2147483648L), tokenizer.bigNumberValue());
+    }
+
+    @Test
+    void testIdentifierHashMatchesStringHashCode() {
+        Tokenizer tokenizer = new Tokenizer("x = total_2 + y");
+        assertEquals("x".hashCode(), tokenizer.identifierHash());
+        tokenizer.advance();
+        tokenizer.advance();
+        assertEquals("total_2".hashCode(), tokenizer.identifierHash());
+    }
+
+    @Test
+    void testTokenizesSubRange() {
+        Tokenizer tokenizer = new Tokenizer("a = 1\nb = 2", 6, 11);
+        assertEquals("b", tokenizer.text());
+        assertEquals(TokenType.ASSIGN, tokenizer.advance());
+        assertEquals(2, tokenizer.advance() == TokenType.NUMBER ? tokenizer.numberValue() : -1);
+        assertEquals(TokenType.EOF, tokenizer.advance());
+    }
 }
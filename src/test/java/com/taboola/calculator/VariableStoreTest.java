@@ -0,0 +1,93 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VariableStoreTest {
+
+    private SymbolTable symbols;
+    private VariableStore store;
+
+    @BeforeEach
+    void setUp() {
+        symbols = new SymbolTable();
+        store = new VariableStore(symbols);
+    }
+
+    @Test
+    void testResolveIsStable() {
+        int x = symbols.resolve("x");
+        int y = symbols.resolve("y");
+        assertNotEquals(x, y);
+        assertEquals(x, symbols.resolve("x"));
+        assertEquals("y", symbols.name(y));
+        assertEquals(-1, symbols.lookup("z"));
+    }
+
+    @Test
+    void testUndefinedSlotThrows() {
+        int x = symbols.resolve("x");
+        Exception ex = assertThrows(IllegalArgumentException.class, () -> store.get(x));
+        assertEquals("Variable 'x' is not defined", ex.getMessage());
+    }
+
+    @Test
+    void testSetGrowsAndIncrements() {
+        for (int i = 0; i < 100; i++) {
+            store.set(symbols.resolve("v" + i), i);
+        }
+        int v50 = symbols.lookup("v50");
+        assertEquals(51, store.increment(v50, 1));
+        assertEquals(51, store.get(v50));
+        assertEquals(100, store.size());
+    }
+
+    @Test
+    void testMapViewKeepsAssignmentOrder() {
+        int b = symbols.resolve("b");
+        int a = symbols.resolve("a");
+        store.set(a, 1);
+        store.set(b, 2);
+        store.set(a, 3);
+
+        Map<String, Number> view = store.asMap();
+        assertEquals(List.of("a", "b"), List.copyOf(view.keySet()));
+        assertEquals(Map.of("a", 3, "b", 2), view);
+        assertNull(view.get("c"));
+        assertFalse(view.containsKey("c"));
+    }
+
+    @Test
+    void testValuesKeepTheNarrowestWidth() {
+        int x = symbols.resolve("x");
+        store.setLong(x, 5);
+        assertEquals(NumericWidth.INT, store.getWidth(x));
+        store.setBig(x, BigInteger.ONE.shiftLeft(40));
+        assertEquals(NumericWidth.LONG, store.getWidth(x));
+        assertEquals(1L << 40, store.asMap().get("x"));
+        assertThrows(ArithmeticException.class, () -> store.get(x));
+
+        store.set(x, Integer.MAX_VALUE);
+        assertThrows(ArithmeticException.class, () -> store.increment(x, 1));
+        assertEquals(Integer.MAX_VALUE, store.get(x)); // Unchanged by the failed increment
+        assertNull(store.getWidth(symbols.resolve("y")));
+    }
+
+    @Test
+    void testEveryWriteBumpsTheVersion() {
+        int x = symbols.resolve("x");
+        assertEquals(0, store.version(x));
+        store.set(x, 1);
+        store.increment(x, 1);
+        store.setLong(x, 1L << 40);
+        store.setBig(x, BigInteger.TWO.pow(70));
+        assertEquals(4, store.version(x));
+        assertEquals(0, store.version(symbols.resolve("y")));
+    }
+}
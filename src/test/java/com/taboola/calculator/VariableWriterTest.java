@@ -0,0 +1,91 @@
+package com.taboola.calculator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VariableWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final VariableWriter writer = new VariableWriter(bytes);
+
+    private String output() {
+        writer.flush();
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testWritesVariablesInAssignmentOrder() {
+        Calculator calculator = new Calculator();
+        writer.writeVariables(calculator);
+        calculator.evaluate("b = 0 - 2147483647 - 1; a = 2147483647; c = -40; d = 0; é = 7");
+        writer.writeVariables(calculator);
+        assertEquals("()\n(b=-2147483648,a=2147483647,c=-40,d=0,é=7)\n", output());
+    }
+
+    @Test
+    void testNothingIsWrittenBeforeFlush() {
+        writer.writeLine("Error: x");
+        assertEquals(0, bytes.size());
+        assertEquals("Error: x\n", output());
+    }
+
+    @Test
+    void testWritesChangesOfLastLine() {
+        Calculator calculator = new Calculator();
+        calculator.setChangeTracking(true);
+        calculator.evaluate("i = 0; j = 5; k = 1");
+        calculator.evaluate("x = i++ + j; j -= 1; x += 1");
+        writer.writeChanges(calculator);
+        assertThrows(IllegalArgumentException.class, () -> calculator.evaluate("y = ++i / q"));
+        writer.writeChanges(calculator); // The increment before the failure counts
+        calculator.evaluate("   ");
+        writer.writeChanges(calculator);
+        assertEquals("(i=1,x=6,j=4)\n(i=2)\n()\n", output());
+        assertEquals("{}", calculator.getLastChanges().toString());
+    }
+
+    @Test
+    void testChangesNeedTracking() {
+        assertThrows(IllegalStateException.class, () -> writer.writeChanges(new Calculator()));
+    }
+
+    @Test
+    void testStreamsLargeStateToFile() throws IOException {
+        Calculator calculator = new Calculator();
+        StringBuilder expected = new StringBuilder("(");
+        for (int i = 0; i < 5000; i++) {
+            calculator.evaluate("v" + i + " = " + (i * 7919 - 1000));
+            expected.append(i > 0 ? "," : "").append("v").append(i).append("=").append(i * 7919 - 1000);
+        }
+        String longName = "n" + "x".repeat(10_000);
+        calculator.evaluate(longName + " = 1");
+        expected.append(",").append(longName).append("=1)\n");
+
+        Path file = tempDir.resolve("state.txt");
+        try (VariableWriter state = new VariableWriter(file)) {
+            state.writeVariables(calculator);
+        }
+        assertEquals(expected.toString(), Files.readString(file));
+    }
+
+    @Test
+    void testWritesWideValues() {
+        Calculator calculator = new Calculator();
+        calculator.evaluate("m = 0 - 2147483647; l = m * m * 2; n = 0 - l * l * l; b = n * n");
+        writer.writeVariables(calculator);
+        assertEquals("(m=-2147483647,l=9223372028264841218,n=" + calculator.getVariables().get("n")
+                + ",b=" + calculator.getVariables().get("b") + ")\n", output());
+        assertEquals(NumericWidth.LONG, calculator.getWidth("l"));
+    }
+}